@@ -2,6 +2,7 @@ package com.societegenerale.githubcrawler.config
 
 
 import com.societegenerale.githubcrawler.GitHubCrawlerProperties
+import com.societegenerale.githubcrawler.remote.HttpClients
 import com.societegenerale.githubcrawler.remote.RemoteAzureDevopsImpl
 import com.societegenerale.githubcrawler.remote.RemoteAzureDevopsImpl.Companion.AZURE_DEVOPS_SEARCH_URL
 import com.societegenerale.githubcrawler.remote.RemoteAzureDevopsImpl.Companion.AZURE_DEVOPS_URL
@@ -38,7 +39,8 @@ open class AzureDevopsConfiguration {
         return RemoteAzureDevopsImpl(targetUrl,
                                      searchUrl,
                                      gitHubCrawlerProperties.sourceControl.organizationName,
-                                     gitHubCrawlerProperties.sourceControl.apiToken)
+                                     gitHubCrawlerProperties.sourceControl.apiToken,
+                                     HttpClients.newSharedClient(gitHubCrawlerProperties.sourceControl.httpClient))
     }
 
 }
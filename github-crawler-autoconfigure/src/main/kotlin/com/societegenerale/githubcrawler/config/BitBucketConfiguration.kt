@@ -2,6 +2,7 @@ package com.societegenerale.githubcrawler.config
 
 
 import com.societegenerale.githubcrawler.GitHubCrawlerProperties
+import com.societegenerale.githubcrawler.remote.HttpClients
 import com.societegenerale.githubcrawler.remote.RemoteBitBucketImpl
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import org.slf4j.LoggerFactory
@@ -20,7 +21,8 @@ open class BitBucketConfiguration {
 
         return RemoteBitBucketImpl(gitHubCrawlerProperties.sourceControl.url,
                                 gitHubCrawlerProperties.sourceControl.organizationName,
-                                gitHubCrawlerProperties.sourceControl.apiToken)
+                                gitHubCrawlerProperties.sourceControl.apiToken,
+                                HttpClients.newSharedClient(gitHubCrawlerProperties.sourceControl.httpClient))
     }
 
 }
@@ -2,12 +2,15 @@ package com.societegenerale.githubcrawler.config
 
 
 import com.societegenerale.githubcrawler.GitHubCrawlerProperties
+import com.societegenerale.githubcrawler.remote.BlobCache
+import com.societegenerale.githubcrawler.remote.HttpClients
 import com.societegenerale.githubcrawler.remote.RemoteGitHubImpl
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import org.slf4j.LoggerFactory
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
+import java.nio.file.Paths
 
 @Configuration
 @ConditionalOnProperty(prefix = "crawler.source-control", name = ["type"], havingValue = "GITHUB")
@@ -28,9 +31,17 @@ open class GitHubConfiguration {
             targetUrl=gitHubCrawlerProperties.sourceControl.url
         }
 
+        val blobCacheConfig = gitHubCrawlerProperties.sourceControl.blobCache
+
+        val blobCache = if (blobCacheConfig.enabled) BlobCache(Paths.get(blobCacheConfig.directory), blobCacheConfig.maxSizeInMb * 1024 * 1024) else null
+
         return RemoteGitHubImpl(targetUrl,
                                 gitHubCrawlerProperties.sourceControl.crawlUsersRepoInsteadOfOrgasRepos,
-                                gitHubCrawlerProperties.sourceControl.apiToken)
+                                gitHubCrawlerProperties.sourceControl.apiToken,
+                                HttpClients.newSharedClient(gitHubCrawlerProperties.sourceControl.httpClient),
+                                blobCache,
+                                gitHubCrawlerProperties.sourceControl.graphqlBatch,
+                                gitHubCrawlerProperties.sourceControl.fileTreeIndex.enabled)
     }
 
 }
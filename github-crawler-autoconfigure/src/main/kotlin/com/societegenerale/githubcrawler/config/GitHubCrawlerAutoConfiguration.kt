@@ -4,6 +4,7 @@ package com.societegenerale.githubcrawler.config
 import com.societegenerale.githubcrawler.*
 import com.societegenerale.githubcrawler.output.GitHubCrawlerOutput
 import com.societegenerale.githubcrawler.parsers.FileContentParser
+import com.societegenerale.githubcrawler.remote.ArchiveSourceControl
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import com.societegenerale.githubcrawler.repoTaskToPerform.RepoTaskBuilder
 import org.slf4j.LoggerFactory
@@ -13,10 +14,11 @@ import org.springframework.context.annotation.Configuration
 import org.springframework.context.annotation.Import
 import org.springframework.core.convert.ConversionService
 import org.springframework.core.env.Environment
+import java.nio.file.Paths
 
 @Configuration
 @Import(GitHubCrawlerParserConfig::class,GitHubCrawlerOutputConfig::class,GitHubCrawlerMiscTasksConfig::class,
-    GitHubConfiguration::class,GitLabConfiguration::class,AzureDevopsConfiguration::class, BitBucketConfiguration::class)
+    GitHubConfiguration::class,GitLabConfiguration::class,AzureDevopsConfiguration::class, BitBucketConfiguration::class, GitMirrorConfiguration::class)
 @EnableConfigurationProperties(GitHubCrawlerProperties::class)
 open class GitHubCrawlerAutoConfiguration {
 
@@ -41,11 +43,42 @@ open class GitHubCrawlerAutoConfiguration {
 
         val availableParsersAndTasks = AvailableParsersAndTasks(fileContentParsers,repoTasksBuilders)
 
-        val repositoryEnricher = RepositoryEnricher(remoteSourceControl,availableParsersAndTasks)
+        val concurrency = gitHubCrawlerProperties.concurrency
+
+        val repositoryEnricher = RepositoryEnricher(sourceControlToFetchFilesFrom(remoteSourceControl, gitHubCrawlerProperties),
+                                                    availableParsersAndTasks,
+                                                    CrawlExecutors.newFileFetchesExecutor(concurrency),
+                                                    CrawlExecutors.newRequestBudget(concurrency),
+                                                    concurrency.maxFileFetchesPerRepository)
 
         log.info("using repositoryEnricher "+repositoryEnricher+" when building the crawler...")
 
-        return GitHubCrawler(remoteSourceControl, output, repositoryEnricher,gitHubCrawlerProperties,environment,gitHubCrawlerProperties.sourceControl.organizationName,configValidator,availableParsersAndTasks)
+        val crawlStateStore = if (gitHubCrawlerProperties.incremental.enabled) {
+            FileCrawlStateStore(Paths.get(gitHubCrawlerProperties.incremental.stateFile), CrawlStateStore.configFingerprint(gitHubCrawlerProperties))
+        } else {
+            CrawlStateStore.NONE
+        }
+
+        return GitHubCrawler(remoteSourceControl, output, repositoryEnricher,gitHubCrawlerProperties,environment,gitHubCrawlerProperties.sourceControl.organizationName,configValidator,availableParsersAndTasks,
+                             crawlStateStore)
+    }
+
+    /**
+     * when many files are configured, it's cheaper to extract them from the archive of each branch - only GitHub provides them
+     */
+    private fun sourceControlToFetchFilesFrom(remoteSourceControl: RemoteSourceControl, gitHubCrawlerProperties: GitHubCrawlerProperties): RemoteSourceControl {
+
+        val archiveConfig = gitHubCrawlerProperties.sourceControl.archive
+
+        val filesToParse = gitHubCrawlerProperties.indicatorsToFetchByFile.keys.map { it.name }.toSet()
+
+        if (!archiveConfig.enabled || gitHubCrawlerProperties.sourceControl.type != SourceControlType.GITHUB || filesToParse.size < archiveConfig.minFilesToParse) {
+            return remoteSourceControl
+        }
+
+        log.info("${filesToParse.size} files to parse - extracting them from the archive of each branch")
+
+        return ArchiveSourceControl(remoteSourceControl, filesToParse)
     }
 
     @Bean
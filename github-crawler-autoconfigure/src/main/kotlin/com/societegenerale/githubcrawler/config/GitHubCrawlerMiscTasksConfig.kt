@@ -3,6 +3,7 @@ package com.societegenerale.githubcrawler.config
 
 import com.societegenerale.githubcrawler.GitHubCrawlerProperties
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
+import com.societegenerale.githubcrawler.repoTaskToPerform.CodeSearchIndex
 import com.societegenerale.githubcrawler.repoTaskToPerform.CountHitsOnRepoSearchBuilder
 import com.societegenerale.githubcrawler.repoTaskToPerform.NbBranchesOnRepoBuilder
 import com.societegenerale.githubcrawler.repoTaskToPerform.NbOpenPRsOnRepoBuilder
@@ -19,15 +20,21 @@ import org.springframework.context.annotation.Configuration
 open class GitHubCrawlerMiscTasksConfig {
 
     @Bean
-    open fun countHitsOnRepoSearchBuilder(remoteSourceControl: RemoteSourceControl): CountHitsOnRepoSearchBuilder{
+    open fun codeSearchIndex(remoteSourceControl: RemoteSourceControl): CodeSearchIndex {
 
-        return CountHitsOnRepoSearchBuilder(remoteSourceControl)
+        return CodeSearchIndex(remoteSourceControl)
     }
 
     @Bean
-    open fun pathsForHitsOnRepoSearchBuilder(remoteSourceControl: RemoteSourceControl): PathsForHitsOnRepoSearchBuilder {
+    open fun countHitsOnRepoSearchBuilder(remoteSourceControl: RemoteSourceControl, codeSearchIndex: CodeSearchIndex): CountHitsOnRepoSearchBuilder{
 
-        return PathsForHitsOnRepoSearchBuilder(remoteSourceControl)
+        return CountHitsOnRepoSearchBuilder(remoteSourceControl, codeSearchIndex)
+    }
+
+    @Bean
+    open fun pathsForHitsOnRepoSearchBuilder(remoteSourceControl: RemoteSourceControl, codeSearchIndex: CodeSearchIndex): PathsForHitsOnRepoSearchBuilder {
+
+        return PathsForHitsOnRepoSearchBuilder(remoteSourceControl, codeSearchIndex)
     }
 
     @Bean
@@ -5,6 +5,7 @@ import com.societegenerale.githubcrawler.output.*
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.boot.autoconfigure.AutoConfigureOrder
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
 import org.springframework.boot.context.properties.EnableConfigurationProperties
@@ -12,6 +13,7 @@ import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 import org.springframework.web.client.RestTemplate
 import java.io.IOException
+import java.time.Duration
 
 @Configuration
 @EnableConfigurationProperties(GitHubCrawlerProperties::class)
@@ -75,6 +77,38 @@ open class GitHubCrawlerOutputConfig {
     return RecentRepositoriesCsvFileOutput()
   }
 
+    @Bean
+    @ConditionalOnProperty(name = ["crawler.outputs.elasticsearchBulk.indexUrl"])
+    @AutoConfigureOrder(value = 7)
+    open fun elasticsearchBulkOutput(@Value("\${crawler.outputs.elasticsearchBulk.indexUrl}") indexUrl: String,
+                                     @Value("\${crawler.outputs.elasticsearchBulk.maxDocumentsPerBatch:500}") maxDocumentsPerBatch: Int,
+                                     @Value("\${crawler.outputs.elasticsearchBulk.maxBytesPerBatch:5242880}") maxBytesPerBatch: Int,
+                                     @Value("\${crawler.outputs.elasticsearchBulk.flushIntervalInSeconds:5}") flushIntervalInSeconds: Long,
+                                     @Value("\${crawler.outputs.elasticsearchBulk.maxInFlightBatches:2}") maxInFlightBatches: Int,
+                                     @Value("\${crawler.outputs.elasticsearchBulk.maxRetries:3}") maxRetries: Int): GitHubCrawlerOutput {
+
+        return ElasticsearchBulkOutput(indexUrl, RestTemplate(), maxDocumentsPerBatch, maxBytesPerBatch, Duration.ofSeconds(flushIntervalInSeconds), maxInFlightBatches, maxRetries)
+    }
+
+    /**
+     * Parquet is an optional dependency : the output is available only when it's on the classpath
+     */
+    @Bean
+    @ConditionalOnProperty(name = ["crawler.outputs.parquetFile.filenamePrefix"])
+    @ConditionalOnClass(name = ["org.apache.parquet.hadoop.ParquetWriter"])
+    @AutoConfigureOrder(value = 8)
+    @Throws(IOException::class)
+    open fun parquetFileOutput(@Value("\${crawler.outputs.parquetFile.filenamePrefix}") fileNamePrefix: String,
+                               @Value("\${crawler.outputs.parquetFile.rowGroupSize:16777216}") rowGroupSize: Long,
+                               gitHubCrawlerProperties: GitHubCrawlerProperties): GitHubCrawlerOutput {
+
+        // one column per configured indicator and misc task
+        val indicatorsToOutput = gitHubCrawlerProperties.indicatorsToFetchByFile.values.flatten().map { it.name } +
+                                 gitHubCrawlerProperties.miscRepositoryTasks.map { it.name }
+
+        return ParquetFileOutput(fileNamePrefix, indicatorsToOutput, rowGroupSize)
+    }
+
 
 
     @Bean
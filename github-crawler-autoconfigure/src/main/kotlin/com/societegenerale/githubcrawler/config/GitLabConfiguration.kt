@@ -2,6 +2,7 @@ package com.societegenerale.githubcrawler.config
 
 
 import com.societegenerale.githubcrawler.GitHubCrawlerProperties
+import com.societegenerale.githubcrawler.remote.HttpClients
 import com.societegenerale.githubcrawler.remote.RemoteGitLabImpl
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
@@ -15,7 +16,9 @@ open class GitLabConfiguration {
     @Bean
     open fun remoteGitLab(gitHubCrawlerProperties: GitHubCrawlerProperties): RemoteSourceControl {
 
-        return RemoteGitLabImpl(gitHubCrawlerProperties.sourceControl.url,gitHubCrawlerProperties.sourceControl.apiToken)
+        return RemoteGitLabImpl(gitHubCrawlerProperties.sourceControl.url,
+                                gitHubCrawlerProperties.sourceControl.apiToken,
+                                HttpClients.newSharedClient(gitHubCrawlerProperties.sourceControl.httpClient))
     }
 
 }
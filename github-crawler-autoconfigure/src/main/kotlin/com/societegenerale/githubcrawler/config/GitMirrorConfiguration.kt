@@ -0,0 +1,33 @@
+package com.societegenerale.githubcrawler.config
+
+
+import com.societegenerale.githubcrawler.GitHubCrawlerProperties
+import com.societegenerale.githubcrawler.remote.RemoteGitMirrorImpl
+import com.societegenerale.githubcrawler.remote.RemoteSourceControl
+import org.eclipse.jgit.storage.file.WindowCacheConfig
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import java.io.File
+
+@Configuration
+@ConditionalOnProperty(prefix = "crawler.source-control", name = ["type"], havingValue = "GIT_MIRROR")
+open class GitMirrorConfiguration {
+
+    /**
+     * JGit's window cache is shared by the whole JVM, so it's configured here, only when crawling git mirrors : packs are read through memory mapped windows,
+     * instead of being copied in heap byte arrays.
+     *
+     * Repositories opened during the crawls get closed with the application context.
+     */
+    @Bean(destroyMethod = "close")
+    open fun remoteGitMirror(gitHubCrawlerProperties: GitHubCrawlerProperties): RemoteSourceControl {
+
+        val windowCacheConfig = WindowCacheConfig()
+        windowCacheConfig.isPackedGitMMAP = true
+        windowCacheConfig.install()
+
+        return RemoteGitMirrorImpl(File(gitHubCrawlerProperties.sourceControl.url))
+    }
+
+}
@@ -2,17 +2,23 @@ package com.societegenerale.githubcrawler
 
 import com.jayway.awaitility.Awaitility.await
 import com.societegenerale.githubcrawler.mocks.GitHubMock
+import com.societegenerale.githubcrawler.remote.BlobCache
+import com.societegenerale.githubcrawler.remote.HttpClients
+import com.societegenerale.githubcrawler.remote.NoFileFoundException
 import com.societegenerale.githubcrawler.remote.RemoteGitHubImpl
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
 import org.junit.jupiter.api.AfterAll
 import org.junit.jupiter.api.BeforeAll
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.extension.ExtendWith
+import org.junit.jupiter.api.io.TempDir
 import org.springframework.test.annotation.DirtiesContext
 
 import org.springframework.test.context.ActiveProfiles
 import org.springframework.test.context.junit.jupiter.SpringExtension
+import java.nio.file.Path
 import java.util.concurrent.TimeUnit.SECONDS
 
 @ExtendWith(SpringExtension::class)
@@ -74,5 +80,87 @@ class RemoteGitHubImplTest {
         assertThat(commits.isEmpty())
     }
 
+    @Test
+    fun shouldFetchFileContentInOneCall() {
+
+        val remoteGitHub = RemoteGitHubImpl("http://localhost:9900/api/v3", false, "someToken")
+        githubMockServer.addReposWithPomXMl(listOf("myRepo"))
+
+        val pomXml = remoteGitHub.fetchFileContent("MyOrganization/myRepo", "master", "pom.xml")
+
+        assertThat(pomXml).contains("<artifactId>")
+        assertThat(githubMockServer.getPomXmlHits()).containsExactly("myRepo")
+    }
+
+    @Test
+    fun shouldThrowNoFileFoundException_whenFileIsNotOnRepo() {
+
+        val remoteGitHub = RemoteGitHubImpl("http://localhost:9900/api/v3", false, "someToken")
+
+        assertThatThrownBy { remoteGitHub.fetchFileContent("MyOrganization/myRepo", "master", "pom.xml") }
+                .isInstanceOf(NoFileFoundException::class.java)
+    }
+
+    @Test
+    fun shouldDownloadFilesWithSameContentOnlyOnce_whenBlobCacheIsEnabled(@TempDir blobCacheDirectory: Path) {
+
+        val remoteGitHub = RemoteGitHubImpl("http://localhost:9900/api/v3", false, "someToken", HttpClients.newSharedClient(HttpClientConfig()),
+                                            BlobCache(blobCacheDirectory, 1024 * 1024))
+        githubMockServer.addReposWithPomXMl(listOf("myRepo", "myOtherRepo"))
+
+        val pomXml = remoteGitHub.fetchFileContent("MyOrganization/myRepo", "master", "pom.xml")
+        val samePomXmlInOtherRepo = remoteGitHub.fetchFileContent("MyOrganization/myOtherRepo", "master", "pom.xml")
+
+        assertThat(samePomXmlInOtherRepo).isEqualTo(pomXml).contains("<artifactId>")
+        assertThat(githubMockServer.getPomXmlHits()).containsExactly("myRepo")
+        assertThat(githubMockServer.getRootDirectoryListingHits()).containsExactly("myRepo", "myOtherRepo")
+    }
+
+    @Test
+    fun shouldFindOutFromDirectoryListingThatFileIsNotOnRepo_whenBlobCacheIsEnabled(@TempDir blobCacheDirectory: Path) {
+
+        val remoteGitHub = RemoteGitHubImpl("http://localhost:9900/api/v3", false, "someToken", HttpClients.newSharedClient(HttpClientConfig()),
+                                            BlobCache(blobCacheDirectory, 1024 * 1024))
+
+        assertThatThrownBy { remoteGitHub.fetchFileContent("MyOrganization/myRepo", "master", "pom.xml") }
+                .isInstanceOf(NoFileFoundException::class.java)
+        assertThat(remoteGitHub.fetchRepoConfig("MyOrganization/myRepo", "master").excluded).isFalse()
+
+        assertThat(githubMockServer.getPomXmlHits()).isEmpty()
+        assertThat(githubMockServer.getRepoConfigHits()).isEmpty()
+        assertThat(githubMockServer.getRootDirectoryListingHits()).containsExactly("myRepo")
+    }
+
+    @Test
+    fun shouldFetchFilesFoundInFileTreeBySha_andNotTheOthers() {
+
+        val remoteGitHub = RemoteGitHubImpl("http://localhost:9900/api/v3", false, "someToken")
+        githubMockServer.addReposWithPomXMl(listOf("myRepo"))
+        githubMockServer.setServeFileTrees(true)
+
+        val fileTree = remoteGitHub.fetchFileTree("MyOrganization/myRepo", "master")!!
+
+        assertThat(fileTree.containsFile("pom.xml")).isTrue()
+        assertThat(fileTree.isMissing("Dockerfile")).isTrue()
+
+        assertThat(remoteGitHub.fetchFileContent("MyOrganization/myRepo", "master", "pom.xml")).contains("<artifactId>")
+        assertThatThrownBy { remoteGitHub.fetchFileContent("MyOrganization/myRepo", "master", "Dockerfile") }
+                .isInstanceOf(NoFileFoundException::class.java)
+
+        assertThat(githubMockServer.getBlobHits()).containsExactly("myRepo")
+        assertThat(githubMockServer.getPomXmlHits()).isEmpty()
+    }
+
+    @Test
+    fun shouldBucketOrganizationWideSearchResultsByRepository() {
+
+        val remoteGitHub = RemoteGitHubImpl("http://localhost:9900/api/v3", false, "someToken")
+
+        val resultsByRepository = remoteGitHub.fetchCodeSearchResultsByRepository("MyOrganization", "someSearch")!!
+
+        assertThat(githubMockServer.getSearchHitsCount()).isEqualTo(1)
+        assertThat(resultsByRepository.keys).containsOnly("MyOrganization/myRepo")
+        assertThat(resultsByRepository["MyOrganization/myRepo"]!!.items.map { it.path }).containsExactly("pom.xml", "routing/pom.xml")
+    }
 
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package com.societegenerale.githubcrawler.mocks;
 
 import static com.societegenerale.githubcrawler.remote.RemoteGitHubImpl.CONFIG_VALIDATION_REQUEST_HEADER;
 
+import com.societegenerale.githubcrawler.remote.RemoteGitHubImpl;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,6 +36,8 @@ public class GitHubMock implements RemoteServiceMock {
 
     public final static String REPO_EXCLUDED_CONFIG = "excluded: true";
 
+    private final static String POM_XML_BLOB_SHA = "3e6e7ee5e8ce2b1bc8e4b5c6d0b2d2c1f0c6e9a4";
+
     private Map<String, String> repoConfigPerRepo = new HashMap<>();
 
     private static boolean hasStarted = false;
@@ -76,8 +79,14 @@ public class GitHubMock implements RemoteServiceMock {
 
     private int searchHitsCount = 0;
 
+    private List<String> rootDirectoryListingHits = new ArrayList<>();
+
     private boolean shouldReturnError409OnFetchCommits = false;
 
+    private boolean shouldServeFileTrees = false;
+
+    private List<String> blobHits = new ArrayList<>();
+
     public static boolean hasStarted() {
         return hasStarted;
     }
@@ -91,7 +100,8 @@ public class GitHubMock implements RemoteServiceMock {
         gitHubWebServer.configure(
                 routes -> {
 
-                    routes.get("/api/v3/repos/MyOrganization/:repo/contents/.githubCrawler", (context, repo) -> getRepoConfigFileOnRepo(repo));
+                    routes.get("/api/v3/repos/MyOrganization/:repo/contents/.githubCrawler",
+                            (context, repo) -> isRawRequest(context) ? getRawRepoConfig(repo) : getRepoConfigFileOnRepo(repo));
                     routes.get("/raw/MyOrganization/:repo/master/.githubCrawler", (context, repo) -> getActualRepoConfig(repo));
 
                     routes.get("/api/v3/orgs/MyOrganization/repos", context -> getOrganisationContent(context));
@@ -99,23 +109,32 @@ public class GitHubMock implements RemoteServiceMock {
 
                     routes.get("/api/v3/users/someUser/repos", context -> geUserReposContent());
 
-                    routes.get("/api/v3/repos/MyOrganization/:repo/contents/pom.xml?ref=master", (context, repo) -> getPomXmlFileOnRepo(repo));
+                    routes.get("/api/v3/repos/MyOrganization/:repo/contents/pom.xml?ref=master",
+                            (context, repo) -> isRawRequest(context) ? getRawPomXml(repo) : getPomXmlFileOnRepo(repo));
                     routes.get("/raw/MyOrganization/:repo/:branchName/pom.xml", (context, repo, branchName) -> getActualPomXML(repo, branchName));
 
                     //for other resources than pom.xml..
                     //hack for resources that are not at the root of the repository, so that we don't have to hardcode too many things
                     routes.get("/api/v3/repos/MyOrganization/:repo/contents/:aSubDirectory/:resource?ref=:branchName",
-                            (context, repo, aSubDirectory, resource, branchName) -> getResourceFileOnRepo(repo, resource, aSubDirectory, branchName));
+                            (context, repo, aSubDirectory, resource, branchName) -> isRawRequest(context) ?
+                                    getResource(repo, branchName, aSubDirectory, resource) : getResourceFileOnRepo(repo, resource, aSubDirectory, branchName));
                     routes.get("/raw/MyOrganization/:repo/:branchName/:aSubDirectory/:resource",
                             (context, repo, branchName, aSubDirectory, resource) -> getResource(repo, branchName, aSubDirectory, resource));
 
                     routes.get("/api/v3/repos/MyOrganization/:repo/contents/:resource?ref=:branchName",
-                            (context, repo, resource, branchName) -> getResourceFileOnRepo(repo, resource, null, branchName));
+                            (context, repo, resource, branchName) -> isRawRequest(context) ?
+                                    getResource(repo, branchName, null, resource) : getResourceFileOnRepo(repo, resource, null, branchName));
                     routes.get("/raw/MyOrganization/:repo/:branchName/:resource",
                             (context, repo, branchName, resource) -> getResource(repo, branchName, null, resource));
 
                     routes.get("/api/v3/repos/MyOrganization/:repo/branches", (context, repo) -> getBranches(repo));
 
+                    routes.get("/api/v3/repos/MyOrganization/:repo/contents?ref=:branchName", (context, repo, branchName) -> getRootDirectoryListing(repo));
+
+                    routes.get("/api/v3/repos/MyOrganization/:repo/git/trees/:branchName?recursive=1", (context, repo, branchName) -> getFileTree(repo));
+                    routes.get("/api/v3/repos/MyOrganization/:repo/git/blobs/:sha", (context, repo, sha) -> getBlob(repo, sha));
+
+                    routes.get("/api/v3/search/code?q=:searchQuery&per_page=100", (context, searchQuery) -> getSearchResult(searchQuery));
                     routes.get("/api/v3/search/code?q=:searchQuery", (context, searchQuery) -> getSearchResult(searchQuery));
 
                     routes.get("/api/v3/orgs/MyOrganization/teams", this::getTeams);
@@ -175,6 +194,31 @@ public class GitHubMock implements RemoteServiceMock {
 
     }
 
+    /**
+     * with the raw media type, the contents endpoint returns the file itself instead of its metadata
+     */
+    private boolean isRawRequest(Context context) {
+        return RemoteGitHubImpl.APPLICATION_GITHUB_RAW.equals(context.header("Accept"));
+    }
+
+    private Object getRawPomXml(String repo) throws IOException {
+
+        pomXmlHits.add(repo);
+
+        return getActualPomXML(repo, "master");
+    }
+
+    private Object getRawRepoConfig(String repo) {
+
+        if (!repoConfigPerRepo.containsKey(repo)) {
+            repoConfigHits.add(repo);
+            log.info("\t .githubCrawler NOT FOUND");
+            throw new NotFoundException();
+        }
+
+        return getActualRepoConfig(repo);
+    }
+
     private Object getPomXmlFileOnRepo(String repo) throws IOException {
 
         log.debug("Getting pomXMl on repo...");
@@ -315,6 +359,58 @@ public class GitHubMock implements RemoteServiceMock {
         return repo + "-" + pathToResource;
     }
 
+    /**
+     * all the pom.xml in the mock have the same content, so the same blob SHA
+     */
+    private Payload getRootDirectoryListing(String repo) {
+
+        rootDirectoryListingHits.add(repo);
+
+        String pomXmlEntry = reposWithPomXml.contains(repo) ?
+                "{\"name\": \"pom.xml\", \"path\": \"pom.xml\", \"type\": \"file\", \"sha\": \"" + POM_XML_BLOB_SHA + "\"}," : "";
+
+        return new Payload("application/json", "[" + pomXmlEntry + "{\"name\": \"src\", \"path\": \"src\", \"type\": \"dir\", \"sha\": \"9b2f1f4c3a6e2d4b5c6e7f8091a2b3c4d5e6f708\"}]");
+    }
+
+    /**
+     * only when enabled, so that the other tests keep fetching files by path
+     */
+    private Payload getFileTree(String repo) {
+
+        if (!shouldServeFileTrees) {
+            throw new NotFoundException();
+        }
+
+        String pomXmlEntry = reposWithPomXml.contains(repo) ?
+                "{\"path\": \"pom.xml\", \"mode\": \"100644\", \"type\": \"blob\", \"sha\": \"" + POM_XML_BLOB_SHA + "\"}," : "";
+
+        return new Payload("application/json", "{\"sha\": \"9b2f1f4c3a6e2d4b5c6e7f8091a2b3c4d5e6f708\", \"truncated\": false, \"tree\": [" + pomXmlEntry +
+                "{\"path\": \"src\", \"mode\": \"040000\", \"type\": \"tree\", \"sha\": \"9b2f1f4c3a6e2d4b5c6e7f8091a2b3c4d5e6f708\"}]}");
+    }
+
+    private Object getBlob(String repo, String sha) throws IOException {
+
+        blobHits.add(repo);
+
+        if (!POM_XML_BLOB_SHA.equals(sha)) {
+            throw new NotFoundException();
+        }
+
+        return getActualPomXML(repo, "master");
+    }
+
+    public void setServeFileTrees(boolean shouldServeFileTrees) {
+        this.shouldServeFileTrees = shouldServeFileTrees;
+    }
+
+    public List<String> getBlobHits() {
+        return blobHits;
+    }
+
+    public List<String> getRootDirectoryListingHits() {
+        return rootDirectoryListingHits;
+    }
+
     private Payload getBranches(String repoName) throws IOException {
 
         log.debug("received a branches request for repo {}..", repoName);
@@ -392,6 +488,9 @@ public class GitHubMock implements RemoteServiceMock {
         hasCalledNextPage = false;
         existingResources.clear();
         searchHitsCount = 0;
+        rootDirectoryListingHits.clear();
+        blobHits.clear();
+        shouldServeFileTrees = false;
         nbHitsOnUserRepos = 0;
         shouldReturnError409OnFetchCommits=false;
     }
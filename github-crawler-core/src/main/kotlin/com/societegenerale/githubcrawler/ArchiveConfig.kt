@@ -0,0 +1,11 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * When at least [minFilesToParse] files are configured in indicatorsToFetchByFile, the archive of each branch to parse gets downloaded once,
+ * and the files are extracted from it, instead of being fetched one by one. Only available on GitHub : other source controls keep fetching files one by one.
+ */
+@ConfigurationProperties("crawler.source-control.archive")
+class ArchiveConfig(var enabled: Boolean = true,
+                    var minFilesToParse: Int = 10)
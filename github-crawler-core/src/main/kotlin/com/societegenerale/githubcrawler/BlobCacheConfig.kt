@@ -0,0 +1,15 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * When enabled (GitHub only), the content of fetched files is kept on disk in [directory], addressed by git blob SHA, up to [maxSizeInMb] :
+ * files with the same content in several repositories, branches or crawls are downloaded only once.
+ *
+ * To know the blob SHA of a file before downloading it, we list the directory it's in once per repository and branch : this also tells us,
+ * without any further call, which of the files we look for don't exist.
+ */
+@ConfigurationProperties("crawler.source-control.blob-cache")
+class BlobCacheConfig(var enabled: Boolean = false,
+                      var directory: String = "blobCache",
+                      var maxSizeInMb: Long = 256)
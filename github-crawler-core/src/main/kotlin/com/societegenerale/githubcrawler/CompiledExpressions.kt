@@ -0,0 +1,158 @@
+package com.societegenerale.githubcrawler
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.UncheckedExecutionException
+import com.jayway.jsonpath.JsonPath
+import com.societegenerale.githubcrawler.parsers.CountXmlElementsParser
+import com.societegenerale.githubcrawler.parsers.FirstMatchingRegexpParser
+import com.societegenerale.githubcrawler.parsers.JsonPathParser
+import org.dom4j.InvalidXPathException
+import org.dom4j.Node
+import org.dom4j.xpath.DefaultNamespaceContext
+import org.jaxen.Context
+import org.jaxen.ContextSupport
+import org.jaxen.JaxenException
+import org.jaxen.SimpleVariableContext
+import org.jaxen.XPathFunctionContext
+import org.jaxen.dom4j.DocumentNavigator
+import org.jaxen.dom4j.Dom4jXPath
+import org.jaxen.expr.Expr
+import org.slf4j.LoggerFactory
+import java.util.regex.Pattern
+import java.util.regex.PatternSyntaxException
+
+/**
+ * The expressions we get from config (regular expressions, XPath, JsonPath) are the same for all the repositories : they're compiled once,
+ * and shared by all the parsers and filters. They're compiled at startup from [GitHubCrawlerProperties], and on first use for the other ones -
+ * caches are bounded, since parsers may also get expressions that don't come from the crawler config.
+ */
+object CompiledExpressions {
+
+    private const val MAX_EXPRESSIONS_PER_TYPE = 1000L
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private val patterns: Cache<String, Pattern> = CacheBuilder.newBuilder().maximumSize(MAX_EXPRESSIONS_PER_TYPE).build()
+
+    private val xPaths: Cache<String, CompiledXPath> = CacheBuilder.newBuilder().maximumSize(MAX_EXPRESSIONS_PER_TYPE).build()
+
+    private val jsonPaths: Cache<String, JsonPath> = CacheBuilder.newBuilder().maximumSize(MAX_EXPRESSIONS_PER_TYPE).build()
+
+    private val repositoryNameMatchers: Cache<List<String>, RepositoryNameMatcher> = CacheBuilder.newBuilder().maximumSize(MAX_EXPRESSIONS_PER_TYPE).build()
+
+    fun pattern(regex: String): Pattern = compile(patterns, regex) { Pattern.compile(regex) }
+
+    fun xPath(xPathExpression: String): CompiledXPath = compile(xPaths, xPathExpression) { CompiledXPath(xPathExpression) }
+
+    fun jsonPath(jsonPathExpression: String): JsonPath = compile(jsonPaths, jsonPathExpression) { JsonPath.compile(jsonPathExpression) }
+
+    fun repositoryNameMatcher(namePatterns: List<String>): RepositoryNameMatcher = compile(repositoryNameMatchers, namePatterns) { RepositoryNameMatcher(namePatterns) }
+
+    /**
+     * compiles the expressions configured for the crawl. An invalid expression is only logged here : it will fail where it gets used
+     */
+    fun precompile(gitHubCrawlerProperties: GitHubCrawlerProperties) {
+
+        gitHubCrawlerProperties.indicatorsToFetchByFile.values.flatten().forEach { indicator ->
+            try {
+                when (indicator.type) {
+                    FirstMatchingRegexpParser.FIND_FIRST_VALUE_WITH_REGEXP_CAPTURE_METHOD -> indicator.params[FirstMatchingRegexpParser.PATTERN]?.let { pattern(it) }
+                    CountXmlElementsParser.COUNT_XML_ELEMENTS_METHOD -> indicator.params[CountXmlElementsParser.XPATH_TO_MATCH]?.let { xPath(it) }
+                    JsonPathParser.FIND_JSONPATH_VALUE_METHOD -> indicator.params[JsonPathParser.JSON_PATH]?.let { jsonPath(it) }
+                }
+            } catch (e: RuntimeException) {
+                log.warn("can't compile the expression configured for indicator ${indicator.name}", e)
+            }
+        }
+
+        listOf(gitHubCrawlerProperties.repositoriesToExclude, gitHubCrawlerProperties.repositoriesToInclude)
+            .filter { it.isNotEmpty() }
+            .forEach { repositoryNameMatcher(it) }
+    }
+
+    private fun <K : Any, V : Any> compile(cache: Cache<K, V>, expression: K, compiler: () -> V): V {
+
+        try {
+            return cache.get(expression) { compiler() }
+        } catch (e: UncheckedExecutionException) {
+            // same exception as if the expression had been compiled directly
+            throw e.cause ?: e
+        }
+    }
+
+}
+
+/**
+ * An XPath that can be evaluated by several threads at the same time : a dom4j XPath sets the namespace context of the evaluated document on itself,
+ * whereas here each evaluation gets its own context - only the parsed expression is shared.
+ */
+class CompiledXPath(private val xPathExpression: String) {
+
+    private val rootExpr: Expr = try {
+        Dom4jXPath(xPathExpression).rootExpr
+    } catch (e: JaxenException) {
+        // same exception as dom4j, when it can't parse the expression
+        throw InvalidXPathException(xPathExpression, e.message)
+    }
+
+    /**
+     * @return the nodes matching the expression - or a single value, when the expression doesn't select nodes (like count(...))
+     */
+    fun selectNodes(node: Node): List<*> {
+
+        val contextSupport = ContextSupport(DefaultNamespaceContext.create(node), XPathFunctionContext.getInstance(), SimpleVariableContext(), DocumentNavigator.getInstance())
+
+        val context = Context(contextSupport)
+        context.nodeSet = listOf(node)
+
+        return when (val result = rootExpr.evaluate(context)) {
+            is List<*> -> result
+            else -> listOf(result)
+        }
+    }
+
+    override fun toString(): String {
+        return xPathExpression
+    }
+
+}
+
+/**
+ * Tells whether a repository name matches any of the patterns (found anywhere in the name), with a single regular expression combining all of them
+ * as alternatives : one matcher per repository, instead of one per pattern.
+ *
+ * Patterns that can't be combined without changing their meaning (back references, or same named groups) are matched one by one.
+ */
+class RepositoryNameMatcher(namePatterns: List<String>) {
+
+    companion object {
+        private val BACK_REFERENCE = Regex("""\\[1-9]|\\k<""")
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private val patterns: List<Pattern> = combine(namePatterns)
+
+    private fun combine(namePatterns: List<String>): List<Pattern> {
+
+        if (namePatterns.none { BACK_REFERENCE.containsMatchIn(it) }) {
+            try {
+                return listOf(Pattern.compile(namePatterns.joinToString("|") { "(?:$it)" }))
+            } catch (e: PatternSyntaxException) {
+                log.debug("can't combine patterns {} - they'll be matched one by one", namePatterns)
+            }
+        }
+
+        return namePatterns.map { Pattern.compile(it) }
+    }
+
+    fun matches(repositoryName: String): Boolean {
+
+        val matchingPattern = patterns.firstOrNull { it.matcher(repositoryName).find() } ?: return false
+
+        log.debug("repo {} matched on exclusion/inclusion pattern {}", repositoryName, matchingPattern.pattern())
+        return true
+    }
+
+}
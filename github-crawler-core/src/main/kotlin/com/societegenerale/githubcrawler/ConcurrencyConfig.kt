@@ -0,0 +1,23 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * Crawling repositories is mostly waiting for the remote source control to answer, so the number of repositories processed at the same time
+ * is not bound to the number of cores : it's configured here, and only used when crawling in parallel.
+ *
+ * - in [CrawlMode.WORKER_POOL] mode (the default), repositories are processed by a fixed number of workers
+ * - in [CrawlMode.VIRTUAL_THREADS] mode, each repository, and each file fetched in it, gets its own virtual thread : what limits the concurrency is then the number of requests in flight
+ *
+ * In both modes, the files of a given repository (on all the branches to parse) are fetched in parallel, but never more than [maxFileFetchesPerRepository] at the same time,
+ * so that a few huge repositories don't take all the capacity. Setting it to 1 means the files of a repository are fetched one after the other.
+ */
+@ConfigurationProperties("crawler.concurrency")
+class ConcurrencyConfig(var mode: CrawlMode = CrawlMode.WORKER_POOL,
+                        var workers: Int = Runtime.getRuntime().availableProcessors(),
+                        var maxInFlightRequests: Int = 256,
+                        var maxFileFetchesPerRepository: Int = 8)
+
+enum class CrawlMode {
+  WORKER_POOL, VIRTUAL_THREADS
+}
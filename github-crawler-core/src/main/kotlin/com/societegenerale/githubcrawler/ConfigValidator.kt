@@ -28,6 +28,22 @@ class ConfigValidator(val properties : GitHubCrawlerProperties,
             validationErrors.add("organization can't be empty")
         }
 
+        if(properties.concurrency.workers < 1){
+            validationErrors.add("concurrency.workers needs to be at least 1")
+        }
+
+        if(properties.concurrency.maxInFlightRequests < 1){
+            validationErrors.add("concurrency.maxInFlightRequests needs to be at least 1")
+        }
+
+        if(properties.concurrency.maxFileFetchesPerRepository < 1){
+            validationErrors.add("concurrency.maxFileFetchesPerRepository needs to be at least 1")
+        }
+
+        if(properties.sourceControl.httpClient.maxRequestsPerHost < 1){
+            validationErrors.add("source-control.http-client.maxRequestsPerHost needs to be at least 1")
+        }
+
         if(validationErrors.isNotEmpty()){
             return ImmutableList.copyOf(validationErrors)
         }
@@ -0,0 +1,82 @@
+package com.societegenerale.githubcrawler
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.SynchronousQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+/**
+ * Builds the executors the crawl runs on, depending on the configured [CrawlMode].
+ *
+ * Virtual threads are only available from JDK 21 : since we still build for older JDKs, we look them up at runtime, and fall back on a pool of
+ * [ConcurrencyConfig.maxInFlightRequests] platform threads when they are not available.
+ */
+object CrawlExecutors {
+
+    private val log = LoggerFactory.getLogger(CrawlExecutors::class.java)
+
+    fun newRepositoriesExecutor(config: ConcurrencyConfig): ExecutorService {
+
+        return when (config.mode) {
+            CrawlMode.WORKER_POOL -> Executors.newFixedThreadPool(config.workers, threadFactory("crawler-worker-%d"))
+            CrawlMode.VIRTUAL_THREADS -> newVirtualThreadPerTaskExecutor() ?: Executors.newFixedThreadPool(config.maxInFlightRequests, threadFactory("crawler-worker-%d"))
+        }
+    }
+
+    /**
+     * @return the executor on which the files of a repository get fetched, or null if they should be fetched sequentially, by the thread processing the repository
+     */
+    fun newFileFetchesExecutor(config: ConcurrencyConfig): ExecutorService? {
+
+        if (config.maxFileFetchesPerRepository <= 1) {
+            return null
+        }
+
+        return when (config.mode) {
+            // each worker has at most maxFileFetchesPerRepository fetches in progress, so we never need more threads than that.
+            // But a thread that has just completed a fetch still counts until it's back waiting for the next one : when the pool is momentarily full,
+            // the worker performs the fetch itself instead of failing the repository
+            CrawlMode.WORKER_POOL -> ThreadPoolExecutor(0, config.workers * config.maxFileFetchesPerRepository,
+                                                        60L, TimeUnit.SECONDS, SynchronousQueue(),
+                                                        threadFactory("crawler-fetcher-%d"),
+                                                        ThreadPoolExecutor.CallerRunsPolicy())
+            CrawlMode.VIRTUAL_THREADS -> newVirtualThreadPerTaskExecutor() ?: Executors.newFixedThreadPool(config.maxInFlightRequests, threadFactory("crawler-fetcher-%d"))
+        }
+    }
+
+    /**
+     * @return how many discovered repositories can be waiting for (or be in) processing at the same time
+     */
+    fun maxPendingRepositories(config: ConcurrencyConfig): Int {
+
+        return when (config.mode) {
+            CrawlMode.WORKER_POOL -> config.workers * 2
+            CrawlMode.VIRTUAL_THREADS -> config.maxInFlightRequests
+        }
+    }
+
+    fun newRequestBudget(config: ConcurrencyConfig): RequestBudget {
+
+        return when (config.mode) {
+            CrawlMode.WORKER_POOL -> RequestBudget.UNLIMITED
+            CrawlMode.VIRTUAL_THREADS -> RequestBudget(config.maxInFlightRequests)
+        }
+    }
+
+    private fun newVirtualThreadPerTaskExecutor(): ExecutorService? {
+
+        return try {
+            Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor").invoke(null) as ExecutorService
+        } catch (e: ReflectiveOperationException) {
+            log.warn("virtual threads are not available on this JVM (they require JDK 21+) - falling back on platform threads")
+            null
+        }
+    }
+
+    //daemon threads, so that a long lived executor doesn't prevent the JVM from exiting once the crawl is over
+    private fun threadFactory(nameFormat: String) = ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build()
+
+}
@@ -0,0 +1,180 @@
+package com.societegenerale.githubcrawler
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.fasterxml.jackson.module.kotlin.readValue
+import com.google.common.hash.Hashing
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Remembers, from one crawl to the next, what we've computed for each repository, so that repositories that haven't changed don't need to be crawled again.
+ */
+interface CrawlStateStore {
+
+    /**
+     * @return the repository with the results computed during a previous crawl, or null if it has changed since (or if we don't know)
+     */
+    fun restoreIfUnchanged(repository: Repository): Repository?
+
+    fun record(repository: Repository)
+
+    /**
+     * called once the crawl is over
+     */
+    @Throws(IOException::class)
+    fun save()
+
+    companion object {
+
+        val NONE: CrawlStateStore = object : CrawlStateStore {
+
+            override fun restoreIfUnchanged(repository: Repository): Repository? = null
+
+            override fun record(repository: Repository) {}
+
+            override fun save() {}
+        }
+
+        /**
+         * @return a hash of the config that drives what we compute for each repository : results computed with another config can't be reused
+         */
+        fun configFingerprint(properties: GitHubCrawlerProperties): String {
+
+            val mapper = jacksonObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+
+            val relevantConfig = mapOf("indicatorsToFetchByFile" to properties.indicatorsToFetchByFile.mapKeys { it.key.toString() },
+                                       "crawlAllBranches" to properties.crawlAllBranches,
+                                       "repositoriesToExclude" to properties.repositoriesToExclude,
+                                       "repositoriesToInclude" to properties.repositoriesToInclude,
+                                       "publishExcludedRepositories" to properties.publishExcludedRepositories)
+
+            return Hashing.sha256().hashString(mapper.writeValueAsString(relevantConfig), StandardCharsets.UTF_8).toString()
+        }
+    }
+}
+
+/**
+ * What we keep of a repository : since GitHub updates pushed_at on a push to any branch, a repository with the same pushed_at as in the previous crawl
+ * has the same content on all its branches.
+ *
+ * Results of the misc tasks are not kept : they may depend on things that don't change pushed_at (pull requests opened from a fork, or closed without
+ * being merged..), so they're computed again on each crawl.
+ */
+data class RepositoryState(val pushedAt: Date,
+                           val excluded: Boolean,
+                           val reason: String?,
+                           // states saved before it was recorded are restored as not skipped
+                           val skipped: Boolean = false,
+                           val branchesToParse: List<String>,
+                           val indicators: Map<String, Map<String, Any>>) {
+
+    fun applyTo(repository: Repository): Repository {
+
+        return repository.copy(excluded = excluded,
+                               reason = reason,
+                               skipped = skipped,
+                               branchesToParse = branchesToParse.map { Branch(it) }.toSet(),
+                               indicators = indicators.mapKeys { Branch(it.key) })
+    }
+
+    companion object {
+
+        fun of(repository: Repository): RepositoryState? {
+
+            val pushedAt = repository.lastPushDate ?: return null
+
+            return RepositoryState(pushedAt,
+                                   repository.excluded,
+                                   repository.reason,
+                                   repository.skipped,
+                                   repository.branchesToParse.map { it.name },
+                                   repository.indicators.mapKeys { it.key.name })
+        }
+    }
+}
+
+/**
+ * Keeps the state in a JSON file : it's loaded when the store gets created, and rewritten when the crawl is over, with only the repositories crawled this time.
+ *
+ * Repositories that failed during the crawl are not recorded, so they get crawled again next time.
+ */
+class FileCrawlStateStore(private val stateFile: Path,
+                          private val configFingerprint: String) : CrawlStateStore {
+
+    private class StateFileContent(val configFingerprint: String = "",
+                                   val repositories: Map<String, RepositoryState> = emptyMap())
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    // states saved by previous versions may have fields we don't keep anymore
+    private val mapper = jacksonObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+
+    private val previousStates: Map<String, RepositoryState> = load()
+
+    private val currentStates = ConcurrentHashMap<String, RepositoryState>()
+
+    private fun load(): Map<String, RepositoryState> {
+
+        if (!Files.exists(stateFile)) {
+            log.info("no crawl state found in $stateFile - all repositories will be crawled")
+            return emptyMap()
+        }
+
+        val previousContent = try {
+            mapper.readValue<StateFileContent>(stateFile.toFile())
+        } catch (e: IOException) {
+            log.warn("unable to read crawl state from $stateFile - all repositories will be crawled", e)
+            return emptyMap()
+        }
+
+        if (previousContent.configFingerprint != configFingerprint) {
+            log.info("crawler config has changed since the crawl state was saved - all repositories will be crawled")
+            return emptyMap()
+        }
+
+        log.info("loaded crawl state of ${previousContent.repositories.size} repositories from $stateFile")
+
+        return previousContent.repositories
+    }
+
+    override fun restoreIfUnchanged(repository: Repository): Repository? {
+
+        val pushedAt = repository.lastPushDate ?: return null
+
+        val previousState = previousStates[repository.fullName]?.takeIf { it.pushedAt == pushedAt } ?: return null
+
+        currentStates[repository.fullName] = previousState
+
+        return previousState.applyTo(repository)
+    }
+
+    override fun record(repository: Repository) {
+
+        RepositoryState.of(repository)?.let { currentStates[repository.fullName] = it }
+    }
+
+    override fun save() {
+
+        val stateDirectory = Files.createDirectories(stateFile.toAbsolutePath().parent)
+
+        // written next to the target first, so that a crash while writing doesn't leave a corrupted state behind
+        val tmpFile = Files.createTempFile(stateDirectory, stateFile.fileName.toString(), ".tmp")
+
+        mapper.writeValue(tmpFile.toFile(), StateFileContent(configFingerprint, TreeMap(currentStates)))
+
+        Files.move(tmpFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+
+        log.info("saved crawl state of ${currentStates.size} repositories in $stateFile")
+    }
+
+}
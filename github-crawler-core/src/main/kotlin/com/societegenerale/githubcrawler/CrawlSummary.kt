@@ -0,0 +1,86 @@
+package com.societegenerale.githubcrawler
+
+import com.societegenerale.githubcrawler.model.Repository
+import com.societegenerale.githubcrawler.output.OutputStats
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * What we keep of a crawl once it's over : repositories are published to the outputs as soon as they've been processed, and then dropped,
+ * so that memory usage doesn't depend on the size of the organization.
+ *
+ * Counters are updated concurrently by the threads processing the repositories.
+ */
+class CrawlSummary {
+
+    private val discovered = AtomicInteger()
+
+    private val published = AtomicInteger()
+
+    private val excluded = AtomicInteger()
+
+    private val unchanged = AtomicInteger()
+
+    private val failures = ConcurrentHashMap<String, String>()
+
+    private val outputs = ConcurrentHashMap<String, OutputStats>()
+
+    val nbDiscoveredRepositories: Int
+        get() = discovered.get()
+
+    val nbPublishedRepositories: Int
+        get() = published.get()
+
+    /**
+     * repositories that were excluded, and therefore not published
+     */
+    val nbExcludedRepositories: Int
+        get() = excluded.get()
+
+    /**
+     * repositories that hadn't changed since the previous crawl, and were published with the results computed then (incremental crawl only)
+     */
+    val nbUnchangedRepositories: Int
+        get() = unchanged.get()
+
+    /**
+     * full name of the repositories we failed to process, with the corresponding error message
+     */
+    val failedRepositories: Map<String, String>
+        get() = HashMap(failures)
+
+    /**
+     * what happened in each output, by output class name - only when publishing asynchronously
+     */
+    val outputStats: Map<String, OutputStats>
+        get() = HashMap(outputs)
+
+    fun recordDiscovered() {
+        discovered.incrementAndGet()
+    }
+
+    fun recordPublished() {
+        published.incrementAndGet()
+    }
+
+    fun recordExcluded() {
+        excluded.incrementAndGet()
+    }
+
+    fun recordUnchanged() {
+        unchanged.incrementAndGet()
+    }
+
+    fun recordFailure(repository: Repository, e: Exception) {
+        failures[repository.fullName] = e.message ?: e.javaClass.name
+    }
+
+    fun recordOutputStats(outputName: String, stats: OutputStats) {
+        outputs[outputName] = stats
+    }
+
+    override fun toString(): String {
+        return "$nbDiscoveredRepositories repositories discovered : $nbPublishedRepositories published ($nbUnchangedRepositories unchanged since previous crawl), $nbExcludedRepositories excluded, ${failures.size} in error"
+    }
+
+}
@@ -5,6 +5,10 @@ import org.springframework.core.convert.TypeDescriptor
 import org.springframework.lang.Nullable
 
 
+/**
+ * @param name path of the file from the root of the repository. It can also be a glob pattern (like "src/main/resources/application*.yml"), when the source control can list
+ * the files of a branch (see FileTree) : the first matching file gets parsed, the shallowest first
+ */
 data class FileToParse(val name: String,
                        val redirectTo: String?)
 
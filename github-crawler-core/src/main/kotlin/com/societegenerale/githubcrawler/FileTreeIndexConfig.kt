@@ -0,0 +1,10 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * When enabled (GitHub only), all the files of each branch to parse are listed in a single call, before fetching anything : files that aren't there
+ * are skipped without a call, the others are fetched by blob SHA, and glob patterns can be used in indicatorsToFetchByFile.
+ */
+@ConfigurationProperties("crawler.source-control.file-tree-index")
+class FileTreeIndexConfig(var enabled: Boolean = true)
@@ -2,14 +2,17 @@ package com.societegenerale.githubcrawler
 
 import com.societegenerale.githubcrawler.model.Repository
 import com.societegenerale.githubcrawler.output.GitHubCrawlerOutput
+import com.societegenerale.githubcrawler.output.QueuedOutput
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import com.societegenerale.githubcrawler.repoTaskToPerform.RepoTaskToPerform
 import org.slf4j.LoggerFactory
 import org.springframework.core.env.Environment
 import java.io.IOException
+import java.nio.file.Paths
 import java.text.SimpleDateFormat
 import java.util.*
-import java.util.stream.Collectors.toList
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
 
 class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
                     private val output: List<GitHubCrawlerOutput>,
@@ -18,7 +21,8 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
                     private val environment: Environment,
                     private val organizationName: String,
                     private val configValidator: ConfigValidator,
-                    private val availableParsersAndTasks : AvailableParsersAndTasks) {
+                    private val availableParsersAndTasks : AvailableParsersAndTasks,
+                    private val crawlStateStore: CrawlStateStore = CrawlStateStore.NONE) {
 
     companion object {
         const val NO_CRAWLER_RUN_ID_DEFINED: String = "NO_CRAWLER_RUN_ID_DEFINED"
@@ -28,8 +32,15 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
 
     val tasksToPerform = ArrayList<RepoTaskToPerform>()
 
+    // the outputs repositories get published to during the current crawl
+    @Volatile
+    private var outputsOfCrawl: List<GitHubCrawlerOutput> = output
+
+    /**
+     * @return a summary of the crawl - the repositories themselves are not retained, they're only sent to the configured outputs
+     */
     @Throws(IOException::class)
-    fun crawl() {
+    fun crawl(): CrawlSummary {
 
         val configValidationErrors = configValidator.getValidationErrors()
 
@@ -37,6 +48,8 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
             throw IllegalStateException("There are some config validation errors - please double check the config. \n" + configValidationErrors.joinToString(separator = "\n", prefix = "\t - "))
         }
 
+        CompiledExpressions.precompile(gitHubCrawlerProperties)
+
         gitHubCrawlerProperties.miscRepositoryTasks.forEach{
 
             val matchingTaskBuilder=availableParsersAndTasks.getRepoTasksBuilderByType(it.type)
@@ -45,18 +58,85 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
 
         }
 
-        val repositoriesFromOrga = remoteSourceControl.fetchRepositories(organizationName)
+        outputsOfCrawl = buildOutputsOfCrawl(gitHubCrawlerProperties.publishing)
+
+        // repositories are crawled as they get discovered, without waiting for the whole organization to be listed
+        val repositoriesFromOrga = remoteSourceControl.streamRepositories(organizationName)
+
+        val crawlSummary = CrawlSummary()
+
+        try {
+            fetchAndParseRepoContent(repositoriesFromOrga, crawlSummary)
+        } finally {
+            // even when discovery fails midway, what has been published so far needs to be finalized, and remembered for next crawl
+            finalizeOutputs(crawlSummary)
+            saveCrawlState()
+        }
+
+        log.info("crawl is over - $crawlSummary")
 
-        fetchAndParseRepoContent(repositoriesFromOrga)
+        return crawlSummary
+    }
 
-        output.stream().forEach { singleOutput ->
+    private fun finalizeOutputs(crawlSummary: CrawlSummary) {
+
+        outputsOfCrawl.stream().forEach { singleOutput ->
             try {
                 singleOutput.finalizeOutput()
-            } catch (e: IOException) {
+            } catch (e: Exception) {
                 log.warn("problem while calling finalize on an output", e)
             }
+
+            if (singleOutput is QueuedOutput) {
+                crawlSummary.recordOutputStats(singleOutput.name, singleOutput.stats())
+            }
         }
+    }
+
+    private fun saveCrawlState() {
 
+        try {
+            crawlStateStore.save()
+        } catch (e: IOException) {
+            log.warn("problem while saving the crawl state - next crawl will process all repositories again", e)
+        }
+    }
+
+    /**
+     * when publishing asynchronously, each output gets its own queue, for the duration of the crawl
+     */
+    private fun buildOutputsOfCrawl(publishing: PublishingConfig): List<GitHubCrawlerOutput> {
+
+        if (!publishing.asynchronous) {
+            return output
+        }
+
+        log.info("publishing to each output from its own thread, with queues of ${publishing.queueCapacity} repositories - ${publishing.backpressure} when full")
+
+        return output.zip(outputNames(output)) { singleOutput, name ->
+            QueuedOutput(singleOutput, publishing.queueCapacity, publishing.backpressure, Paths.get(publishing.spillDirectory), name)
+        }
+    }
+
+    /**
+     * outputs are named after their class, with their position among the outputs of the same class when there are several of them : FileOutput-1, FileOutput-2..
+     */
+    private fun outputNames(outputs: List<GitHubCrawlerOutput>): List<String> {
+
+        val nbOutputsByClassName = outputs.groupingBy { it.javaClass.simpleName }.eachCount()
+
+        val lastPositionByClassName = HashMap<String, Int>()
+
+        return outputs.map { singleOutput ->
+
+            val className = singleOutput.javaClass.simpleName
+
+            if (nbOutputsByClassName.getValue(className) == 1) {
+                className
+            } else {
+                "$className-${lastPositionByClassName.merge(className, 1, Int::plus)}"
+            }
+        }
     }
 
     fun getGitHubCrawlerProperties(): GitHubCrawlerProperties {
@@ -65,7 +145,7 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
 
 
     @Throws(IOException::class)
-    private fun fetchAndParseRepoContent(repositoriesFromOrga: Set<Repository>) {
+    private fun fetchAndParseRepoContent(repositoriesFromOrga: Sequence<Repository>, crawlSummary: CrawlSummary) {
 
         log.info("active Spring profiles that we'll use as group attribute :")
         environment.activeProfiles.asIterable().forEach({ it -> log.info("- $it") })
@@ -73,26 +153,116 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
         val crawlerRunId: String = SimpleDateFormat("yyyyMMdd_HHmmss").format(Date())
         log.info("crawler run ID : $crawlerRunId")
 
-        log.info("${repositoriesFromOrga.size} repositories to crawl...")
-
-        val repoStream = if (gitHubCrawlerProperties.crawlInParallel) repositoriesFromOrga.parallelStream() else repositoriesFromOrga.stream()
-
-        repoStream.map { repo -> logRepoProcessing(repo) }
-                .map { repo -> repo.flagAsExcludedIfRequired(gitHubCrawlerProperties) }
-                .filter { repo -> shouldKeepForFurtherProcessing(repo, gitHubCrawlerProperties) }
-                .map { repo -> repositoryEnricher.loadRepoSpecificConfigIfAny(repo) }
-                .map { repo -> repo.flagAsExcludedIfConfiguredAtRepoLevel() }
-                .filter { repo -> shouldKeepForFurtherProcessing(repo, gitHubCrawlerProperties) }
-                .map { repo -> repo.copy(crawlerRunId = crawlerRunId) }
-                .map { repo -> repo.copyTagsFromRepoTopics() }
-                .map { repo -> repo.addGroups(environment.activeProfiles) }
-                .map { repo -> repositoryEnricher.identifyBranchesToParse(repo, gitHubCrawlerProperties.crawlAllBranches) }
-                .map { repo -> repositoryEnricher.fetchIndicatorsValues(repo, gitHubCrawlerProperties) }
-                .map {repo -> repositoryEnricher.performMiscTasks(repo, tasksToPerform) }
-                .map { repo -> publish(repo) }
-                //calling collect to trigger the stream processing
-                .collect(toList())
+        if (gitHubCrawlerProperties.crawlInParallel) {
+            crawlInParallel(repositoriesFromOrga, crawlerRunId, crawlSummary)
+        } else {
+            repositoriesFromOrga.forEach { repo -> crawlRepository(repo, crawlerRunId, crawlSummary) }
+        }
+    }
+
+    /**
+     * Processing is mostly waiting for the remote source control, so we use a dedicated executor rather than the common ForkJoinPool (sized on the number of cores,
+     * and shared with the rest of the JVM) : see [ConcurrencyConfig] for the available modes.
+     */
+    private fun crawlInParallel(repositoriesFromOrga: Sequence<Repository>, crawlerRunId: String, crawlSummary: CrawlSummary) {
+
+        val concurrency = gitHubCrawlerProperties.concurrency
+
+        when (concurrency.mode) {
+            CrawlMode.WORKER_POOL -> log.info("crawling with ${concurrency.workers} workers in parallel")
+            CrawlMode.VIRTUAL_THREADS -> log.info("crawling on virtual threads, with at most ${concurrency.maxInFlightRequests} requests in flight")
+        }
+
+        val crawlExecutor = CrawlExecutors.newRepositoriesExecutor(concurrency)
+
+        // discovery waits when too many repositories are pending, so that it doesn't get too far ahead of their processing
+        val pendingRepositories = Semaphore(CrawlExecutors.maxPendingRepositories(concurrency))
+
+        try {
+            // submitted as soon as discovered, so the workers start while the next pages of repositories are being fetched
+            repositoriesFromOrga.forEach { repo ->
+
+                pendingRepositories.acquire()
+
+                crawlExecutor.execute {
+                    try {
+                        crawlRepository(repo, crawlerRunId, crawlSummary)
+                    } finally {
+                        pendingRepositories.release()
+                    }
+                }
+            }
+        } finally {
+            // when discovery fails, the repositories already handed over to the workers still get processed and published
+            crawlExecutor.shutdown()
+
+            try {
+                crawlExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+            } catch (e: InterruptedException) {
+                crawlExecutor.shutdownNow()
+                Thread.currentThread().interrupt()
+            }
+        }
+    }
+
+    /**
+     * A failure on a repository is recorded in the summary, and doesn't prevent the other repositories from being crawled
+     */
+    private fun crawlRepository(repository: Repository, crawlerRunId: String, crawlSummary: CrawlSummary) {
+
+        crawlSummary.recordDiscovered()
+
+        try {
+            val publishedRepository = processRepository(repository, crawlerRunId, crawlSummary)
+
+            if (publishedRepository != null) {
+                crawlSummary.recordPublished()
+            } else {
+                crawlSummary.recordExcluded()
+            }
+        } catch (e: Exception) {
+            log.error("problem while crawling repo ${repository.fullName} - moving on to the next one", e)
+            crawlSummary.recordFailure(repository, e)
+        }
+    }
+
+    /**
+     * @return the published repository, or null if it got excluded along the way
+     */
+    private fun processRepository(repository: Repository, crawlerRunId: String, crawlSummary: CrawlSummary): Repository? {
+
+        val repoToProcess = logRepoProcessing(repository)
+                .flagAsExcludedIfRequired(gitHubCrawlerProperties)
+                .takeIf { repo -> shouldKeepForFurtherProcessing(repo, gitHubCrawlerProperties) }
+                ?: return null
+
+        val unchangedRepo = crawlStateStore.restoreIfUnchanged(repoToProcess)
+
+        if (unchangedRepo != null) {
+            log.info("repo ${repository.name} hasn't changed since previous crawl - publishing previous indicators")
+            crawlSummary.recordUnchanged()
+
+            // misc tasks results may change without any push, so they're not part of the previous results
+            return unchangedRepo
+                    .takeIf { repo -> shouldKeepForFurtherProcessing(repo, gitHubCrawlerProperties) }
+                    ?.copy(crawlerRunId = crawlerRunId)
+                    ?.copyTagsFromRepoTopics()
+                    ?.addGroups(environment.activeProfiles)
+                    ?.let { repo -> repositoryEnricher.performMiscTasks(repo, tasksToPerform) }
+                    ?.let { repo -> publish(repo) }
+        }
 
+        return repositoryEnricher.loadRepoSpecificConfigIfAny(repoToProcess)
+                .flagAsExcludedIfConfiguredAtRepoLevel()
+                .takeIf { repo -> shouldKeepForFurtherProcessing(repo, gitHubCrawlerProperties) }
+                ?.copy(crawlerRunId = crawlerRunId)
+                ?.copyTagsFromRepoTopics()
+                ?.addGroups(environment.activeProfiles)
+                ?.let { repo -> repositoryEnricher.identifyBranchesToParse(repo, gitHubCrawlerProperties.crawlAllBranches) }
+                ?.let { repo -> repositoryEnricher.fetchIndicatorsValues(repo, gitHubCrawlerProperties) }
+                ?.let { repo -> repositoryEnricher.performMiscTasks(repo, tasksToPerform) }
+                ?.let { repo -> publish(repo) }
+                ?.also { repo -> crawlStateStore.record(repo) }
     }
 
     private fun logRepoProcessing(repo: Repository): Repository {
@@ -104,11 +274,11 @@ class GitHubCrawler(private val remoteSourceControl: RemoteSourceControl,
 
     private fun publish(repo: Repository): Repository {
 
-        output.stream().forEach { singleOutput ->
+        outputsOfCrawl.stream().forEach { singleOutput ->
             try {
                 singleOutput.output(repo)
             } catch (e: IOException) {
-                log.warn("unable to publish results for repo $repo in output $output", e)
+                log.warn("unable to publish results for repo $repo in output $singleOutput", e)
             }
         }
 
@@ -18,7 +18,13 @@ class GitHubCrawlerProperties(@NestedConfigurationProperty
                               var crawlInParallel: Boolean = true,
                               //even if we're not using it, declaring outputs here so that it shows in completion
                               val outputs: List<GitHubCrawlerOutput> = emptyList(),
-                              val miscRepositoryTasks: List<TaskDefinition>  = ArrayList()
+                              val miscRepositoryTasks: List<TaskDefinition>  = ArrayList(),
+                              @NestedConfigurationProperty
+                              val concurrency: ConcurrencyConfig = ConcurrencyConfig(),
+                              @NestedConfigurationProperty
+                              val incremental: IncrementalCrawlConfig = IncrementalCrawlConfig(),
+                              @NestedConfigurationProperty
+                              val publishing: PublishingConfig = PublishingConfig()
                               ){
   init{
     if(repositoriesToExclude.isNotEmpty() && repositoriesToInclude.isNotEmpty()){
@@ -0,0 +1,14 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * When enabled (GitHub only), the files to parse are fetched through the GraphQL API, up to [maxFilesPerQuery] files per query,
+ * across all the branches and repositories being crawled at the same time, with at most [maxConcurrentQueries] queries in flight.
+ *
+ * Binary files, files too big for GraphQL, and files of repositories GraphQL can't see are still fetched one by one.
+ */
+@ConfigurationProperties("crawler.source-control.graphql-batch")
+class GraphQLBatchConfig(var enabled: Boolean = false,
+                         var maxFilesPerQuery: Int = 50,
+                         var maxConcurrentQueries: Int = 4)
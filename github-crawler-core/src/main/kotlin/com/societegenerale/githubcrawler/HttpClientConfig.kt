@@ -0,0 +1,20 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * Settings of the HTTP client shared by all the calls we make to the remote source control. When crawling in parallel, reusing connections
+ * (rather than opening a new TLS connection for each call) makes a big difference, so the pool should be big enough for the configured concurrency.
+ *
+ * When [cacheDirectory] is set, responses are kept on disk (up to [cacheMaxSizeInMb]) from one crawl to the next, and every call becomes a conditional request
+ * (If-None-Match / If-Modified-Since) : when nothing has changed, the server answers 304 Not Modified without a body, which GitHub doesn't count in the rate limit.
+ */
+@ConfigurationProperties("crawler.source-control.http-client")
+class HttpClientConfig(var maxRequestsPerHost: Int = 64,
+                       var maxIdleConnections: Int = 64,
+                       var keepAliveSeconds: Long = 300,
+                       var connectTimeoutSeconds: Long = 10,
+                       var readTimeoutSeconds: Long = 60,
+                       var http2: Boolean = true,
+                       var cacheDirectory: String = "",
+                       var cacheMaxSizeInMb: Long = 100)
@@ -0,0 +1,13 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * When enabled, what we've computed for each repository is kept in [stateFile] from one crawl to the next : a repository that hasn't been pushed to since the previous crawl
+ * is published again with the same indicators and misc tasks results, without fetching anything.
+ *
+ * Stored results are not reused when the indicators or tasks configuration has changed in between.
+ */
+@ConfigurationProperties("crawler.incremental")
+class IncrementalCrawlConfig(var enabled: Boolean = false,
+                             var stateFile: String = "crawlerState.json")
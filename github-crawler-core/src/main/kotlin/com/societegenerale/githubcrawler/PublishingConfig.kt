@@ -0,0 +1,33 @@
+package com.societegenerale.githubcrawler
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * By default, each processed repository is handed to all the outputs one after the other, by the thread that processed it : a slow output slows down the crawl, and the other outputs.
+ *
+ * When [asynchronous], each output gets its own queue of [queueCapacity] repositories, and its own thread publishing them, so that crawling and publishing overlap.
+ * What happens when an output can't keep up and its queue is full depends on [backpressure].
+ */
+@ConfigurationProperties("crawler.publishing")
+class PublishingConfig(var asynchronous: Boolean = false,
+                       var queueCapacity: Int = 100,
+                       var backpressure: BackpressurePolicy = BackpressurePolicy.BLOCK,
+                       // only used with SPILL_TO_DISK
+                       var spillDirectory: String = System.getProperty("java.io.tmpdir"))
+
+enum class BackpressurePolicy {
+  /**
+   * the crawl waits for room in the queue : no repository is lost, but the slowest output sets the pace
+   */
+  BLOCK,
+
+  /**
+   * repositories that don't fit in the queue are not published to that output - they're counted in the crawl summary
+   */
+  DROP,
+
+  /**
+   * repositories that don't fit in the queue are written to a file, and published from there once the output has caught up
+   */
+  SPILL_TO_DISK
+}
@@ -3,22 +3,41 @@ package com.societegenerale.githubcrawler
 
 import com.societegenerale.githubcrawler.model.Branch
 import com.societegenerale.githubcrawler.model.Repository
+import com.societegenerale.githubcrawler.remote.FileToFetch
+import com.societegenerale.githubcrawler.remote.FileTree
 import com.societegenerale.githubcrawler.remote.NoFileFoundException
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import com.societegenerale.githubcrawler.repoTaskToPerform.RepoTaskToPerform
 import org.slf4j.LoggerFactory
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicInteger
 
 
+/**
+ * @param fileFetchesExecutor if provided, the files of a repository (on all its branches to parse) get fetched in parallel on it. Otherwise, they are fetched sequentially.
+ * @param requestBudget shared by all the calls we make to the remote source control, to limit the number of requests in flight
+ * @param maxFileFetchesPerRepository when fetching in parallel, the max number of fetches in progress at the same time for a given repository
+ */
 class RepositoryEnricher(val remoteSourceControl: RemoteSourceControl,
-                         val availableParsersAndTasks : AvailableParsersAndTasks = AvailableParsersAndTasks(emptyList(), emptyList())){
+                         val availableParsersAndTasks : AvailableParsersAndTasks = AvailableParsersAndTasks(emptyList(), emptyList()),
+                         private val fileFetchesExecutor: ExecutorService? = null,
+                         private val requestBudget: RequestBudget = RequestBudget.UNLIMITED,
+                         private val maxFileFetchesPerRepository: Int = Int.MAX_VALUE){
 
     val log = LoggerFactory.getLogger(this.javaClass)
 
+    /**
+     * a file to parse, once we've found where it is on the branch
+     */
+    private class FileToFetchOnBranch(val branch: Branch, val path: String, val indicatorsToFetch: List<IndicatorDefinition>)
+
     fun identifyBranchesToParse(repository: Repository, crawlAllBranches: Boolean): Repository {
 
         if (crawlAllBranches) {
 
-            val branchesFound = remoteSourceControl.fetchRepoBranches(repository.fullName);
+            val branchesFound = requestBudget.spend { remoteSourceControl.fetchRepoBranches(repository.fullName) }
 
             val repoWithBranches = repository.copy(branchesToParse = branchesFound)
 
@@ -39,7 +58,7 @@ class RepositoryEnricher(val remoteSourceControl: RemoteSourceControl,
         try {
             log.debug("loading repo config for $repository.fullName")
 
-            repositoryConfig = remoteSourceControl.fetchRepoConfig(repository.fullName,repository.defaultBranch)
+            repositoryConfig = requestBudget.spend { remoteSourceControl.fetchRepoConfig(repository.fullName,repository.defaultBranch) }
 
             log.debug("..repo config found ${repositoryConfig.toString()}")
         } catch (e: NoFileFoundException) {
@@ -65,65 +84,182 @@ class RepositoryEnricher(val remoteSourceControl: RemoteSourceControl,
             return repository
         }
 
-        val foundIndicators: MutableMap<Branch, Map<String, String>> = mutableMapOf()
+        val filesToFetchOnBranches = repository.branchesToParse.flatMap { branch ->
+
+            val fileTree = fetchFileTree(repository, branch, gitHubCrawlerPropertiesByFile.indicatorsToFetchByFile.keys)
+
+            gitHubCrawlerPropertiesByFile.indicatorsToFetchByFile.entries.mapNotNull { (fileToParse, indicatorsToFetch) ->
+                resolvePath(repository, branch, fileToParse, fileTree)?.let { FileToFetchOnBranch(branch, it, indicatorsToFetch) }
+            }
+        }
 
-        for (branch in repository.branchesToParse) {
+        val filesFetchedInBatch = fetchFilesInBatch(repository, filesToFetchOnBranches) ?: emptyMap()
 
-            val foundIndicatorsForBranch =
-                    gitHubCrawlerPropertiesByFile.indicatorsToFetchByFile.map { (fileToParse, indicatorsToFetch) -> fetchFileAndParseIndicatorsFromIt(repository,branch, fileToParse, indicatorsToFetch) }
-                            .fold(mapOf<String,String>()){ acc, map -> acc + map }
+        // the files the batch couldn't get (or all of them, when the source control can't fetch in batch) are fetched one by one, in parallel if possible
+        val filesToFetchOneByOne = filesToFetchOnBranches.filter { !filesFetchedInBatch.containsKey(FileToFetch(repository.fullName, it.branch.name, it.path)) }
 
-            foundIndicators.put(branch, foundIndicatorsForBranch)
+        val indicatorsOfFilesFetchedOneByOne = filesToFetchOneByOne
+                .zip(performFetches(filesToFetchOneByOne.map { Callable { fetchFileAndParseIndicatorsFromIt(repository, it) } }))
+                .toMap()
 
+        val foundIndicatorsByFile = filesToFetchOnBranches.map { indicatorsOfFilesFetchedOneByOne[it] ?: parseIndicatorsFromFetchedFile(repository, it, filesFetchedInBatch) }
+
+        val foundIndicators: MutableMap<Branch, Map<String, String>> = repository.branchesToParse.associateWith { emptyMap<String, String>() }.toMutableMap()
+
+        filesToFetchOnBranches.zip(foundIndicatorsByFile).forEach { (fileOnBranch, indicatorsForFile) ->
+            foundIndicators.merge(fileOnBranch.branch, indicatorsForFile) { acc, map -> acc + map }
         }
 
         return repository.copy(indicators = foundIndicators)
 
     }
 
-    private fun fetchFileAndParseIndicatorsFromIt(repository: Repository, branch: Branch, fileToFetchAndProcess: com.societegenerale.githubcrawler.FileToParse, indicatorsToFetch: List<IndicatorDefinition>): Map<String, String> {
+    /**
+     * When an executor is available, we start at most maxFileFetchesPerRepository "drainers" on it, each of them performing the fetches that haven't been picked yet.
+     * Results are returned in the same order as the fetches.
+     */
+    private fun performFetches(fetches: List<Callable<Map<String, String>>>): List<Map<String, String>> {
 
-        log.debug("fetching ${fileToFetchAndProcess.name} for repo $repository.fullName..")
+        if (fileFetchesExecutor == null || fetches.size <= 1) {
+            return fetches.map { it.call() }
+        }
 
-        val fileRedirectedPath = repository.config?.filesToParse?.filter { it.name == fileToFetchAndProcess.name }?.map { it.redirectTo }?.firstOrNull()
+        val results = arrayOfNulls<Map<String, String>>(fetches.size)
 
-        var pathToFileToGetIndicatorsFrom: String
+        val nextFetchIndex = AtomicInteger()
 
-        if (fileRedirectedPath != null) {
-            log.info("redirection found for ${fileToFetchAndProcess.name} : $fileRedirectedPath")
-            pathToFileToGetIndicatorsFrom=fileRedirectedPath
-        } else {
-            log.debug("no redirection found for ${fileToFetchAndProcess.name}")
-            pathToFileToGetIndicatorsFrom=fileToFetchAndProcess.name
+        val drainers = (1..minOf(maxFileFetchesPerRepository, fetches.size)).map {
+            Callable {
+                var fetchIndex = nextFetchIndex.getAndIncrement()
+
+                while (fetchIndex < fetches.size) {
+                    results[fetchIndex] = fetches[fetchIndex].call()
+                    fetchIndex = nextFetchIndex.getAndIncrement()
+                }
+            }
+        }
+
+        fileFetchesExecutor.invokeAll(drainers).forEach { drainer ->
+            try {
+                drainer.get()
+            } catch (e: ExecutionException) {
+                //rethrowing the original exception, as if the file had been fetched in the calling thread
+                throw e.cause ?: e
+            }
+        }
+
+        return results.map { it!! }
+    }
+
+    /**
+     * Listing the files of the branch costs a single call : worth it when several files are configured, since most of them usually don't exist.
+     * And it's the only way to find the files matching a glob.
+     *
+     * @return the files of the branch, or null if the source control can't list them
+     */
+    private fun fetchFileTree(repository: Repository, branch: Branch, filesToParse: Set<FileToParse>): FileTree? {
+
+        if (filesToParse.size <= 1 && filesToParse.none { FileTree.isGlob(it.name) }) {
+            return null
+        }
+
+        return try {
+            requestBudget.spend { remoteSourceControl.fetchFileTree(repository.fullName, branch.name) }
+        } catch (e: Exception) {
+            log.warn("unable to list files of repo ${repository.fullName}, branch ${branch.name} - fetching them without the listing", e)
+            null
+        }
+    }
+
+    /**
+     * @return the path of the file to parse on the branch, or null when we know it doesn't exist
+     */
+    private fun resolvePath(repository: Repository, branch: Branch, fileToParse: FileToParse, fileTree: FileTree?): String? {
+
+        val path = pathToFileToGetIndicatorsFrom(repository, fileToParse)
+
+        if (FileTree.isGlob(path)) {
+
+            if (fileTree == null) {
+                log.warn("can't look for files matching $path in repo ${repository.fullName} : the files of branch ${branch.name} can't be listed")
+                return null
+            }
+
+            return fileTree.firstMatch(path)
         }
 
+        return if (fileTree?.isMissing(path) == true) null else path
+    }
+
+    /**
+     * When the remote source control supports it, all the files of the repository, on all its branches, are requested at once.
+     *
+     * @return the fetched files, or null if they need to be fetched one by one. Files missing from the result need to be fetched one by one too
+     */
+    private fun fetchFilesInBatch(repository: Repository, filesToFetchOnBranches: List<FileToFetchOnBranch>): Map<FileToFetch, String?>? {
+
+        if (filesToFetchOnBranches.isEmpty()) {
+            return null
+        }
+
+        val filesToFetch = filesToFetchOnBranches.map { FileToFetch(repository.fullName, it.branch.name, it.path) }
+
+        return requestBudget.spend { remoteSourceControl.fetchFilesContent(filesToFetch) }
+    }
+
+    private fun parseIndicatorsFromFetchedFile(repository: Repository, fileOnBranch: FileToFetchOnBranch, fetchedFiles: Map<FileToFetch, String?>): Map<String, String> {
+
+        val fileContent = fetchedFiles[FileToFetch(repository.fullName, fileOnBranch.branch.name, fileOnBranch.path)] ?: return emptyMap()
+
+        return parseIndicatorsFromFileContent(fileContent, fileOnBranch.path, fileOnBranch.indicatorsToFetch)
+    }
+
+    private fun fetchFileAndParseIndicatorsFromIt(repository: Repository, fileOnBranch: FileToFetchOnBranch): Map<String, String> {
+
+        log.debug("fetching ${fileOnBranch.path} for repo $repository.fullName..")
 
         val fileContent: String
         try {
-            fileContent = fetchFileWithIndicatorsToFind(repository.fullName,branch, pathToFileToGetIndicatorsFrom)
+            fileContent = fetchFileWithIndicatorsToFind(repository.fullName, fileOnBranch.branch, fileOnBranch.path)
         } catch (e: NoFileFoundException) {
             return emptyMap()
         }
 
-        return parseIndicatorsFromFileContent(fileContent, pathToFileToGetIndicatorsFrom,indicatorsToFetch)
+        return parseIndicatorsFromFileContent(fileContent, fileOnBranch.path, fileOnBranch.indicatorsToFetch)
+    }
+
+    private fun pathToFileToGetIndicatorsFrom(repository: Repository, fileToFetchAndProcess: FileToParse): String {
+
+        val fileRedirectedPath = repository.config?.filesToParse?.filter { it.name == fileToFetchAndProcess.name }?.map { it.redirectTo }?.firstOrNull()
+
+        if (fileRedirectedPath != null) {
+            log.info("redirection found for ${fileToFetchAndProcess.name} : $fileRedirectedPath")
+            return fileRedirectedPath
+        }
+
+        log.debug("no redirection found for ${fileToFetchAndProcess.name}")
+        return fileToFetchAndProcess.name
     }
 
 
     private fun fetchFileWithIndicatorsToFind(repoFullName : String, branch: Branch, fileToFetchAndProcess: String): String {
-            return remoteSourceControl.fetchFileContent(repoFullName, branch.name, fileToFetchAndProcess)
+            return requestBudget.spend { remoteSourceControl.fetchFileContent(repoFullName, branch.name, fileToFetchAndProcess) }
     }
 
 
     private fun parseIndicatorsFromFileContent(fileContent: String, pathToFileToGetIndicatorsFrom:String, indicatorsToFetch: List<IndicatorDefinition>): Map<String, String> {
 
-        return indicatorsToFetch.asSequence()
-                .map { availableParsersAndTasks.getParserByName(it.type).parseFileContentForIndicator(fileContent, pathToFileToGetIndicatorsFrom, it) }
+        // each parser gets all its indicators at once, so that it parses the file only once
+        return indicatorsToFetch.groupBy { it.type }
+                .map { (parserName, indicators) -> availableParsersAndTasks.getParserByName(parserName).parseFileContentForIndicators(fileContent, pathToFileToGetIndicatorsFrom, indicators) }
                 .reduce { acc, item -> acc + item }
 
     }
 
     fun performMiscTasks(repo: Repository, miscRepositoryTasks: List<RepoTaskToPerform>): Repository {
 
+        // not spending the request budget here : a task may wait a long time for its own rate limit (search API for instance),
+        // and shouldn't hold a slot that file fetches could use meanwhile
         val allActionsResults=miscRepositoryTasks.map { task -> task.perform(repo) } //executing all tasks -> getting a List<Map<Branch,Pair<String, Any>>>
 
                                                   .asSequence().flatMap {it.asSequence()}
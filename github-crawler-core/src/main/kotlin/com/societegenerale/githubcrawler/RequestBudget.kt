@@ -0,0 +1,27 @@
+package com.societegenerale.githubcrawler
+
+import java.util.concurrent.Semaphore
+
+/**
+ * Limits the number of requests in flight towards the remote source control, whatever the number of threads performing them.
+ */
+class RequestBudget(maxInFlightRequests: Int) {
+
+    companion object {
+        val UNLIMITED = RequestBudget(Int.MAX_VALUE)
+    }
+
+    private val permits = Semaphore(maxInFlightRequests, true)
+
+    fun <T> spend(request: () -> T): T {
+
+        permits.acquire()
+
+        try {
+            return request()
+        } finally {
+            permits.release()
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.societegenerale.githubcrawler
 
 import org.springframework.boot.context.properties.ConfigurationProperties
+import org.springframework.boot.context.properties.NestedConfigurationProperty
 
 
 @ConfigurationProperties("crawler.source-control")
@@ -8,8 +9,15 @@ class SourceControlConfig(var type: SourceControlType = SourceControlType.GITHUB
                           var url: String="",
                           var apiToken: String="",
                           var organizationName: String="",
-                          var crawlUsersRepoInsteadOfOrgasRepos: Boolean=false)
+                          var crawlUsersRepoInsteadOfOrgasRepos: Boolean=false,
+                          @NestedConfigurationProperty var httpClient: HttpClientConfig = HttpClientConfig(),
+                          @NestedConfigurationProperty var blobCache: BlobCacheConfig = BlobCacheConfig(),
+                          @NestedConfigurationProperty var graphqlBatch: GraphQLBatchConfig = GraphQLBatchConfig(),
+                          @NestedConfigurationProperty var archive: ArchiveConfig = ArchiveConfig(),
+                          @NestedConfigurationProperty var fileTreeIndex: FileTreeIndexConfig = FileTreeIndexConfig())
 
 enum class SourceControlType {
-  GITLAB, GITHUB,AZURE_DEVOPS, BITBUCKET
+  GITLAB, GITHUB,AZURE_DEVOPS, BITBUCKET,
+  // bare repositories on the local disk - url is the directory containing one sub-directory per organization
+  GIT_MIRROR
 }
\ No newline at end of file
@@ -2,13 +2,13 @@ package com.societegenerale.githubcrawler.model
 
 import com.fasterxml.jackson.annotation.JsonIgnore
 import com.fasterxml.jackson.annotation.JsonProperty
+import com.societegenerale.githubcrawler.CompiledExpressions
 import com.societegenerale.githubcrawler.GitHubCrawlerProperties
 import com.societegenerale.githubcrawler.RepositoryConfig
 import feign.FeignException
 import org.slf4j.LoggerFactory
 import org.springframework.http.HttpStatus
 import java.util.*
-import java.util.regex.Pattern
 
 
 data class Repository(val url: String,
@@ -42,7 +42,10 @@ data class Repository(val url: String,
                       @JsonIgnore
                       var miscTasksResults: Map<Branch, Map<String, Any>> = HashMap(),
                       @JsonIgnore
-                      var topics: List<String> = emptyList()
+                      var topics: List<String> = emptyList(),
+                      // last push on any branch - only provided by GitHub
+                      @JsonProperty("pushed_at")
+                      val lastPushDate: Date? = null
 ) {
 
     val log = LoggerFactory.getLogger(this.javaClass)
@@ -75,21 +78,7 @@ data class Repository(val url: String,
       return this
     }
 
-  private fun repoNameMatchesAnyPatternsFrom(repositoriesToInclude: List<String>) = repositoriesToInclude.map { s -> Pattern.compile(s) }
-      //below map returns true if it matches, false otherwise
-      .map { p -> logIfMatches(p) }
-      //we return the first item matching predicate "it", ie being true. Else, return false
-      .firstOrNull { it } ?: false
-
-  private fun logIfMatches(p: Pattern): Boolean {
-
-        if (p.matcher(name).find()) {
-            log.debug("repo {} matched on exclusion/inclusion pattern {}", name, p.pattern())
-            return true
-        }
-
-        return false
-    }
+  private fun repoNameMatchesAnyPatternsFrom(namePatterns: List<String>) = CompiledExpressions.repositoryNameMatcher(namePatterns).matches(name)
 
 
     fun getIndicatorsForBranch(branchName: String): Map<String, Any> {
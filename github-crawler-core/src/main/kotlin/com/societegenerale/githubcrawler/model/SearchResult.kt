@@ -6,8 +6,13 @@ data class SearchResult (
         @JsonProperty("total_count")
         val totalCount: Int,
         @JsonProperty("items")
-        val items : List<SearchResultItem>)
+        val items : List<SearchResultItem>,
+        @JsonProperty("incomplete_results")
+        val incompleteResults: Boolean = false)
 
 
 
-class SearchResultItem (val path:String)
+class SearchResultItem (val path:String,
+                        val repository: SearchResultRepository? = null)
+
+class SearchResultRepository (@JsonProperty("full_name") val fullName:String)
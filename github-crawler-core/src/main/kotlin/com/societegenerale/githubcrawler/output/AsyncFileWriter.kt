@@ -0,0 +1,174 @@
+package com.societegenerale.githubcrawler.output
+
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * Writes text to a file from a single, dedicated thread : callers only hand over the text, and don't wait for the disk.
+ *
+ * Texts are written whole, in the order they were handed over, so that concurrent callers can't get their lines interleaved.
+ * The file stays open until [close], and is written by batches through a large buffer. When the writer thread can't keep up,
+ * callers wait for room in the queue, instead of piling up texts in memory.
+ *
+ * @param queueCapacity max number of texts waiting to be written
+ * @param bufferSize texts are gathered in a buffer of that size (in bytes) before being written
+ */
+class AsyncFileWriter(private val file: Path,
+                      queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+                      bufferSize: Int = DEFAULT_BUFFER_SIZE) : AutoCloseable {
+
+    companion object {
+        const val DEFAULT_QUEUE_CAPACITY = 1024
+        const val DEFAULT_BUFFER_SIZE = 256 * 1024
+
+        // marks the end of the texts to write - compared by reference
+        private val END_OF_TEXTS = String(CharArray(0))
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private val textsToWrite: BlockingQueue<String> = ArrayBlockingQueue(queueCapacity)
+
+    private val channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+
+    private val buffer = ByteBuffer.allocate(bufferSize)
+
+    @Volatile
+    private var writeError: IOException? = null
+
+    // callers share the lock while handing over their text, and closing takes it exclusively : no text can get queued after the end of texts
+    private val closingLock = ReentrantReadWriteLock()
+
+    // guarded by closingLock
+    private var closed = false
+
+    private val writerThread = Thread({ writeTextsUntilClosed() }, "file-output-" + file.fileName)
+
+    init {
+        writerThread.isDaemon = true
+        writerThread.start()
+    }
+
+    /**
+     * @throws IOException if a previous write failed, or if the writer is already closed
+     */
+    @Throws(IOException::class)
+    fun write(text: String) {
+
+        throwIfFailed()
+
+        closingLock.read {
+
+            if (closed) {
+                throw IOException("$file is already closed")
+            }
+
+            textsToWrite.put(text)
+        }
+    }
+
+    /**
+     * waits for all the texts to be written, and for the file to be synced to the disk
+     */
+    @Throws(IOException::class)
+    override fun close() {
+
+        closingLock.write {
+
+            if (!closed) {
+                closed = true
+
+                textsToWrite.put(END_OF_TEXTS)
+            }
+        }
+
+        writerThread.join()
+
+        throwIfFailed()
+    }
+
+    private fun throwIfFailed() {
+
+        writeError?.let { throw IOException("problem while writing to $file", it) }
+    }
+
+    private fun writeTextsUntilClosed() {
+
+        val batch = ArrayList<String>()
+
+        try {
+            channel.use {
+
+                while (true) {
+
+                    batch.add(textsToWrite.take())
+                    textsToWrite.drainTo(batch)
+
+                    for (text in batch) {
+
+                        if (text === END_OF_TEXTS) {
+                            flushBuffer()
+                            channel.force(true)
+                            return
+                        }
+
+                        writeToBuffer(text.toByteArray(StandardCharsets.UTF_8))
+                    }
+
+                    batch.clear()
+
+                    // texts get visible in the file at the end of each batch
+                    flushBuffer()
+                }
+            }
+        } catch (e: IOException) {
+            log.error("problem while writing to $file - next texts won't be written", e)
+            writeError = e
+
+            // discarding what's left until closed, so that callers waiting for room in the queue don't wait forever
+            if (batch.none { it === END_OF_TEXTS }) {
+                while (textsToWrite.take() !== END_OF_TEXTS) {
+                    // discarded
+                }
+            }
+        }
+    }
+
+    private fun writeToBuffer(bytes: ByteArray) {
+
+        if (bytes.size > buffer.remaining()) {
+            flushBuffer()
+        }
+
+        if (bytes.size > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes))
+        } else {
+            buffer.put(bytes)
+        }
+    }
+
+    private fun flushBuffer() {
+
+        buffer.flip()
+        writeFully(buffer)
+        buffer.clear()
+    }
+
+    private fun writeFully(bytes: ByteBuffer) {
+
+        while (bytes.hasRemaining()) {
+            channel.write(bytes)
+        }
+    }
+
+}
@@ -1,29 +1,53 @@
 package com.societegenerale.githubcrawler.output
 
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter
 import com.societegenerale.githubcrawler.model.Repository
 import org.slf4j.LoggerFactory
-import java.io.BufferedWriter
-import java.io.File
 import java.io.IOException
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
-import java.nio.file.OpenOption
 import java.nio.file.Paths
 import java.nio.file.StandardOpenOption
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
-import java.util.*
 
 /**
  * This is a specific output, when targeting to pipe the crawler output into CI-droid. CI-droid exposes a "bulk-actions API" that accepts an action to perform on a list of resources (that can be on many repositories).
  *
  * When using this output, we try to generate the list of resources, in a format as close as possible as the one expected by CI-droid, so that we don't need any re-processing and can directly copy-paste the content in the list of the resources in the json payload we're posting on the API.
+ *
+ * Resources are streamed to the file as repositories get processed, one per line : the Json array is closed in [finalizeOutput], or when the JVM shuts down
+ * if the crawl gets interrupted before, so that the file is always a valid Json document.
  */
 class CIdroidReadyJsonFileOutput (val indicatorsToOutput: List<String>, val withTags: Boolean=false) : GitHubCrawlerOutput {
 
     val log = LoggerFactory.getLogger(this.javaClass)
 
-    private val finalOutputFileName: String
+    val finalOutputFileName: String
+
+    private val jsonGenerator: JsonGenerator
+
+    private val closeOnShutdown: CloseOnShutdown
+
+    /**
+     * one resource per line : the separator goes before each resource, on the previous line
+     */
+    private class OneResourcePerLinePrettyPrinter : MinimalPrettyPrinter() {
+
+        override fun writeStartArray(g: JsonGenerator) {
+            g.writeRaw("[\n")
+        }
+
+        override fun writeArrayValueSeparator(g: JsonGenerator) {
+            g.writeRaw(",\n")
+        }
+
+        override fun writeEndArray(g: JsonGenerator, nrOfValues: Int) {
+            g.writeRaw("\n]")
+        }
+    }
 
     init {
 
@@ -33,88 +57,81 @@ class CIdroidReadyJsonFileOutput (val indicatorsToOutput: List<String>, val with
 
         finalOutputFileName = "CIdroidReadyContent_" + now.format(formatter) + ".json"
 
-        val writer = openFileWithOptions(StandardOpenOption.CREATE_NEW,StandardOpenOption.WRITE)
+        jsonGenerator = JsonFactory().createGenerator(Files.newBufferedWriter(Paths.get(finalOutputFileName),
+                                                                              StandardCharsets.UTF_8,
+                                                                              StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+        jsonGenerator.setPrettyPrinter(OneResourcePerLinePrettyPrinter())
 
         //initiating the Json array
-        writer.write("[\n");
+        jsonGenerator.writeStartArray()
+        jsonGenerator.flush()
 
-        writer.close()
+        closeOnShutdown = CloseOnShutdown("CIdroidReadyJsonFileOutput") { closeJsonArray() }
     }
 
     @Throws(IOException::class)
     override fun output(analyzedRepository: Repository) {
 
-        openFileWithOptions(StandardOpenOption.WRITE, StandardOpenOption.APPEND).use {
+        val allIndicators = getAllIndicatorsToOutput(analyzedRepository.indicators, analyzedRepository.miscTasksResults)
 
-            val sb=StringBuilder()
-
-            val allIndicators = getAllIndicatorsToOutput(analyzedRepository.indicators, analyzedRepository.miscTasksResults)
+        // repositories are processed in parallel, but their resources are written one after the other
+        synchronized(jsonGenerator) {
 
             for((branch,actualIndicators) in allIndicators ){
-                sb.append("{")
-                sb.append("\"repoFullName\": \"").append(analyzedRepository.fullName).append("\",")
+                jsonGenerator.writeStartObject()
+                jsonGenerator.writeStringField("repoFullName", analyzedRepository.fullName)
                 //we take the first indicator value, assuming it's a path to a file
                 val indicatorToOutput=actualIndicators.get(indicatorsToOutput[0])
 
-                val indicatorToOutputAsString : String
                 if (indicatorToOutput is Collection<*> && indicatorToOutput.isNotEmpty()) {
-                    indicatorToOutputAsString=indicatorToOutput.stream().findFirst().get().toString()
-                    sb.append("\"filePathOnRepo\": \"").append(indicatorToOutputAsString).append("\",")
+                    jsonGenerator.writeStringField("filePathOnRepo", indicatorToOutput.first().toString())
                 }
                 else{
-                    sb.append("\"filePathOnRepo\": \"").append(indicatorToOutput).append("\",")
+                    jsonGenerator.writeStringField("filePathOnRepo", indicatorToOutput.toString())
                 }
 
-
-
-                appendOtherIndicatorsIfAny(sb, actualIndicators)
+                writeOtherIndicatorsIfAny(actualIndicators)
 
                 if(withTags){
-                    sb.append("\"tags\": \"").append(analyzedRepository.tags).append("\",")
+                    jsonGenerator.writeStringField("tags", analyzedRepository.tags.toString())
                 }
 
-                sb.append("\"branchName\": \"").append(branch.name).append("\"")
+                jsonGenerator.writeStringField("branchName", branch.name)
 
-                sb.append("},")
-
-                sb.append(System.lineSeparator())
+                jsonGenerator.writeEndObject()
             }
 
-            it.write(sb.toString())
+            // resources are in the file as soon as a repository is processed
+            jsonGenerator.flush()
         }
 
     }
 
-    private fun appendOtherIndicatorsIfAny(sb: StringBuilder, actualIndicators: Map<String, Any>) {
+    private fun writeOtherIndicatorsIfAny(actualIndicators: Map<String, Any>) {
         if (indicatorsToOutput.size > 1) {
             //if there are others, we output them but they probably won't be processed given their name
             for (i in 1..indicatorsToOutput.size - 1) {
-                sb.append("\"otherIndicator$i\": \"").append(actualIndicators.get(indicatorsToOutput[i])).append("\",")
+                jsonGenerator.writeStringField("otherIndicator$i", actualIndicators.get(indicatorsToOutput[i]).toString())
             }
         }
     }
 
     @Throws(IOException::class)
     override fun finalizeOutput(){
-        val content = Scanner(File(finalOutputFileName)).useDelimiter("\\Z").next()
-        //removing the last character which is a "," from the json
-        val withoutLastCharacter = content.substring(0, content.length - 1)
-
-        val writer = openFileWithOptions(StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
 
-        writer.write(withoutLastCharacter)
-
-        //closing the Json array
-        writer.write("\n]");
-
-        writer.close()
+        closeJsonArray()
+        closeOnShutdown.cancel()
     }
 
-    @Suppress("SpreadOperator") //no performance impact given the number of values (a couple, max)..
-    private fun openFileWithOptions(vararg options : OpenOption) : BufferedWriter {
+    private fun closeJsonArray() {
+
+        synchronized(jsonGenerator) {
 
-        return Files.newBufferedWriter(Paths.get(finalOutputFileName),
-                StandardCharsets.UTF_8,
-                *options)
+            if (!jsonGenerator.isClosed) {
+                //closing the Json array
+                jsonGenerator.writeEndArray()
+                jsonGenerator.close()
+            }
+        }
     }
 }
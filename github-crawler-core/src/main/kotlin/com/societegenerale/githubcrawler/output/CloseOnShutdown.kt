@@ -0,0 +1,25 @@
+package com.societegenerale.githubcrawler.output
+
+/**
+ * Closes a file output when the JVM shuts down before the output got finalized (crawl interrupted, Ctrl-C..), so that the file is still readable.
+ *
+ * The hook is registered when created, and outputs [cancel] it once they've closed the file themselves.
+ */
+internal class CloseOnShutdown(outputName: String, close: () -> Unit) {
+
+    private val hook = Thread(close, "$outputName-shutdown")
+
+    init {
+        Runtime.getRuntime().addShutdownHook(hook)
+    }
+
+    fun cancel() {
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook)
+        } catch (e: IllegalStateException) {
+            // JVM is already shutting down
+        }
+    }
+
+}
@@ -3,10 +3,7 @@ package com.societegenerale.githubcrawler.output
 import com.societegenerale.githubcrawler.model.Repository
 import org.slf4j.Logger
 import java.io.IOException
-import java.nio.charset.StandardCharsets
-import java.nio.file.Files
 import java.nio.file.Paths
-import java.nio.file.StandardOpenOption
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
 
@@ -26,6 +23,8 @@ abstract class CsvFileOutput(initParam : Any) : GitHubCrawlerOutput{
 
     val finalOutputFileName: String
 
+    private val writer: AsyncFileWriter
+
     init {
 
         val now = LocalDateTime.now()
@@ -34,22 +33,15 @@ abstract class CsvFileOutput(initParam : Any) : GitHubCrawlerOutput{
 
         finalOutputFileName = getPrefix() + now.format(formatter) + ".csv"
 
-        val writer = Files.newBufferedWriter(Paths.get(finalOutputFileName),
-                StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE_NEW)
+        // the file stays open during the whole crawl, and gets written by a single thread, so that lines of repositories processed in parallel don't interleave
+        writer = AsyncFileWriter(Paths.get(finalOutputFileName))
 
         writer.write(getCsvHeaderFrom(initParam)+System.lineSeparator())
-
-        writer.close()
     }
 
     @Throws(IOException::class)
     override fun output(analyzedRepository: Repository) {
 
-        val writer = Files.newBufferedWriter(Paths.get(finalOutputFileName),
-                StandardCharsets.UTF_8,
-                StandardOpenOption.WRITE, StandardOpenOption.APPEND)
-
         try {
 
              writer.write(outputRepository(analyzedRepository).toString())
@@ -57,7 +49,13 @@ abstract class CsvFileOutput(initParam : Any) : GitHubCrawlerOutput{
         } catch (e: IOException) {
             log.error("problem while writing to output file", e)
         }
+    }
 
+    /**
+     * waits for all the lines to be written to the file
+     */
+    @Throws(IOException::class)
+    override fun finalizeOutput() {
         writer.close()
     }
-}
\ No newline at end of file
+}
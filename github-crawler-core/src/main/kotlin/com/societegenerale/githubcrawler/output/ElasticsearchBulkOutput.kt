@@ -0,0 +1,242 @@
+package com.societegenerale.githubcrawler.output
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.societegenerale.githubcrawler.model.Repository
+import org.slf4j.LoggerFactory
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.MediaType
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder
+import org.springframework.web.client.HttpStatusCodeException
+import org.springframework.web.client.RestClientException
+import org.springframework.web.client.RestTemplate
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.time.LocalDate
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.Semaphore
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+
+
+/**
+ * Pushes the same documents as [HttpOutput] (one per analyzed branch) to an Elasticsearch index, but through its _bulk API : documents are gathered
+ * in batches, sent as NDJSON by background threads, so that the crawl doesn't wait for Elasticsearch.
+ *
+ * A batch is sent as soon as it reaches [maxDocumentsPerBatch] documents or [maxBytesPerBatch] bytes, or when [flushInterval] has elapsed.
+ * At most [maxInFlightBatches] batches are being sent at the same time : when Elasticsearch can't keep up, the crawl waits instead of piling up batches in memory.
+ *
+ * Documents that Elasticsearch rejects because it's overloaded (429, or 5xx) are sent again, with an exponential backoff, up to [maxRetries] times - the other ones are only logged.
+ *
+ * @param indexUrl URL of the index, without _bulk - may contain a date placeholder, like http://myElasticSearch/crawler-{yyyy-MM}
+ */
+class ElasticsearchBulkOutput(indexUrl: String,
+                              private val restTemplate: RestTemplate,
+                              private val maxDocumentsPerBatch: Int = DEFAULT_MAX_DOCUMENTS_PER_BATCH,
+                              private val maxBytesPerBatch: Int = DEFAULT_MAX_BYTES_PER_BATCH,
+                              flushInterval: Duration = DEFAULT_FLUSH_INTERVAL,
+                              private val maxInFlightBatches: Int = DEFAULT_MAX_IN_FLIGHT_BATCHES,
+                              private val maxRetries: Int = DEFAULT_MAX_RETRIES,
+                              private val retryBackoff: Duration = DEFAULT_RETRY_BACKOFF,
+                              currentLocalDate: LocalDate = LocalDate.now()) : GitHubCrawlerOutput {
+
+    companion object {
+        const val DEFAULT_MAX_DOCUMENTS_PER_BATCH = 500
+        const val DEFAULT_MAX_BYTES_PER_BATCH = 5 * 1024 * 1024
+        const val DEFAULT_MAX_IN_FLIGHT_BATCHES = 2
+        const val DEFAULT_MAX_RETRIES = 3
+
+        val DEFAULT_FLUSH_INTERVAL: Duration = Duration.ofSeconds(5)
+        val DEFAULT_RETRY_BACKOFF: Duration = Duration.ofSeconds(1)
+
+        // the documents don't have an id : Elasticsearch generates one, like when they're posted one by one
+        private val INDEX_ACTION = "{\"index\":{}}\n".toByteArray(StandardCharsets.UTF_8)
+
+        private const val NEW_LINE = '\n'.code
+
+        private val NDJSON = MediaType("application", "x-ndjson", StandardCharsets.UTF_8)
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    val bulkUrl = HttpOutput.buildUrlAccordingToPlaceholderIfRequired(indexUrl, currentLocalDate).trimEnd('/') + "/_bulk"
+
+    // same serialization as RestTemplate's, so that documents are the same as the ones HttpOutput posts
+    private val objectMapper: ObjectMapper = Jackson2ObjectMapperBuilder.json().build()
+
+    private val currentBatchLock = Any()
+
+    private var currentBatch = ArrayList<ByteArray>()
+
+    private var currentBatchSize = 0
+
+    private val inFlightBatches = Semaphore(maxInFlightBatches)
+
+    private val senders: ExecutorService = Executors.newFixedThreadPool(maxInFlightBatches, daemonThreads("elasticsearch-bulk-output-%d"))
+
+    private val flushScheduler: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor(daemonThreads("elasticsearch-bulk-flush-%d"))
+
+    init {
+        flushScheduler.scheduleWithFixedDelay({ flush() }, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS)
+    }
+
+    override fun output(analyzedRepository: Repository) {
+
+        for (branch in analyzedRepository.branchesToParse) {
+            // serialized right away, so that the repository doesn't have to be kept until the batch is sent
+            add(objectMapper.writeValueAsBytes(OutputIndicator.forBranch(analyzedRepository, branch)))
+        }
+    }
+
+    /**
+     * sends the documents not sent yet, and waits for all the batches to be sent
+     */
+    override fun finalizeOutput() {
+
+        flushScheduler.shutdownNow()
+        flushScheduler.awaitTermination(1, TimeUnit.MINUTES)
+
+        flush()
+
+        inFlightBatches.acquireUninterruptibly(maxInFlightBatches)
+        inFlightBatches.release(maxInFlightBatches)
+
+        senders.shutdown()
+    }
+
+    private fun add(document: ByteArray) {
+
+        val fullBatch = synchronized(currentBatchLock) {
+
+            currentBatch.add(document)
+            currentBatchSize += INDEX_ACTION.size + document.size + 1
+
+            if (currentBatch.size >= maxDocumentsPerBatch || currentBatchSize >= maxBytesPerBatch) takeCurrentBatch() else null
+        }
+
+        fullBatch?.let { send(it) }
+    }
+
+    private fun flush() {
+
+        val pendingDocuments = synchronized(currentBatchLock) {
+            if (currentBatch.isNotEmpty()) takeCurrentBatch() else null
+        }
+
+        pendingDocuments?.let { send(it) }
+    }
+
+    private fun takeCurrentBatch(): List<ByteArray> {
+
+        val batch = currentBatch
+
+        currentBatch = ArrayList()
+        currentBatchSize = 0
+
+        return batch
+    }
+
+    private fun send(batch: List<ByteArray>) {
+
+        // that's where the crawl waits, when Elasticsearch can't keep up
+        inFlightBatches.acquireUninterruptibly()
+
+        try {
+            senders.execute {
+                try {
+                    sendWithRetries(batch)
+                } catch (e: InterruptedException) {
+                    Thread.currentThread().interrupt()
+                    log.warn("interrupted while pushing a batch of {} documents to {} - they may not have been pushed", batch.size, bulkUrl)
+                } catch (e: Exception) {
+                    // Kotlin doesn't enforce catching checked exceptions, like Jackson's when the response isn't JSON
+                    log.warn("couldn't push a batch of {} documents to {}", batch.size, bulkUrl, e)
+                } finally {
+                    inFlightBatches.release()
+                }
+            }
+        } catch (e: RuntimeException) {
+            inFlightBatches.release()
+            throw e
+        }
+    }
+
+    private fun sendWithRetries(batch: List<ByteArray>) {
+
+        var documentsToSend = batch
+
+        for (attempt in 0..maxRetries) {
+
+            if (attempt > 0) {
+                Thread.sleep(retryBackoff.toMillis() shl (attempt - 1))
+            }
+
+            documentsToSend = sendOnce(documentsToSend)
+
+            if (documentsToSend.isEmpty()) {
+                return
+            }
+        }
+
+        log.warn("giving up pushing {} documents to {} after {} retries", documentsToSend.size, bulkUrl, maxRetries)
+    }
+
+    /**
+     * @return the documents that should be sent again
+     */
+    private fun sendOnce(documents: List<ByteArray>): List<ByteArray> {
+
+        val body = ByteArrayOutputStream(documents.sumOf { INDEX_ACTION.size + it.size + 1 })
+
+        for (document in documents) {
+            body.write(INDEX_ACTION)
+            body.write(document)
+            body.write(NEW_LINE)
+        }
+
+        val headers = HttpHeaders()
+        headers.contentType = NDJSON
+
+        val response = try {
+            restTemplate.postForEntity(bulkUrl, HttpEntity(body.toByteArray(), headers), String::class.java)
+        } catch (e: HttpStatusCodeException) {
+            log.warn("couldn't push {} documents to {} - code {} - {}", documents.size, bulkUrl, e.rawStatusCode, e.responseBodyAsString)
+            return if (isRetryable(e.rawStatusCode)) documents else emptyList()
+        } catch (e: RestClientException) {
+            log.warn("couldn't push {} documents to {} - {}", documents.size, bulkUrl, e.message)
+            return documents
+        }
+
+        val result = objectMapper.readTree(response.body ?: return emptyList())
+
+        if (!result.path("errors").asBoolean()) {
+            return emptyList()
+        }
+
+        // items are in the same order as the documents in the request
+        val documentsToRetry = ArrayList<ByteArray>()
+
+        result.path("items").forEachIndexed { index, item ->
+
+            val itemResult = item.path("index")
+            val status = itemResult.path("status").asInt()
+
+            when {
+                status in 200..299 -> Unit
+                isRetryable(status) && index < documents.size -> documentsToRetry.add(documents[index])
+                else -> log.warn("document rejected by {} - code {} - {}", bulkUrl, status, itemResult.path("error"))
+            }
+        }
+
+        return documentsToRetry
+    }
+
+    private fun isRetryable(status: Int) = status == 429 || status >= 500
+
+    private fun daemonThreads(nameFormat: String): ThreadFactory = ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build()
+
+}
@@ -3,10 +3,7 @@ package com.societegenerale.githubcrawler.output
 import com.societegenerale.githubcrawler.model.Repository
 import org.slf4j.LoggerFactory
 import java.io.IOException
-import java.nio.charset.StandardCharsets
-import java.nio.file.Files
 import java.nio.file.Paths
-import java.nio.file.StandardOpenOption
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
 
@@ -19,6 +16,8 @@ class FileOutput (filenamePrefix: String) : GitHubCrawlerOutput {
 
     private val finalOutputFileName: String
 
+    private val writer: AsyncFileWriter
+
     init {
 
         val now = LocalDateTime.now()
@@ -27,24 +26,22 @@ class FileOutput (filenamePrefix: String) : GitHubCrawlerOutput {
 
         finalOutputFileName = filenamePrefix + "_" + now.format(formatter) + ".txt"
 
-        Files.newBufferedWriter(Paths.get(finalOutputFileName),
-                StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE_NEW).use{
-
-            it.write("OUTPUT FOR GitHub crawler - " + now.format(formatter) + System.lineSeparator())
-
-        }
+        writer = AsyncFileWriter(Paths.get(finalOutputFileName))
 
+        writer.write("OUTPUT FOR GitHub crawler - " + now.format(formatter) + System.lineSeparator())
     }
 
     @Throws(IOException::class)
     override fun output(analyzedRepository: Repository) {
 
-        Files.newBufferedWriter(Paths.get(finalOutputFileName),
-                StandardCharsets.UTF_8,
-                StandardOpenOption.WRITE, StandardOpenOption.APPEND).use{
+        writer.write(analyzedRepository.toString()+ System.lineSeparator())
+    }
 
-            it.write(analyzedRepository.toString()+ System.lineSeparator())
-        }
+    /**
+     * waits for all the repositories to be written to the file
+     */
+    @Throws(IOException::class)
+    override fun finalizeOutput() {
+        writer.close()
     }
 }
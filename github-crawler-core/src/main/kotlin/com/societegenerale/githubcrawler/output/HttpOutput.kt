@@ -19,21 +19,13 @@ class HttpOutput(targetUrl: String,
 
     val log = LoggerFactory.getLogger(this.javaClass)
 
-    private var internalTargetUrl = buildUrlAccordingToPlaceholderIfRequired(targetUrl)
+    private var internalTargetUrl = buildUrlAccordingToPlaceholderIfRequired(targetUrl, currentLocalDate)
 
     override fun output(analyzedRepository: Repository) {
 
         for (branch in analyzedRepository.branchesToParse) {
 
-            val output = OutputIndicator(analyzedRepository.name,
-                    branch.name,
-                    analyzedRepository.creationDate,
-                    analyzedRepository.lastUpdateDate,
-                    analyzedRepository.indicators[branch] ?: emptyMap(),
-                    analyzedRepository.tags,
-                    analyzedRepository.groups,
-                    analyzedRepository.crawlerRunId,
-                    analyzedRepository.miscTasksResults[branch] ?: emptyMap())
+            val output = OutputIndicator.forBranch(analyzedRepository, branch)
 
             val response : ResponseEntity<String>
 
@@ -53,32 +45,35 @@ class HttpOutput(targetUrl: String,
         log.warn("couldn't push result for repo {} - code {} - {}", repoName, errorCode, message)
     }
 
-    /**
-     * It's useful to be able to configure a targetURL with a date pattern, to push to an ElasticSearch index, for example http://myElasticSearch/{yyyy-MM}
-     *
-     * Since the "real" targetUrl is computed once at the beginning, if the crawler runs for too long it will send  data to an index that is "older" than the current time.
-     * For example, if the crawler is configured to send data to http://myElasticSearch/{yyyy-MM-dd}, is launched at 11:58pm and runs for 5min, after midnight data will still be sent to D-1 index.
-     *
-     */
-    private fun buildUrlAccordingToPlaceholderIfRequired(targetUrlFromProperties: String): String{
+    companion object {
 
-        return if(containsPlaceHolders(targetUrlFromProperties)){
+        /**
+         * It's useful to be able to configure a targetURL with a date pattern, to push to an ElasticSearch index, for example http://myElasticSearch/{yyyy-MM}
+         *
+         * Since the "real" targetUrl is computed once at the beginning, if the crawler runs for too long it will send  data to an index that is "older" than the current time.
+         * For example, if the crawler is configured to send data to http://myElasticSearch/{yyyy-MM-dd}, is launched at 11:58pm and runs for 5min, after midnight data will still be sent to D-1 index.
+         *
+         */
+        internal fun buildUrlAccordingToPlaceholderIfRequired(targetUrlFromProperties: String, currentLocalDate: LocalDate): String{
 
-            //if pattern is not found, this will fail, which is OK - stacktrace will explain the error.
-            val patternToReplace=Regex(".*\\{(.*)}.*").find(targetUrlFromProperties)!!.groupValues[1]
+            return if(containsPlaceHolders(targetUrlFromProperties)){
 
-            val valueForPlaceHolder=currentLocalDate.format(DateTimeFormatter.ofPattern(patternToReplace))
+                //if pattern is not found, this will fail, which is OK - stacktrace will explain the error.
+                val patternToReplace=Regex(".*\\{(.*)}.*").find(targetUrlFromProperties)!!.groupValues[1]
 
-            return targetUrlFromProperties.replace("{$patternToReplace}",valueForPlaceHolder)
-        }
-        else{
-            targetUrlFromProperties
-        }
+                val valueForPlaceHolder=currentLocalDate.format(DateTimeFormatter.ofPattern(patternToReplace))
 
-    }
+                return targetUrlFromProperties.replace("{$patternToReplace}",valueForPlaceHolder)
+            }
+            else{
+                targetUrlFromProperties
+            }
+
+        }
 
-    private fun containsPlaceHolders(targetUrlFromProperties: String): Boolean {
-        return targetUrlFromProperties.matches(Regex(".*\\{.*}.*"))
+        private fun containsPlaceHolders(targetUrlFromProperties: String): Boolean {
+            return targetUrlFromProperties.matches(Regex(".*\\{.*}.*"))
+        }
     }
 
 }
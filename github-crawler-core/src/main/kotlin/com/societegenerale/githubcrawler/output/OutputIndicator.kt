@@ -1,6 +1,8 @@
 package com.societegenerale.githubcrawler.output
 
 import com.fasterxml.jackson.annotation.JsonFormat
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
 import java.time.ZonedDateTime
 import java.time.format.DateTimeFormatter
 import java.util.*
@@ -21,4 +23,20 @@ data class OutputIndicator(val name: String,
 
     val timestamp: String = ZonedDateTime.now().format(DateTimeFormatter.ISO_INSTANT)
 
-}
\ No newline at end of file
+    companion object {
+
+        /**
+         * the document we push for each branch of an analyzed repository
+         */
+        fun forBranch(analyzedRepository: Repository, branch: Branch) = OutputIndicator(analyzedRepository.name,
+                branch.name,
+                analyzedRepository.creationDate,
+                analyzedRepository.lastUpdateDate,
+                analyzedRepository.indicators[branch] ?: emptyMap(),
+                analyzedRepository.tags,
+                analyzedRepository.groups,
+                analyzedRepository.crawlerRunId,
+                analyzedRepository.miscTasksResults[branch] ?: emptyMap())
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.societegenerale.githubcrawler.output
+
+import com.societegenerale.githubcrawler.model.Repository
+import org.apache.parquet.example.data.Group
+import org.apache.parquet.example.data.simple.SimpleGroupFactory
+import org.apache.parquet.hadoop.ParquetWriter
+import org.apache.parquet.hadoop.example.ExampleParquetWriter
+import org.apache.parquet.hadoop.metadata.CompressionCodecName
+import org.apache.parquet.io.OutputFile
+import org.apache.parquet.io.PositionOutputStream
+import org.apache.parquet.schema.LogicalTypeAnnotation
+import org.apache.parquet.schema.MessageType
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName
+import org.apache.parquet.schema.Type
+import org.apache.parquet.schema.Types
+import org.slf4j.LoggerFactory
+import java.io.BufferedOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardOpenOption
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+
+/**
+ * Writes a Parquet file, with one row per repository branch, for analytics tools to load : repository metadata, tags, groups and crawler run id,
+ * and then one (string) column per indicator / misc task, named after it. A missing value is null.
+ *
+ * Rows are buffered in memory until they reach [rowGroupSize] bytes, and then written to the file as a row group, so memory usage doesn't depend on the size of the organization.
+ * Columns are dictionary encoded : indicators like versions take very few distinct values.
+ *
+ * The file is only readable once closed, in [finalizeOutput] - or when the JVM shuts down, if the crawl gets interrupted before.
+ *
+ * Parquet is an optional dependency of the crawler : see pom.xml to add it.
+ */
+class ParquetFileOutput(filenamePrefix: String,
+                        indicatorsToOutput: List<String>,
+                        rowGroupSize: Long = DEFAULT_ROW_GROUP_SIZE) : GitHubCrawlerOutput {
+
+    companion object {
+        const val DEFAULT_ROW_GROUP_SIZE = 16L * 1024 * 1024
+
+        private const val REPOSITORY_FULL_NAME = "repositoryFullName"
+        private const val REPOSITORY_NAME = "repositoryName"
+        private const val BRANCH_NAME = "branchName"
+        private const val CREATION_DATE = "creationDate"
+        private const val LAST_UPDATE_DATE = "lastUpdateDate"
+        private const val TAGS = "tags"
+        private const val GROUPS = "groups"
+        private const val CRAWLER_RUN_ID = "crawlerRunId"
+
+        private val METADATA_COLUMNS = setOf(REPOSITORY_FULL_NAME, REPOSITORY_NAME, BRANCH_NAME, CREATION_DATE, LAST_UPDATE_DATE, TAGS, GROUPS, CRAWLER_RUN_ID)
+    }
+
+    val log = LoggerFactory.getLogger(this.javaClass)
+
+    val finalOutputFileName: String
+
+    private val indicatorColumns = indicatorsToOutput.distinct().filter { it !in METADATA_COLUMNS }
+
+    private val schema: MessageType = buildSchema()
+
+    private val groupFactory = SimpleGroupFactory(schema)
+
+    private val writer: ParquetWriter<Group>
+
+    private val closeOnShutdown: CloseOnShutdown
+
+    @Volatile
+    private var closed = false
+
+    init {
+
+        val formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")
+
+        finalOutputFileName = filenamePrefix + "_" + LocalDateTime.now().format(formatter) + ".parquet"
+
+        writer = ExampleParquetWriter.builder(LocalFile(Paths.get(finalOutputFileName)))
+                .withType(schema)
+                .withRowGroupSize(rowGroupSize)
+                .withDictionaryEncoding(true)
+                .withCompressionCodec(CompressionCodecName.SNAPPY)
+                .build()
+
+        closeOnShutdown = CloseOnShutdown("ParquetFileOutput") { closeWriter() }
+    }
+
+    private fun buildSchema(): MessageType {
+
+        val requiredString = { name: String -> Types.required(PrimitiveTypeName.BINARY).`as`(LogicalTypeAnnotation.stringType()).named(name) }
+        val optionalString = { name: String -> Types.optional(PrimitiveTypeName.BINARY).`as`(LogicalTypeAnnotation.stringType()).named(name) }
+        val timestamp = { name: String -> Types.required(PrimitiveTypeName.INT64).`as`(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MILLIS)).named(name) }
+        val stringList = { name: String -> Types.requiredList().requiredElement(PrimitiveTypeName.BINARY).`as`(LogicalTypeAnnotation.stringType()).named(name) }
+
+        val columns: List<Type> = listOf(requiredString(REPOSITORY_FULL_NAME),
+                                         requiredString(REPOSITORY_NAME),
+                                         requiredString(BRANCH_NAME),
+                                         timestamp(CREATION_DATE),
+                                         timestamp(LAST_UPDATE_DATE),
+                                         stringList(TAGS),
+                                         stringList(GROUPS),
+                                         requiredString(CRAWLER_RUN_ID)) + indicatorColumns.map(optionalString)
+
+        return MessageType("repositoryBranch", columns)
+    }
+
+    @Throws(IOException::class)
+    override fun output(analyzedRepository: Repository) {
+
+        // rows are built by the thread that processed the repository, and only written one at a time
+        val rows = getAllIndicatorsToOutput(analyzedRepository.indicators, analyzedRepository.miscTasksResults).map { (branch, actualIndicators) ->
+
+            val row = groupFactory.newGroup()
+                    .append(REPOSITORY_FULL_NAME, analyzedRepository.fullName)
+                    .append(REPOSITORY_NAME, analyzedRepository.name)
+                    .append(BRANCH_NAME, branch.name)
+                    .append(CREATION_DATE, analyzedRepository.creationDate.time)
+                    .append(LAST_UPDATE_DATE, analyzedRepository.lastUpdateDate.time)
+
+            appendList(row.addGroup(TAGS), analyzedRepository.tags)
+            appendList(row.addGroup(GROUPS), analyzedRepository.groups)
+
+            row.append(CRAWLER_RUN_ID, analyzedRepository.crawlerRunId)
+
+            for (indicator in indicatorColumns) {
+                actualIndicators[indicator]?.let { row.append(indicator, it.toString()) }
+            }
+
+            row
+        }
+
+        synchronized(writer) {
+
+            if (closed) {
+                throw IOException("$finalOutputFileName is already closed")
+            }
+
+            rows.forEach { writer.write(it) }
+        }
+    }
+
+    private fun appendList(list: Group, values: List<String>) {
+
+        values.forEach { list.addGroup(0).append("element", it) }
+    }
+
+    /**
+     * writes the last row group, and the file footer
+     */
+    @Throws(IOException::class)
+    override fun finalizeOutput() {
+
+        closeWriter()
+        closeOnShutdown.cancel()
+    }
+
+    private fun closeWriter() {
+
+        synchronized(writer) {
+
+            if (!closed) {
+                closed = true
+                writer.close()
+
+                log.info("repositories written to $finalOutputFileName")
+            }
+        }
+    }
+
+    /**
+     * Parquet's own local files go through Hadoop's FileSystem, which we don't need (nor want, as it requires native binaries on Windows) to write a plain local file
+     */
+    private class LocalFile(private val path: Path) : OutputFile {
+
+        override fun create(blockSizeHint: Long): PositionOutputStream = open(StandardOpenOption.CREATE_NEW)
+
+        override fun createOrOverwrite(blockSizeHint: Long): PositionOutputStream = open(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+
+        override fun supportsBlockSize() = false
+
+        override fun defaultBlockSize() = 0L
+
+        override fun getPath() = path.toString()
+
+        private fun open(vararg options: StandardOpenOption): PositionOutputStream {
+
+            val output = BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.WRITE, *options))
+
+            return object : PositionOutputStream() {
+
+                private var position = 0L
+
+                override fun getPos() = position
+
+                override fun write(b: Int) {
+                    output.write(b)
+                    position++
+                }
+
+                override fun write(b: ByteArray, off: Int, len: Int) {
+                    output.write(b, off, len)
+                    position += len
+                }
+
+                override fun flush() = output.flush()
+
+                override fun close() = output.close()
+            }
+        }
+    }
+
+}
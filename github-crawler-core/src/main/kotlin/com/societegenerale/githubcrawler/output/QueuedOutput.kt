@@ -0,0 +1,325 @@
+package com.societegenerale.githubcrawler.output
+
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.fasterxml.jackson.module.kotlin.readValue
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.societegenerale.githubcrawler.BackpressurePolicy
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import org.slf4j.LoggerFactory
+import java.io.BufferedReader
+import java.io.BufferedWriter
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Publishes repositories to an output from a dedicated thread : the crawl only puts them in a bounded queue, so that a slow output
+ * doesn't slow down the crawl, nor the other outputs. The output gets the repositories one at a time, always from the same thread.
+ *
+ * When the queue is full, the [backpressure] policy applies. Spilled repositories may get published after repositories queued later on,
+ * and without their [Repository.config], that outputs don't use.
+ *
+ * [finalizeOutput] waits for all the queued (and spilled) repositories to be published, before finalizing the output itself.
+ *
+ * @param name identifies the output in logs, thread and spill file names : it needs to be unique when several outputs of the same class get queued
+ */
+class QueuedOutput(val output: GitHubCrawlerOutput,
+                   queueCapacity: Int,
+                   private val backpressure: BackpressurePolicy = BackpressurePolicy.BLOCK,
+                   private val spillDirectory: Path = Paths.get(System.getProperty("java.io.tmpdir")),
+                   val name: String = output.javaClass.simpleName) : GitHubCrawlerOutput {
+
+    companion object {
+        // how often the publishing thread checks for spilled repositories, when the queue is empty
+        private const val POLL_INTERVAL_MILLIS = 100L
+
+        private val END_OF_REPOSITORIES = QueuedRepository(null, 0)
+
+        private val mapper = jacksonObjectMapper()
+    }
+
+    private class QueuedRepository(val repository: Repository?, val queuedAtNanos: Long)
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private val queue: BlockingQueue<QueuedRepository> = ArrayBlockingQueue(queueCapacity)
+
+    private val published = AtomicLong()
+
+    private val failed = AtomicLong()
+
+    private val dropped = AtomicLong()
+
+    private val spilled = AtomicLong()
+
+    // only updated by the publishing thread
+    @Volatile
+    private var nbReadFromSpillFile = 0L
+
+    private val maxQueueDepth = AtomicInteger()
+
+    private val totalLatencyNanos = AtomicLong()
+
+    private val maxLatencyNanos = AtomicLong()
+
+    private val spillLock = Any()
+
+    private var spillFile: Path? = null
+
+    private var spillWriter: BufferedWriter? = null
+
+    private var spillReader: BufferedReader? = null
+
+    @Volatile
+    private var finalized = false
+
+    private val publishingThread = ThreadFactoryBuilder().setNameFormat("output-$name").setDaemon(true).build()
+                                                         .newThread { publishUntilFinalized() }
+
+    init {
+        publishingThread.start()
+    }
+
+    @Throws(IOException::class)
+    override fun output(analyzedRepository: Repository) {
+
+        if (finalized) {
+            throw IOException("output $name is already finalized")
+        }
+
+        val queuedRepository = QueuedRepository(analyzedRepository, System.nanoTime())
+
+        when (backpressure) {
+            BackpressurePolicy.BLOCK -> queue.put(queuedRepository)
+            BackpressurePolicy.DROP -> if (!queue.offer(queuedRepository)) {
+                dropped.incrementAndGet()
+                log.warn("output $name can't keep up - repo ${analyzedRepository.name} won't be published to it")
+            }
+            BackpressurePolicy.SPILL_TO_DISK -> if (!queue.offer(queuedRepository)) {
+                spill(queuedRepository)
+            }
+        }
+
+        maxQueueDepth.accumulateAndGet(queueDepth()) { current, max -> maxOf(current, max) }
+    }
+
+    /**
+     * waits for the queued repositories to be published, and then finalizes the output
+     */
+    @Throws(IOException::class)
+    override fun finalizeOutput() {
+
+        if (!finalized) {
+            finalized = true
+
+            queue.put(END_OF_REPOSITORIES)
+            publishingThread.join()
+
+            closeSpillFile()
+
+            log.info("output $name - ${stats()}")
+        }
+
+        output.finalizeOutput()
+    }
+
+    fun stats() = OutputStats(published.get(),
+                              failed.get(),
+                              dropped.get(),
+                              spilled.get(),
+                              queueDepth(),
+                              maxQueueDepth.get(),
+                              if (published.get() > 0) TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / published.get()) else 0,
+                              TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()))
+
+    private fun queueDepth(): Int = queue.size + (spilled.get() - nbReadFromSpillFile).toInt()
+
+    private fun publishUntilFinalized() {
+
+        var endReached = false
+
+        while (!endReached || hasSpilledRepositoriesToRead()) {
+
+            val queuedRepository = if (hasSpilledRepositoriesToRead()) {
+                queue.poll() ?: readSpilledRepository()
+            } else {
+                queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+            }
+
+            when {
+                queuedRepository == null -> continue
+                queuedRepository === END_OF_REPOSITORIES -> endReached = true
+                else -> publish(queuedRepository.repository!!, queuedRepository.queuedAtNanos)
+            }
+        }
+    }
+
+    private fun publish(repository: Repository, queuedAtNanos: Long) {
+
+        try {
+            output.output(repository)
+
+            val latencyNanos = System.nanoTime() - queuedAtNanos
+
+            published.incrementAndGet()
+            totalLatencyNanos.addAndGet(latencyNanos)
+            maxLatencyNanos.accumulateAndGet(latencyNanos) { current, max -> maxOf(current, max) }
+        } catch (e: Exception) {
+            failed.incrementAndGet()
+            log.warn("unable to publish results for repo ${repository.name} in output $name", e)
+        }
+    }
+
+    private fun spill(queuedRepository: QueuedRepository) {
+
+        val repository = queuedRepository.repository!!
+
+        try {
+            synchronized(spillLock) {
+
+                val writer = spillWriter ?: openSpillFile()
+
+                writer.write(mapper.writeValueAsString(SpilledRepository.of(repository, queuedRepository.queuedAtNanos)))
+                writer.newLine()
+                writer.flush()
+
+                // counted once the line is complete, so that the publishing thread never reads a partial line
+                spilled.incrementAndGet()
+            }
+        } catch (e: IOException) {
+            dropped.incrementAndGet()
+            log.warn("unable to spill repo ${repository.name} to disk - it won't be published to output $name", e)
+        }
+    }
+
+    private fun openSpillFile(): BufferedWriter {
+
+        val file = Files.createTempFile(Files.createDirectories(spillDirectory), "github-crawler-$name-", ".jsonl")
+        log.info("output $name can't keep up - repositories are now spilled to $file")
+
+        spillFile = file
+        return Files.newBufferedWriter(file).also { spillWriter = it }
+    }
+
+    private fun hasSpilledRepositoriesToRead() = nbReadFromSpillFile < spilled.get()
+
+    private fun readSpilledRepository(): QueuedRepository? {
+
+        try {
+            val reader = spillReader ?: synchronized(spillLock) { Files.newBufferedReader(spillFile!!) }.also { spillReader = it }
+
+            val line = reader.readLine() ?: throw IOException("spill file ended before all the spilled repositories were read")
+            nbReadFromSpillFile++
+
+            return mapper.readValue<SpilledRepository>(line).let { QueuedRepository(it.toRepository(), it.queuedAtNanos) }
+        } catch (e: IOException) {
+            val nbLostRepositories = spilled.get() - nbReadFromSpillFile
+
+            log.error("unable to read spilled repositories - $nbLostRepositories repositories won't be published to output $name", e)
+
+            failed.addAndGet(nbLostRepositories)
+            nbReadFromSpillFile = spilled.get()
+            return null
+        }
+    }
+
+    private fun closeSpillFile() {
+
+        synchronized(spillLock) {
+            try {
+                spillReader?.close()
+                spillWriter?.close()
+                spillFile?.let { Files.deleteIfExists(it) }
+            } catch (e: IOException) {
+                log.warn("unable to delete spill file $spillFile", e)
+            }
+        }
+    }
+
+}
+
+/**
+ * What an output has been through during the crawl, when published through a [QueuedOutput]
+ *
+ * @param queueDepth repositories waiting to be published (in memory or spilled to disk)
+ * @param averageLatencyMillis time between a repository being handed over, and the output being done with it
+ */
+data class OutputStats(val nbPublished: Long,
+                       val nbFailed: Long,
+                       val nbDropped: Long,
+                       val nbSpilled: Long,
+                       val queueDepth: Int,
+                       val maxQueueDepth: Int,
+                       val averageLatencyMillis: Long,
+                       val maxLatencyMillis: Long)
+
+/**
+ * A repository, as written to the spill file : [Repository] itself ignores most of its fields when serialized
+ */
+internal data class SpilledRepository(val url: String,
+                                      val name: String,
+                                      val defaultBranch: String,
+                                      val creationDate: Date,
+                                      val lastUpdateDate: Date,
+                                      val excluded: Boolean,
+                                      val reason: String?,
+                                      val skipped: Boolean,
+                                      val fullName: String,
+                                      val branchesToParse: List<String>,
+                                      val indicators: Map<String, Map<String, Any>>,
+                                      val tags: List<String>,
+                                      val groups: List<String>,
+                                      val crawlerRunId: String,
+                                      val miscTasksResults: Map<String, Map<String, Any>>,
+                                      val topics: List<String>,
+                                      val lastPushDate: Date?,
+                                      val queuedAtNanos: Long) {
+
+    fun toRepository() = Repository(url = url,
+                                    name = name,
+                                    defaultBranch = defaultBranch,
+                                    creationDate = creationDate,
+                                    lastUpdateDate = lastUpdateDate,
+                                    excluded = excluded,
+                                    reason = reason,
+                                    skipped = skipped,
+                                    fullName = fullName,
+                                    branchesToParse = branchesToParse.map { Branch(it) }.toSet(),
+                                    indicators = indicators.mapKeys { Branch(it.key) },
+                                    tags = tags,
+                                    groups = groups,
+                                    crawlerRunId = crawlerRunId,
+                                    miscTasksResults = miscTasksResults.mapKeys { Branch(it.key) },
+                                    topics = topics,
+                                    lastPushDate = lastPushDate)
+
+    companion object {
+
+        fun of(repository: Repository, queuedAtNanos: Long) = SpilledRepository(repository.url,
+                                                                                 repository.name,
+                                                                                 repository.defaultBranch,
+                                                                                 repository.creationDate,
+                                                                                 repository.lastUpdateDate,
+                                                                                 repository.excluded,
+                                                                                 repository.reason,
+                                                                                 repository.skipped,
+                                                                                 repository.fullName,
+                                                                                 repository.branchesToParse.map { it.name },
+                                                                                 repository.indicators.mapKeys { it.key.name },
+                                                                                 repository.tags,
+                                                                                 repository.groups,
+                                                                                 repository.crawlerRunId,
+                                                                                 repository.miscTasksResults.mapKeys { it.key.name },
+                                                                                 repository.topics,
+                                                                                 repository.lastPushDate,
+                                                                                 queuedAtNanos)
+    }
+}
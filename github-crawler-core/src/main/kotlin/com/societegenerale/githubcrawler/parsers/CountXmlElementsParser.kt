@@ -1,5 +1,6 @@
 package com.societegenerale.githubcrawler.parsers
 
+import com.societegenerale.githubcrawler.CompiledExpressions
 import com.societegenerale.githubcrawler.IndicatorDefinition
 import org.dom4j.Document
 import org.dom4j.io.SAXReader
@@ -22,22 +23,35 @@ class CountXmlElementsParser : FileContentParser {
 
     override fun parseFileContentForIndicator(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpi: IndicatorDefinition): Map<String, String> {
 
-        try {
-            return internalParseFileContentForIndicator(fileContent, kpi)
+        return parseFileContentForIndicators(fileContent, pathToFileToGetIndicatorsFrom, listOf(kpi))
+    }
+
+    override fun parseFileContentForIndicators(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpis: List<IndicatorDefinition>): Map<String, String> {
+
+        val originalDocument = try {
+            parseStringIntoDocument(fileContent)
         }
         catch(e : Exception){
 
             log.warn("problem while parsing the file - ",e)
 
-            return mapOf(Pair(kpi.name,"issue while parsing the file"))
+            return kpis.associate { Pair(it.name, "issue while parsing the file") }
         }
+
+        return kpis.associate { Pair(it.name, countMatchingElements(originalDocument, it)) }
     }
 
-    private fun internalParseFileContentForIndicator(fileContent: String, kpi: IndicatorDefinition): Map<String, String> {
+    private fun countMatchingElements(originalDocument: Document, kpi: IndicatorDefinition): String {
 
-        val originalDocument = parseStringIntoDocument(fileContent)
+        return try {
+            CompiledExpressions.xPath(kpi.params[XPATH_TO_MATCH]!!).selectNodes(originalDocument).size.toString()
+        }
+        catch(e : Exception){
 
-        return mapOf(Pair(kpi.name,originalDocument.selectNodes(kpi.params[XPATH_TO_MATCH]).size.toString()))
+            log.warn("problem while evaluating ${kpi.params[XPATH_TO_MATCH]} - ",e)
+
+            "issue while parsing the file"
+        }
     }
 
     private fun parseStringIntoDocument(documentToProcess: String): Document {
@@ -31,6 +31,22 @@ interface FileContentParser {
      */
     fun parseFileContentForIndicator(fileContent: String, pathToFileToGetIndicatorsFrom:String, kpi: IndicatorDefinition): Map<String, String>
 
+    /**
+     * Called once per file with all the indicators of this parser type configured on it. Parsers for which parsing the file is the costly part override it,
+     * to parse the content once and look for all the indicators in the parsed document - by default, the file is handed over to [parseFileContentForIndicator] for each indicator.
+     *
+     * @param kpis the indicators we need to find in the file, all of them with this parser type
+     * @return a Map with the indicator names as keys, and the values found as the values
+     */
+    fun parseFileContentForIndicators(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpis: List<IndicatorDefinition>): Map<String, String> {
+
+        val indicators = HashMap<String, String>()
+
+        kpis.forEach { indicators.putAll(parseFileContentForIndicator(fileContent, pathToFileToGetIndicatorsFrom, it)) }
+
+        return indicators
+    }
+
 
     companion object {
         val NOT_FOUND = "not found"
@@ -1,9 +1,9 @@
 package com.societegenerale.githubcrawler.parsers
 
+import com.societegenerale.githubcrawler.CompiledExpressions
 import com.societegenerale.githubcrawler.IndicatorDefinition
 import org.slf4j.LoggerFactory
 import java.util.*
-import java.util.regex.Pattern
 
 
 class FirstMatchingRegexpParser : FileContentParser {
@@ -28,7 +28,7 @@ class FirstMatchingRegexpParser : FileContentParser {
 
         val patternFromConfig = kpi.params[PATTERN]
 
-        val pattern = Pattern.compile(patternFromConfig)
+        val pattern = CompiledExpressions.pattern(patternFromConfig!!)
         val matcher = pattern.matcher(fileContent)
 
         var foundValue = FileContentParser.NOT_FOUND
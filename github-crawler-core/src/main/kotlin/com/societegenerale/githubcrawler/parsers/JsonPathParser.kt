@@ -1,7 +1,9 @@
 package com.societegenerale.githubcrawler.parsers
 
-import com.jayway.jsonpath.JsonPath.read
+import com.jayway.jsonpath.DocumentContext
+import com.jayway.jsonpath.JsonPath
 import com.jayway.jsonpath.PathNotFoundException
+import com.societegenerale.githubcrawler.CompiledExpressions
 import com.societegenerale.githubcrawler.IndicatorDefinition
 import net.minidev.json.JSONArray
 import org.slf4j.LoggerFactory
@@ -27,26 +29,25 @@ class JsonPathParser : FileContentParser {
 
     override fun parseFileContentForIndicator(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpi: IndicatorDefinition): Map<String, String> {
 
-        return internalParseFileContentForIndicator(fileContent, kpi)
+        return parseFileContentForIndicators(fileContent, pathToFileToGetIndicatorsFrom, listOf(kpi))
     }
 
-    private fun internalParseFileContentForIndicator(fileContent: String, kpi: IndicatorDefinition): Map<String, String> {
+    override fun parseFileContentForIndicators(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpis: List<IndicatorDefinition>): Map<String, String> {
 
-        val indicator = HashMap<String, String>()
-
-        if(kpi.params[JSON_PATH] == null){
-            throw IllegalStateException("please define a '$JSON_PATH' attribute in your config for the indicator '${kpi.name}'")
+        kpis.firstOrNull { it.params[JSON_PATH] == null }?.let {
+            throw IllegalStateException("please define a '$JSON_PATH' attribute in your config for the indicator '${it.name}'")
         }
 
-        indicator.put(kpi.name, findValueAccordingToPath(fileContent, kpi.params[JSON_PATH]!!))
+        // the Json is parsed once, and all the paths are evaluated on the parsed document
+        val document = JsonPath.parse(fileContent)
 
-        return indicator
+        return kpis.associate { Pair(it.name, findValueAccordingToPath(document, it.params[JSON_PATH]!!)) }
     }
 
-    private fun findValueAccordingToPath(fileContent: String, path : String) : String{
+    private fun findValueAccordingToPath(document: DocumentContext, path : String) : String{
 
         return try {
-            val result = read(fileContent, path) as Any
+            val result: Any = document.read(CompiledExpressions.jsonPath(path))
 
             if (result is String) {
                 result
@@ -0,0 +1,204 @@
+package com.societegenerale.githubcrawler.parsers
+
+import java.io.StringReader
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamException
+
+/**
+ * Streams once through a pom.xml, and collects along the way :
+ * - the versions of the artifacts we're looking for, wherever they are declared : parent, dependencies, dependencyManagement, plugins (or the project itself)
+ * - all the properties, so that ${...} placeholders in these versions can be resolved once the whole file has been read.
+ *
+ * Only the artifactId / version of the elements declaring an artifact, and the properties, are read as text : everything else is skipped.
+ * An artifactId is matched only with the artifactId / version elements directly under the same element, so that exclusions don't get mistaken for dependencies.
+ */
+class PomXmlAnalyzer {
+
+    companion object {
+        private const val PROJECT = "project"
+        private const val PARENT = "parent"
+        private const val PROPERTIES = "properties"
+        private const val ARTIFACT_ID = "artifactId"
+        private const val VERSION = "version"
+
+        private val ELEMENTS_DECLARING_AN_ARTIFACT = setOf(PROJECT, PARENT, "dependency", "plugin")
+
+        // creating the factory is costly, but creating readers from a configured factory is thread safe
+        private val xmlInputFactory = XMLInputFactory.newInstance().apply {
+            setProperty(XMLInputFactory.SUPPORT_DTD, false)
+            setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+            setProperty(XMLInputFactory.IS_COALESCING, true)
+        }
+    }
+
+    /**
+     * element declaring an artifact, currently being read. Instances are reused from one element to the next
+     */
+    private class ArtifactDeclaration {
+        var depth = 0
+        var name = ""
+        var artifactId: String? = null
+        var version: String? = null
+    }
+
+    fun analyze(pomXml: String, artifactIdsToFind: Collection<String>): PomXmlAnalysis {
+
+        val declaredVersions = HashMap<String, String>()
+        val declaredArtifactIds = HashSet<String>()
+        val properties = HashMap<String, String>()
+
+        var projectVersion: String? = null
+        var parentVersion: String? = null
+
+        val declarations = ArrayList<ArtifactDeclaration>()
+        var nbOpenDeclarations = 0
+
+        var depth = 0
+        var propertiesDepth = -1
+
+        var parsingError: XMLStreamException? = null
+
+        val reader = xmlInputFactory.createXMLStreamReader(StringReader(pomXml))
+
+        try {
+            while (reader.hasNext()) {
+
+                when (reader.next()) {
+
+                    XMLStreamConstants.START_ELEMENT -> {
+
+                        depth++
+
+                        val name = reader.localName
+                        val currentDeclaration = if (nbOpenDeclarations > 0) declarations[nbOpenDeclarations - 1] else null
+                        val isDirectlyInDeclaration = currentDeclaration != null && depth == currentDeclaration.depth + 1
+
+                        // getElementText moves the reader to the end of the element : we won't see its END_ELEMENT, so depth is decremented right away
+                        when {
+                            propertiesDepth >= 0 && depth == propertiesDepth + 1 -> { properties.putIfAbsent(name, reader.elementText.trim()); depth-- }
+                            isDirectlyInDeclaration && name == ARTIFACT_ID -> { currentDeclaration!!.artifactId = reader.elementText.trim(); depth-- }
+                            isDirectlyInDeclaration && name == VERSION -> { currentDeclaration!!.version = reader.elementText.trim(); depth-- }
+                            name == PROPERTIES -> propertiesDepth = depth
+                            name in ELEMENTS_DECLARING_AN_ARTIFACT && (name != PROJECT || depth == 1) -> {
+
+                                if (nbOpenDeclarations == declarations.size) {
+                                    declarations.add(ArtifactDeclaration())
+                                }
+
+                                val declaration = declarations[nbOpenDeclarations++]
+                                declaration.depth = depth
+                                declaration.name = name
+                                declaration.artifactId = null
+                                declaration.version = null
+                            }
+                        }
+                    }
+
+                    XMLStreamConstants.END_ELEMENT -> {
+
+                        if (depth == propertiesDepth) {
+                            propertiesDepth = -1
+                        }
+
+                        val currentDeclaration = if (nbOpenDeclarations > 0) declarations[nbOpenDeclarations - 1] else null
+
+                        if (currentDeclaration != null && depth == currentDeclaration.depth) {
+
+                            val artifactId = currentDeclaration.artifactId
+                            val version = currentDeclaration.version
+
+                            if (artifactId != null && artifactIdsToFind.contains(artifactId)) {
+                                declaredArtifactIds.add(artifactId)
+
+                                if (version != null) {
+                                    declaredVersions.putIfAbsent(artifactId, version)
+                                }
+                            }
+
+                            when {
+                                currentDeclaration.name == PROJECT -> projectVersion = version
+                                currentDeclaration.name == PARENT && depth == 2 -> parentVersion = version
+                            }
+
+                            nbOpenDeclarations--
+                        }
+
+                        depth--
+                    }
+                }
+            }
+        }
+        catch (e: XMLStreamException) {
+            // what has been collected before the error can still be used
+            parsingError = e
+        }
+        finally {
+            reader.close()
+        }
+
+        // project version is inherited from the parent when not declared
+        (projectVersion ?: parentVersion)?.let {
+            properties["project.version"] = it
+            properties["pom.version"] = it
+        }
+
+        parentVersion?.let {
+            properties["project.parent.version"] = it
+            properties["parent.version"] = it
+        }
+
+        return PomXmlAnalysis(declaredVersions, declaredArtifactIds, properties, parsingError)
+    }
+
+}
+
+/**
+ * What [PomXmlAnalyzer] found in a pom.xml, for the artifacts it was looking for
+ *
+ * @param parsingError set when the file is not valid : what has been found before the error is still available
+ */
+class PomXmlAnalysis(private val declaredVersions: Map<String, String>,
+                     private val declaredArtifactIds: Set<String>,
+                     val properties: Map<String, String>,
+                     val parsingError: XMLStreamException?) {
+
+    fun isDeclared(artifactId: String): Boolean = declaredArtifactIds.contains(artifactId)
+
+    /**
+     * @return the version, as declared in the file (may contain ${...} placeholders)
+     */
+    fun declaredVersion(artifactId: String): String? = declaredVersions[artifactId]
+
+    /**
+     * @return the version, with all its placeholders replaced by the values of the properties - or null if a property can't be found
+     */
+    fun resolvedVersion(artifactId: String): String? = declaredVersions[artifactId]?.let { resolvePlaceholders(it) }
+
+    private fun resolvePlaceholders(value: String): String? {
+
+        var resolvedValue = value
+
+        repeat(MAX_PLACEHOLDERS_REPLACEMENTS) {
+
+            val placeholderStart = resolvedValue.indexOf("\${")
+            val placeholderEnd = resolvedValue.indexOf('}', placeholderStart)
+
+            if (placeholderStart < 0 || placeholderEnd < 0) {
+                return resolvedValue
+            }
+
+            val propertyValue = properties[resolvedValue.substring(placeholderStart + 2, placeholderEnd)] ?: return null
+
+            resolvedValue = resolvedValue.substring(0, placeholderStart) + propertyValue + resolvedValue.substring(placeholderEnd + 1)
+        }
+
+        return null
+    }
+
+    private companion object {
+        // properties may reference other properties : we stop after that many replacements, in case they reference each other
+        private const val MAX_PLACEHOLDERS_REPLACEMENTS = 32
+    }
+
+}
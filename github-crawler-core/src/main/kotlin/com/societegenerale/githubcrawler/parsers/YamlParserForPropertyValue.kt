@@ -21,12 +21,42 @@ class YamlParserForPropertyValue : FileContentParser {
 
     override fun parseFileContentForIndicator(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpi: IndicatorDefinition): Map<String, String> {
 
-        return internalParseFileContentForIndicator(fileContent, kpi)
+        return parseFileContentForIndicators(fileContent, pathToFileToGetIndicatorsFrom, listOf(kpi))
     }
 
-    fun internalParseFileContentForIndicator(fileContent: String, kpi: IndicatorDefinition): Map<String, String> {
+    override fun parseFileContentForIndicators(fileContent: String, pathToFileToGetIndicatorsFrom: String, kpis: List<IndicatorDefinition>): Map<String, String> {
 
-        val yamlDocuments = Yaml().loadAll(fileContent)
+        // the documents are loaded once, and all the properties are looked for in them
+        val yamlDocuments = loadDocuments(fileContent)
+
+        val result = HashMap<String, String>()
+
+        kpis.forEach { result.putAll(internalParseFileContentForIndicator(yamlDocuments, it)) }
+
+        return result
+    }
+
+    private fun loadDocuments(fileContent: String): YamlDocuments {
+
+        val documents = ArrayList<Any?>()
+
+        val documentsIterator = Yaml().loadAll(fileContent).iterator()
+
+        try {
+            while (documentsIterator.hasNext()) {
+                documents.add(documentsIterator.next())
+            }
+        } catch (e: ScannerException) {
+            log.warn("problem while parsing yaml file", e)
+
+            // documents before the faulty one can still be used
+            return YamlDocuments(documents, e)
+        }
+
+        return YamlDocuments(documents, null)
+    }
+
+    private fun internalParseFileContentForIndicator(yamlDocuments: YamlDocuments, kpi: IndicatorDefinition): Map<String, String> {
 
         val result = HashMap<String, String>()
 
@@ -36,7 +66,7 @@ class YamlParserForPropertyValue : FileContentParser {
 
         try {
 
-            yamlDocuments.forEach {
+            yamlDocuments.documents.forEach {
 
                 @Suppress("UNCHECKED_CAST")
                 val yamlDocument = it as Map<String, Any>
@@ -53,16 +83,15 @@ class YamlParserForPropertyValue : FileContentParser {
                     return result;
                 }
             }
-        } catch (e: ScannerException) {
-            log.warn("problem while parsing yaml file", e)
-            result.put(kpi.name, "issue while parsing " + e.message.toString())
         }
-        //TODO refactor to multi catch when it's added to Kotlin
         catch (e: ParsingException) {
             log.warn("problem while parsing yaml file", e)
             result.put(kpi.name, "issue while parsing " + e.message.toString())
         }
 
+        if (result.isEmpty() && yamlDocuments.scannerException != null) {
+            result.put(kpi.name, "issue while parsing " + yamlDocuments.scannerException.message.toString())
+        }
 
         return result
     }
@@ -116,6 +145,8 @@ class YamlParserForPropertyValue : FileContentParser {
 
 }
 
+private class YamlDocuments(val documents: List<Any?>, val scannerException: ScannerException?)
+
 class PrefixNotFoundInDocumentException(message: String) : Throwable(message)
 
 class ParsingException(message: String) : Throwable(message)
@@ -0,0 +1,152 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.io.IOUtils
+import org.slf4j.LoggerFactory
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
+
+/**
+ * Serves the files to parse from the archive of each branch, downloaded once, instead of fetching them one by one : when many files are configured,
+ * it's cheaper to get the whole branch in a single call.
+ *
+ * The archive is decompressed as it gets downloaded, keeping only [pathsToExtract] in memory - everything else is skipped, except for its path :
+ * the archive also gives us the [FileTree] of the branch, without listing it separately.
+ *
+ * Other files (like the ones a repository redirects to) and the other calls go to [delegate], as well as everything about branches we can't get the archive of -
+ * files requested in batch included, so that the delegate can still fetch them in batch.
+ */
+class ArchiveSourceControl(private val delegate: RemoteSourceControl,
+                           private val pathsToExtract: Set<String>) : RemoteSourceControl by delegate {
+
+    /**
+     * @param files the extracted files, by path from the root of the branch
+     * @param unavailablePaths paths that are in the archive, but not as a regular file (symlinks, for instance)
+     * @param fileTree all the files of the archive
+     */
+    private class ArchiveContent(val files: Map<String, String>, val unavailablePaths: Set<String>, val fileTree: FileTree?, val isAvailable: Boolean = true) {
+
+        fun canServe(path: String) = isAvailable && path !in unavailablePaths
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    // the files of a branch get requested at about the same time : we only need to keep the extracted files of the branches being crawled
+    private val archives: Cache<Pair<String, String>, ArchiveContent> = CacheBuilder.newBuilder()
+        .maximumSize(256)
+        .expireAfterAccess(2, TimeUnit.MINUTES)
+        .build()
+
+    override fun fetchFileContent(repositoryFullName: String, branchName: String, fileToFetch: String): String {
+
+        if (fileToFetch !in pathsToExtract) {
+            return delegate.fetchFileContent(repositoryFullName, branchName, fileToFetch)
+        }
+
+        val archive = archiveOf(repositoryFullName, branchName)
+
+        if (!archive.canServe(fileToFetch)) {
+            return delegate.fetchFileContent(repositoryFullName, branchName, fileToFetch)
+        }
+
+        return archive.files[fileToFetch] ?: throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+    }
+
+    /**
+     * @return the files we could extract from the archives, and the ones the delegate got in batch. The others are left to the caller, to fetch one by one
+     */
+    override fun fetchFilesContent(filesToFetch: Collection<FileToFetch>): Map<FileToFetch, String?>? {
+
+        val extractedFiles = HashMap<FileToFetch, String?>()
+        val otherFiles = ArrayList<FileToFetch>()
+
+        for (file in filesToFetch) {
+
+            val archive = if (file.path in pathsToExtract) archiveOf(file.repositoryFullName, file.branchName) else null
+
+            if (archive != null && archive.canServe(file.path)) {
+                extractedFiles[file] = archive.files[file.path]
+            } else {
+                otherFiles.add(file)
+            }
+        }
+
+        if (otherFiles.isEmpty()) {
+            return extractedFiles
+        }
+
+        val fetchedByDelegate = delegate.fetchFilesContent(otherFiles)
+
+        return if (extractedFiles.isEmpty()) fetchedByDelegate else extractedFiles + (fetchedByDelegate ?: emptyMap())
+    }
+
+    override fun fetchFileTree(repositoryFullName: String, branchName: String): FileTree? {
+
+        return archiveOf(repositoryFullName, branchName).fileTree ?: delegate.fetchFileTree(repositoryFullName, branchName)
+    }
+
+    private fun archiveOf(repositoryFullName: String, branchName: String): ArchiveContent {
+
+        // concurrent requests for the same branch wait for the first one to extract the archive
+        return archives.get(Pair(repositoryFullName, branchName)) { extractArchive(repositoryFullName, branchName) }
+    }
+
+    private fun extractArchive(repositoryFullName: String, branchName: String): ArchiveContent {
+
+        val unavailableArchive = ArchiveContent(emptyMap(), emptySet(), null, isAvailable = false)
+
+        val files = HashMap<String, String>()
+        val unavailablePaths = HashSet<String>()
+        val fileTree = FileTree()
+
+        try {
+            val archive = delegate.fetchArchive(repositoryFullName, branchName) ?: return unavailableArchive
+
+            // closes the archive (and the HTTP response behind it) even when it's not a valid gzip
+            val tarInputStream = try {
+                TarArchiveInputStream(GZIPInputStream(archive))
+            } catch (e: Exception) {
+                archive.close()
+                throw e
+            }
+
+            tarInputStream.use { tar ->
+
+                var entry = tar.nextTarEntry
+
+                while (entry != null) {
+
+                    // all the files are in a top level directory, named after the repository and the commit
+                    val path = entry.name.substringAfter("/")
+
+                    // the archive doesn't give the blob SHA of the files : we don't need it, since we serve them from the archive
+                    if (entry.isFile || entry.isSymbolicLink) {
+                        fileTree.addFile(path, null)
+                    }
+
+                    if (path in pathsToExtract) {
+                        if (entry.isFile) {
+                            files[path] = String(IOUtils.toByteArray(tar), StandardCharsets.UTF_8)
+                        } else {
+                            unavailablePaths.add(path)
+                        }
+                    }
+
+                    // the content of the entries we don't read is skipped
+                    entry = tar.nextTarEntry
+                }
+            }
+        } catch (e: Exception) {
+            log.warn("problem while extracting the archive of repo $repositoryFullName, branch $branchName - fetching files one by one", e)
+            return unavailableArchive
+        }
+
+        log.debug("extracted {} files from the archive of repo {}, branch {}", files.size, repositoryFullName, branchName)
+
+        return ArchiveContent(files, unavailablePaths, fileTree)
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.societegenerale.githubcrawler.remote
+
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.atomic.AtomicLong
+import java.util.stream.Collectors
+
+/**
+ * On disk cache of file contents, addressed by git blob SHA : since the SHA is computed from the content, an entry never needs to be invalidated,
+ * and the same file in several repositories (or several branches, or several crawls) is downloaded only once.
+ *
+ * The cache is bounded by [maxSizeInBytes] : when it's full, the least recently used entries are evicted. Entries found on disk when starting are kept,
+ * oldest first, so the cache survives from one crawl to the next.
+ */
+class BlobCache(private val directory: Path,
+                private val maxSizeInBytes: Long) {
+
+    companion object {
+        private val BLOB_SHA = Regex("^[0-9a-f]{40,64}$")
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    // blob SHA -> size in bytes, in access order
+    private val entries = LinkedHashMap<String, Long>(16, 0.75f, true)
+
+    private var totalSizeInBytes = 0L
+
+    private val nbHits = AtomicLong()
+
+    private val nbMisses = AtomicLong()
+
+    val hits: Long
+        get() = nbHits.get()
+
+    val misses: Long
+        get() = nbMisses.get()
+
+    init {
+        Files.createDirectories(directory)
+
+        val existingBlobs = Files.list(directory).use { files ->
+            files.filter { BLOB_SHA.matches(it.fileName.toString()) }
+                .sorted(compareBy { Files.getLastModifiedTime(it) })
+                .collect(Collectors.toList())
+        }
+
+        synchronized(this) {
+            existingBlobs.forEach { add(it.fileName.toString(), Files.size(it)) }
+        }
+
+        log.info("blob cache in $directory : ${entries.size} blobs, $totalSizeInBytes bytes")
+    }
+
+    /**
+     * @return the content of the blob, or null if it's not in the cache
+     */
+    fun get(blobSha: String): String? {
+
+        val isCached = synchronized(this) { entries[blobSha] != null }
+
+        if (!isCached) {
+            nbMisses.incrementAndGet()
+            return null
+        }
+
+        return try {
+            FileChannel.open(pathOf(blobSha), StandardOpenOption.READ).use { channel ->
+                StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())).toString()
+            }.also { nbHits.incrementAndGet() }
+        } catch (e: IOException) {
+            // evicted by another thread in the meantime
+            synchronized(this) { remove(blobSha) }
+            nbMisses.incrementAndGet()
+            null
+        }
+    }
+
+    fun put(blobSha: String, content: String) {
+
+        if (!BLOB_SHA.matches(blobSha)) {
+            return
+        }
+
+        val bytes = content.toByteArray(StandardCharsets.UTF_8)
+
+        if (bytes.size > maxSizeInBytes) {
+            return
+        }
+
+        try {
+            // written next to the target first, so that concurrent readers never see a partial blob
+            val tmpFile = Files.createTempFile(directory, blobSha, ".tmp")
+            Files.write(tmpFile, bytes)
+            Files.move(tmpFile, pathOf(blobSha), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: IOException) {
+            log.warn("unable to store blob $blobSha in cache", e)
+            return
+        }
+
+        synchronized(this) {
+            remove(blobSha)
+            add(blobSha, bytes.size.toLong())
+        }
+    }
+
+    private fun add(blobSha: String, sizeInBytes: Long) {
+
+        entries[blobSha] = sizeInBytes
+        totalSizeInBytes += sizeInBytes
+
+        val lruEntries = entries.entries.iterator()
+
+        while (totalSizeInBytes > maxSizeInBytes && lruEntries.hasNext()) {
+
+            val (evictedSha, evictedSize) = lruEntries.next()
+
+            lruEntries.remove()
+            totalSizeInBytes -= evictedSize
+
+            Files.deleteIfExists(pathOf(evictedSha))
+        }
+    }
+
+    private fun remove(blobSha: String) {
+        entries.remove(blobSha)?.let { totalSizeInBytes -= it }
+    }
+
+    private fun pathOf(blobSha: String): Path = directory.resolve(blobSha)
+
+    override fun toString(): String {
+        return "blob cache : $hits hits, $misses misses"
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.societegenerale.githubcrawler.remote
+
+/**
+ * All the files of a branch, as a trie of path segments : it tells us which files exist without fetching them,
+ * and gives us the blob SHA of each file, so that we can fetch its content by SHA.
+ *
+ * Segment names are shared between nodes (a big repository has thousands of "src", "main", "pom.xml"...), to keep the trie compact.
+ *
+ * @param isComplete false when the source control couldn't list all the files : a file missing from the tree may still exist
+ */
+class FileTree(val isComplete: Boolean = true) {
+
+    companion object {
+        private const val SEPARATOR = '/'
+
+        private val GLOB_SPECIAL_CHARS = charArrayOf('*', '?', '[', '{')
+
+        fun isGlob(pattern: String) = pattern.indexOfAny(GLOB_SPECIAL_CHARS) >= 0
+
+        /**
+         * "**" matches across directories (zero or more of them when followed by a slash), "*" and "?" within a path segment,
+         * "[abc]" one of the characters ("[!abc]" any other one), and "{a,b}" one of the alternatives
+         */
+        fun globToRegex(glob: String): Regex {
+
+            val regex = StringBuilder()
+
+            var i = 0
+            var inAlternatives = false
+
+            while (i < glob.length) {
+
+                val c = glob[i]
+
+                when {
+                    glob.startsWith("**/", i) -> { regex.append("(?:.*/)?"); i += 2 }
+                    glob.startsWith("**", i) -> { regex.append(".*"); i++ }
+                    c == '*' -> regex.append("[^/]*")
+                    c == '?' -> regex.append("[^/]")
+                    c == '[' -> {
+                        val end = glob.indexOf(']', i + 1)
+                        if (end < 0) {
+                            regex.append("\\[")
+                        } else {
+                            val characters = glob.substring(i + 1, end).replace("\\", "\\\\")
+                            regex.append("[").append(if (characters.startsWith("!")) "^" + characters.substring(1) else characters).append("]")
+                            i = end
+                        }
+                    }
+                    c == '{' -> { regex.append("(?:"); inAlternatives = true }
+                    c == '}' && inAlternatives -> { regex.append(")"); inAlternatives = false }
+                    c == ',' && inAlternatives -> regex.append("|")
+                    else -> regex.append(Regex.escape(c.toString()))
+                }
+
+                i++
+            }
+
+            return Regex(regex.toString())
+        }
+    }
+
+    private class Node {
+
+        var children: HashMap<String, Node>? = null
+
+        var isFile = false
+
+        // null for files we can't fetch by SHA, like symlinks
+        var blobSha: String? = null
+    }
+
+    private val root = Node()
+
+    private val segmentNames = HashMap<String, String>()
+
+    var nbFiles = 0
+        private set
+
+    fun addFile(path: String, blobSha: String?) {
+
+        var node = root
+
+        for (segment in path.split(SEPARATOR)) {
+
+            val children = node.children ?: HashMap<String, Node>(4).also { node.children = it }
+
+            node = children.getOrPut(segmentNames.getOrPut(segment) { segment }) { Node() }
+        }
+
+        if (!node.isFile) {
+            nbFiles++
+        }
+
+        node.isFile = true
+        node.blobSha = blobSha
+    }
+
+    fun containsFile(path: String): Boolean = find(path)?.isFile == true
+
+    /**
+     * @return true only when we know for sure that the file doesn't exist
+     */
+    fun isMissing(path: String): Boolean = isComplete && !containsFile(path)
+
+    fun blobSha(path: String): String? = find(path)?.takeIf { it.isFile }?.blobSha
+
+    /**
+     * @return the first file matching the glob, shallowest first, then in alphabetical order - or null if none matches
+     */
+    fun firstMatch(glob: String): String? {
+
+        val regex = globToRegex(glob)
+
+        // no need to look outside of the directory the pattern starts with
+        val literalPrefix = glob.split(SEPARATOR).dropLast(1).takeWhile { !isGlob(it) }
+
+        val startNode = if (literalPrefix.isEmpty()) root else find(literalPrefix.joinToString(SEPARATOR.toString())) ?: return null
+
+        var currentLevel = listOf(Pair(literalPrefix.joinToString(SEPARATOR.toString()), startNode))
+
+        while (currentLevel.isNotEmpty()) {
+
+            val nextLevel = ArrayList<Pair<String, Node>>()
+
+            for ((directory, node) in currentLevel) {
+
+                for ((name, child) in node.children?.entries?.sortedBy { it.key } ?: emptyList()) {
+
+                    val path = if (directory.isEmpty()) name else "$directory$SEPARATOR$name"
+
+                    if (child.isFile && regex.matches(path)) {
+                        return path
+                    }
+
+                    if (child.children != null) {
+                        nextLevel.add(Pair(path, child))
+                    }
+                }
+            }
+
+            currentLevel = nextLevel
+        }
+
+        return null
+    }
+
+    private fun find(path: String): Node? {
+
+        var node = root
+
+        for (segment in path.split(SEPARATOR)) {
+            node = node.children?.get(segment) ?: return null
+        }
+
+        return node
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Semaphore
+
+/**
+ * Fetches files through the GitHub GraphQL API, many of them in a single query : each file is an aliased
+ * `object(expression: "branch:path")` lookup, grouped by repository.
+ *
+ * Files requested at the same time by several threads (ie several repositories being crawled) get grouped in the same queries :
+ * there's no timer, each query takes whatever is pending when it gets sent, up to [maxFilesPerQuery]. So when [maxConcurrentQueries] are in flight,
+ * the lookups requested meanwhile are sent together in the next one. [maxFilesPerQuery] is the budget of a single query : GitHub aborts queries
+ * that take too long to resolve, and large responses are slow to come back.
+ *
+ * Binary and truncated files, and files we couldn't get because the query failed, are not returned : callers fetch them the usual way.
+ */
+class GitHubGraphQLFileFetcher(private val graphQLUrl: String,
+                               private val httpClient: OkHttpClient,
+                               private val apiKey: String,
+                               private val maxFilesPerQuery: Int = 50,
+                               maxConcurrentQueries: Int = 4) {
+
+    companion object {
+        private val JSON = "application/json".toMediaType()
+
+        /**
+         * @return the GraphQL endpoint matching the REST one : https://api.github.com/graphql on github.com, https://host/api/graphql on GitHub Enterprise
+         */
+        fun graphQLUrlOf(gitHubUrl: String): String {
+
+            val restUrl = gitHubUrl.removeSuffix("/")
+
+            return if (restUrl.endsWith("/api/v3")) restUrl.removeSuffix("/v3") + "/graphql" else "$restUrl/graphql"
+        }
+    }
+
+    private class PendingLookup(val file: FileToFetch) {
+        val result = CompletableFuture<FileLookupResult>()
+    }
+
+    private class FileLookupResult(val content: String?, val isResolved: Boolean)
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private val objectMapper = jacksonObjectMapper()
+
+    private val pendingLookups = ConcurrentLinkedQueue<PendingLookup>()
+
+    private val queriesInFlight = Semaphore(maxConcurrentQueries, true)
+
+    /**
+     * @return the content of the files we could get, or null for the ones that don't exist. Files we couldn't get are absent from the result
+     */
+    fun fetch(filesToFetch: Collection<FileToFetch>): Map<FileToFetch, String?> {
+
+        val lookups = filesToFetch.distinct().map { PendingLookup(it) }
+
+        pendingLookups.addAll(lookups)
+
+        while (lookups.any { !it.result.isDone }) {
+
+            queriesInFlight.acquire()
+
+            val batch = try {
+                drainBatch().also { if (it.isNotEmpty()) performQuery(it) }
+            } finally {
+                queriesInFlight.release()
+            }
+
+            if (batch.isEmpty()) {
+                // all our lookups have been taken by queries in flight : we just need to wait for them
+                CompletableFuture.allOf(*lookups.map { it.result }.toTypedArray()).join()
+            }
+        }
+
+        return lookups.map { Pair(it.file, it.result.join()) }
+            .filter { it.second.isResolved }
+            .associate { Pair(it.first, it.second.content) }
+    }
+
+    private fun drainBatch(): List<PendingLookup> {
+
+        val batch = ArrayList<PendingLookup>()
+
+        while (batch.size < maxFilesPerQuery) {
+            batch.add(pendingLookups.poll() ?: break)
+        }
+
+        return batch
+    }
+
+    private fun performQuery(batch: List<PendingLookup>) {
+
+        val lookupsByRepository = batch.groupBy { it.file.repositoryFullName }.values.toList()
+
+        val results = try {
+            fetchBlobs(buildQuery(lookupsByRepository))
+        } catch (e: Exception) {
+            // lookups must get completed whatever happens, otherwise the threads waiting for them would wait forever
+            log.warn("problem while fetching ${batch.size} files through GraphQL - they'll be fetched one by one", e)
+            null
+        }
+
+        lookupsByRepository.forEachIndexed { repositoryIndex, lookups ->
+
+            val repositoryResult = results?.get("r$repositoryIndex")
+
+            lookups.forEachIndexed { fileIndex, lookup ->
+                lookup.result.complete(toLookupResult(repositoryResult, "f$fileIndex"))
+            }
+        }
+    }
+
+    private fun toLookupResult(repositoryResult: JsonNode?, fileAlias: String): FileLookupResult {
+
+        // repository not found, or not accessible with our token : we let the REST API tell us what's going on
+        if (repositoryResult == null || repositoryResult.isNull) {
+            return FileLookupResult(null, false)
+        }
+
+        val blob = repositoryResult.get(fileAlias)
+
+        if (blob == null || blob.isNull) {
+            return FileLookupResult(null, true)
+        }
+
+        val text = blob.get("text")
+
+        // binary file, or too big for GraphQL (or not a file at all)
+        if (text == null || text.isNull || blob.path("isTruncated").asBoolean(false)) {
+            return FileLookupResult(null, false)
+        }
+
+        return FileLookupResult(text.asText(), true)
+    }
+
+    private fun buildQuery(lookupsByRepository: List<List<PendingLookup>>): String {
+
+        val query = StringBuilder("query {")
+
+        lookupsByRepository.forEachIndexed { repositoryIndex, lookups ->
+
+            val (owner, name) = lookups.first().file.repositoryFullName.split("/", limit = 2)
+
+            query.append(" r$repositoryIndex: repository(owner: ${quote(owner)}, name: ${quote(name)}) {")
+
+            lookups.forEachIndexed { fileIndex, lookup ->
+                query.append(" f$fileIndex: object(expression: ${quote(lookup.file.branchName + ":" + lookup.file.path)}) { ... on Blob { text isTruncated } }")
+            }
+
+            query.append(" }")
+        }
+
+        return query.append(" }").toString()
+    }
+
+    // GraphQL string literals have the same escaping rules as JSON ones
+    private fun quote(value: String): String = objectMapper.writeValueAsString(value)
+
+    /**
+     * @return the data of the response, indexed by repository alias
+     */
+    private fun fetchBlobs(query: String): JsonNode {
+
+        val requestBuilder = Request.Builder()
+            .url(graphQLUrl)
+            .post(objectMapper.writeValueAsString(mapOf("query" to query)).toRequestBody(JSON))
+
+        if (apiKey.isNotBlank()) {
+            requestBuilder.header("Authorization", "token $apiKey")
+        }
+
+        httpClient.newCall(requestBuilder.build()).execute().use { response ->
+
+            if (!response.isSuccessful) {
+                throw IOException("GraphQL query failed. Code : ${response.code}, Message : ${response.message}")
+            }
+
+            val responseBody = objectMapper.readTree(response.body!!.string())
+
+            // repositories that can't be found come back as null, with an error : the other ones are still in the data
+            responseBody.get("errors")?.let { log.debug("errors in GraphQL response : {}", it) }
+
+            val data = responseBody.get("data")
+
+            if (data == null || data.isNull) {
+                throw IOException("no data in GraphQL response : ${responseBody.get("errors")}")
+            }
+
+            return data
+        }
+    }
+
+}
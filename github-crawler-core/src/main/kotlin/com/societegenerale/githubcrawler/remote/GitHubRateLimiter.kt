@@ -0,0 +1,167 @@
+package com.societegenerale.githubcrawler.remote
+
+import okhttp3.HttpUrl
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Response
+import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.util.concurrent.Semaphore
+
+/**
+ * GitHub has a separate rate limit for each class of requests : the search API in particular is limited to a few dozens of requests per minute,
+ * while we can perform thousands of "core" requests per hour.
+ */
+enum class GitHubRequestClass {
+    CORE, SEARCH, GRAPHQL;
+
+    companion object {
+
+        /**
+         * Classified from the path relative to the API root, so that a repository, a branch or a file named "search" doesn't make a request look like a search
+         *
+         * @param gitHubUrl the root of the API, as configured : like https://api.github.com, or https://myGitHubEnterprise/api/v3
+         */
+        fun of(url: HttpUrl, gitHubUrl: String): GitHubRequestClass {
+
+            val apiRootPath = gitHubUrl.toHttpUrl().encodedPath.removeSuffix("/")
+            val graphQLPath = GitHubGraphQLFileFetcher.graphQLUrlOf(gitHubUrl).toHttpUrl().encodedPath
+
+            val path = url.encodedPath
+
+            return when {
+                path == graphQLPath -> GRAPHQL
+                path.startsWith("$apiRootPath/search/") -> SEARCH
+                else -> CORE
+            }
+        }
+    }
+}
+
+/**
+ * Paces all the calls made to GitHub (through Feign or directly with OkHttp) according to the rate limit budget GitHub reports in its responses.
+ *
+ * Each [GitHubRequestClass] has its own budget and its own queue : requests waiting for search budget don't delay the others.
+ * Search requests are spread evenly over the rate limit window, and performed one at a time, as GitHub recommends.
+ *
+ * When GitHub rejects a request because of the rate limit (primary or secondary), we wait for as long as it tells us to, and retry.
+ */
+class GitHubRateLimiter(private val gitHubUrl: String,
+                        private val maxRetries: Int = 3,
+                        budgets: Map<GitHubRequestClass, RateLimitBudget> = defaultBudgets()) : Interceptor {
+
+    companion object {
+        const val RETRY_AFTER_HEADER = "Retry-After"
+
+        const val HTTP_NOT_MODIFIED = 304
+
+        // GitHub doesn't say how long to wait after hitting a secondary rate limit without a Retry-After header : it recommends at least a minute
+        val DEFAULT_BACK_OFF: Duration = Duration.ofSeconds(60)
+
+        fun defaultBudgets(): Map<GitHubRequestClass, RateLimitBudget> {
+            return mapOf(GitHubRequestClass.CORE to RateLimitBudget("core"),
+                         GitHubRequestClass.SEARCH to RateLimitBudget("search", lowBudgetRatio = 1.0),
+                         GitHubRequestClass.GRAPHQL to RateLimitBudget("graphql"))
+        }
+
+        private fun maxConcurrentRequests(requestClass: GitHubRequestClass) = if (requestClass == GitHubRequestClass.SEARCH) 1 else Int.MAX_VALUE
+    }
+
+    private class Lane(val budget: RateLimitBudget, maxConcurrentRequests: Int) {
+        val permits = Semaphore(maxConcurrentRequests, true)
+    }
+
+    private val lanes = GitHubRequestClass.values().associateWith { requestClass ->
+        Lane(budgets[requestClass] ?: RateLimitBudget(requestClass.name.lowercase()), maxConcurrentRequests(requestClass))
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    /**
+     * @return a client sharing the connection pool of the given one, with all its calls going through the rate limiter first
+     */
+    fun applyTo(httpClient: OkHttpClient): OkHttpClient {
+
+        val builder = httpClient.newBuilder()
+
+        // first, so that requests waiting for budget don't hold any of the resources the other interceptors may limit
+        builder.interceptors().add(0, this)
+
+        return builder.build()
+    }
+
+    fun budget(requestClass: GitHubRequestClass): RateLimitBudget = lanes.getValue(requestClass).budget
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+
+        val lane = lanes.getValue(GitHubRequestClass.of(chain.request().url, gitHubUrl))
+
+        lane.permits.acquire()
+
+        try {
+            return performInLane(chain, lane.budget)
+        } finally {
+            lane.permits.release()
+        }
+    }
+
+    private fun performInLane(chain: Interceptor.Chain, budget: RateLimitBudget): Response {
+
+        var nbRetries = 0
+
+        while (true) {
+
+            budget.acquire()
+
+            val response = chain.proceed(chain.request())
+
+            // GitHub doesn't count conditional requests answered with 304 Not Modified (see HttpClientConfig.cacheDirectory)
+            if (response.networkResponse?.code == HTTP_NOT_MODIFIED) {
+                budget.refund()
+            }
+
+            budget.update(response)
+
+            val backOff = backOffIfRateLimited(response, budget)
+
+            if (backOff == null || nbRetries >= maxRetries) {
+                return response
+            }
+
+            log.info("request to ${chain.request().url} got rate limited - retrying in ${backOff.seconds}s")
+
+            response.close()
+            budget.pauseFor(backOff)
+            nbRetries++
+        }
+    }
+
+    /**
+     * @return how long to wait before retrying, or null if the response is not a rate limit rejection
+     */
+    private fun backOffIfRateLimited(response: Response, budget: RateLimitBudget): Duration? {
+
+        if (response.code != 403 && response.code != 429) {
+            return null
+        }
+
+        val retryAfter = response.header(RETRY_AFTER_HEADER)?.toLongOrNull()
+
+        if (retryAfter != null) {
+            return Duration.ofSeconds(retryAfter)
+        }
+
+        if (response.header(RateLimitBudget.RATE_LIMIT_REMAINING_HEADER) == "0") {
+            return budget.timeUntilReset().plusSeconds(1)
+        }
+
+        // a 403 may also be a plain permission issue : only the body tells us it's a secondary rate limit
+        if (response.peekBody(1024).string().contains("rate limit", ignoreCase = true)) {
+            return DEFAULT_BACK_OFF
+        }
+
+        return null
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.societegenerale.githubcrawler.HttpClientConfig
+import feign.Feign
+import okhttp3.Cache
+import okhttp3.ConnectionPool
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.BufferedSource
+import okio.ForwardingSource
+import okio.buffer
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Each remote source control gets one HTTP client, shared by its Feign client and by the calls we build manually, so that they all reuse the same pool of connections.
+ */
+object HttpClients {
+
+    fun newSharedClient(config: HttpClientConfig): OkHttpClient {
+
+        val protocols = if (config.http2) listOf(Protocol.HTTP_2, Protocol.HTTP_1_1) else listOf(Protocol.HTTP_1_1)
+
+        val builder = OkHttpClient.Builder()
+            .connectionPool(ConnectionPool(config.maxIdleConnections, config.keepAliveSeconds, TimeUnit.SECONDS))
+            .connectTimeout(config.connectTimeoutSeconds, TimeUnit.SECONDS)
+            .readTimeout(config.readTimeoutSeconds, TimeUnit.SECONDS)
+            .protocols(protocols)
+            .addInterceptor(MaxRequestsPerHostInterceptor(config.maxRequestsPerHost))
+
+        if (config.cacheDirectory.isNotBlank()) {
+            builder.cache(Cache(File(config.cacheDirectory), config.cacheMaxSizeInMb * 1024 * 1024))
+                   .addNetworkInterceptor(AlwaysRevalidateInterceptor())
+        }
+
+        return builder.build()
+    }
+
+}
+
+/**
+ * Makes Feign use the shared client, with the same timeouts (otherwise Feign derives a new client for each request, with its own default timeouts)
+ */
+fun Feign.Builder.sharedClient(httpClient: OkHttpClient): Feign.Builder {
+
+    return this.client(feign.okhttp.OkHttpClient(httpClient))
+        .options(feign.Request.Options(httpClient.connectTimeoutMillis.toLong(), TimeUnit.MILLISECONDS,
+                                       httpClient.readTimeoutMillis.toLong(), TimeUnit.MILLISECONDS,
+                                       httpClient.followRedirects))
+}
+
+/**
+ * Servers let clients reuse some responses for a while without asking (GitHub : 60s), and we'd rather always get fresh data : but with a conditional request,
+ * which costs no body transfer (and no rate limit on GitHub) when nothing has changed.
+ *
+ * Responses with a validator are stored as "no-cache", so that the cache always revalidates them with their ETag / Last-Modified. The others are not stored at all :
+ * a response served from the cache without any network call would otherwise bring outdated rate limit headers.
+ */
+class AlwaysRevalidateInterceptor : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+
+        val response = chain.proceed(chain.request())
+
+        val hasValidator = response.header("ETag") != null || response.header("Last-Modified") != null
+
+        return response.newBuilder()
+            .header("Cache-Control", if (hasValidator) "no-cache" else "no-store")
+            .removeHeader("Expires")
+            .build()
+    }
+
+}
+
+/**
+ * OkHttp only limits the requests per host for asynchronous calls, while we use synchronous ones, from many threads : this limits them all.
+ *
+ * A request holds its permit until its response body is closed, and not only until the headers arrive : so that the transfers themselves (large archives or blobs) are limited too.
+ * Responses therefore always need to be closed - which OkHttp requires anyway, to give the connection back to the pool.
+ */
+class MaxRequestsPerHostInterceptor(private val maxRequestsPerHost: Int) : Interceptor {
+
+    private val requestsPerHost = ConcurrentHashMap<String, Semaphore>()
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+
+        val hostPermits = requestsPerHost.computeIfAbsent(chain.request().url.host) { Semaphore(maxRequestsPerHost, true) }
+
+        hostPermits.acquire()
+
+        val response = try {
+            chain.proceed(chain.request())
+        } catch (e: Exception) {
+            hostPermits.release()
+            throw e
+        }
+
+        val body = response.body
+
+        if (body == null) {
+            hostPermits.release()
+            return response
+        }
+
+        return response.newBuilder().body(PermitReleasingBody(body, hostPermits)).build()
+    }
+
+    private class PermitReleasingBody(private val body: ResponseBody, private val hostPermits: Semaphore) : ResponseBody() {
+
+        private val released = AtomicBoolean()
+
+        private val source: BufferedSource by lazy {
+            object : ForwardingSource(body.source()) {
+                override fun close() {
+                    try {
+                        super.close()
+                    } finally {
+                        // a body may get closed several times, but releases its permit only once
+                        if (released.compareAndSet(false, true)) {
+                            hostPermits.release()
+                        }
+                    }
+                }
+            }.buffer()
+        }
+
+        override fun contentType(): MediaType? = body.contentType()
+
+        override fun contentLength(): Long = body.contentLength()
+
+        override fun source(): BufferedSource = source
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.societegenerale.githubcrawler.remote
+
+import okhttp3.Response
+import org.slf4j.LoggerFactory
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Keeps track of the requests we can still perform until the rate limit gets reset, based on what the server tells us in the response headers.
+ *
+ * As long as there's plenty of budget left, requests go through immediately. When it gets low (below [lowBudgetRatio] of the limit),
+ * requests are spread evenly until the reset, so that the crawl keeps going at the highest sustainable rate instead of hitting the limit.
+ * When the budget is exhausted, or when the server asks us to back off, requests wait.
+ */
+class RateLimitBudget(val name: String,
+                      private val lowBudgetRatio: Double = 0.1,
+                      private val clock: Clock = Clock.systemUTC(),
+                      private val sleep: (Long) -> Unit = { Thread.sleep(it) }) {
+
+    companion object {
+        const val RATE_LIMIT_HEADER = "X-RateLimit-Limit"
+        const val RATE_LIMIT_REMAINING_HEADER = "X-RateLimit-Remaining"
+        const val RATE_LIMIT_RESET_HEADER = "X-RateLimit-Reset"
+
+        // every N requests, we log where we are with the budget
+        const val STATUS_LOG_FREQUENCY = 500L
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private var limit: Int? = null
+
+    private var remaining: Int? = null
+
+    private var resetAt: Instant = Instant.EPOCH
+
+    // when requests are paced or paused, the earliest time at which the next one can go
+    private var nextRequestAt: Instant = Instant.EPOCH
+
+    private val nbRequests = AtomicLong()
+
+    private val nbThrottledRequests = AtomicLong()
+
+    private val totalWaitMillis = AtomicLong()
+
+    val requestsPerformed: Long
+        get() = nbRequests.get()
+
+    val requestsThrottled: Long
+        get() = nbThrottledRequests.get()
+
+    val timeSpentWaiting: Duration
+        get() = Duration.ofMillis(totalWaitMillis.get())
+
+    val remainingRequests: Int?
+        @Synchronized get() = remaining
+
+    /**
+     * Blocks until the request can be performed
+     */
+    fun acquire() {
+
+        val waitMillis = reserveSlot()
+
+        if (waitMillis > 0) {
+            nbThrottledRequests.incrementAndGet()
+            totalWaitMillis.addAndGet(waitMillis)
+            sleep(waitMillis)
+        }
+
+        if (nbRequests.incrementAndGet() % STATUS_LOG_FREQUENCY == 0L) {
+            log.info("rate limit budget status - $this")
+        }
+    }
+
+    /**
+     * Books a slot for the request, so that concurrent requests get spread too.
+     *
+     * @return how long to wait before performing the request, in ms
+     */
+    @Synchronized
+    private fun reserveSlot(): Long {
+
+        val now = clock.instant()
+
+        var requestAt = maxOf(now, nextRequestAt)
+
+        val currentRemaining = remaining
+
+        if (currentRemaining != null && requestAt.isBefore(resetAt)) {
+
+            if (currentRemaining <= 0) {
+                requestAt = resetAt
+            } else if (currentRemaining <= lowBudgetThreshold()) {
+                val interval = Duration.between(requestAt, resetAt).dividedBy(currentRemaining.toLong())
+                nextRequestAt = requestAt.plus(interval)
+            }
+
+            remaining = currentRemaining - 1
+        }
+
+        return Duration.between(now, requestAt).toMillis()
+    }
+
+    private fun lowBudgetThreshold() = (limit ?: 0) * lowBudgetRatio
+
+    /**
+     * Updates the budget from the rate limit headers of the response, if any
+     */
+    @Synchronized
+    fun update(response: Response) {
+
+        val remainingFromHeader = response.header(RATE_LIMIT_REMAINING_HEADER)?.toIntOrNull() ?: return
+        val resetFromHeader = response.header(RATE_LIMIT_RESET_HEADER)?.toLongOrNull()?.let { Instant.ofEpochSecond(it) } ?: return
+
+        limit = response.header(RATE_LIMIT_HEADER)?.toIntOrNull() ?: limit
+
+        val currentRemaining = remaining
+
+        // responses don't come back in the order requests were sent : within the same window, the lowest value is the most recent one
+        remaining = if (resetFromHeader.isAfter(resetAt) || currentRemaining == null) remainingFromHeader else minOf(currentRemaining, remainingFromHeader)
+
+        if (resetFromHeader.isAfter(resetAt)) {
+            resetAt = resetFromHeader
+        }
+    }
+
+    /**
+     * Gives back the slot booked for a request that the server didn't count, like a conditional request answered with 304 Not Modified
+     */
+    @Synchronized
+    fun refund() {
+
+        val currentRemaining = remaining ?: return
+
+        remaining = minOf(currentRemaining + 1, limit ?: Int.MAX_VALUE)
+    }
+
+    /**
+     * Holds all the requests for the given duration, typically when the server asks us to back off
+     */
+    @Synchronized
+    fun pauseFor(delay: Duration) {
+
+        val pauseUntil = clock.instant().plus(delay)
+
+        if (pauseUntil.isAfter(nextRequestAt)) {
+            log.warn("rate limit reached for $name requests - pausing them for ${delay.seconds}s. Status : $this")
+            nextRequestAt = pauseUntil
+        }
+    }
+
+    /**
+     * @return how long to wait before the budget gets reset, if it's exhausted according to the last response
+     */
+    @Synchronized
+    fun timeUntilReset(): Duration {
+        return Duration.between(clock.instant(), resetAt).takeIf { !it.isNegative } ?: Duration.ZERO
+    }
+
+    override fun toString(): String {
+        return "$name : ${remainingRequests ?: "?"}/${limit ?: "?"} requests remaining until $resetAt, " +
+               "$requestsPerformed requests performed, $requestsThrottled throttled, ${timeSpentWaiting.seconds}s spent waiting"
+    }
+
+}
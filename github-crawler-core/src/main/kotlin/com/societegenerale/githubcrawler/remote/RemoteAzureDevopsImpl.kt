@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import com.fasterxml.jackson.module.kotlin.KotlinModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.societegenerale.githubcrawler.HttpClientConfig
 import com.societegenerale.githubcrawler.RepositoryConfig
 import com.societegenerale.githubcrawler.model.*
 import com.societegenerale.githubcrawler.model.azuredevops.Repositories
@@ -31,7 +32,8 @@ import java.util.stream.Collectors.toSet
 class RemoteAzureDevopsImpl @JvmOverloads constructor(private val azureDevopsUrl: String = AZURE_DEVOPS_URL,
                                                       private val azureDevopsSearchUrl: String = AZURE_DEVOPS_SEARCH_URL,
                                                       organization: String,
-                                                      personalAccessToken: String) : RemoteSourceControl {
+                                                      personalAccessToken: String,
+                                                      sharedHttpClient: OkHttpClient = HttpClients.newSharedClient(HttpClientConfig())) : RemoteSourceControl {
 
     var log = LoggerFactory.getLogger(this.javaClass.toString())
 
@@ -65,7 +67,8 @@ class RemoteAzureDevopsImpl @JvmOverloads constructor(private val azureDevopsUrl
         val logging= HttpLoggingInterceptor()
         //logging.level = (HttpLoggingInterceptor.Level.HEADERS)
 
-        httpClient= OkHttpClient.Builder().addInterceptor(logging).build()
+        // derived clients share the connection pool of the original one
+        httpClient= sharedHttpClient.newBuilder().addInterceptor(logging).build()
     }
 
     override fun fetchRepositories(organizationName: String): Set<Repository> {
@@ -120,11 +123,12 @@ class RemoteAzureDevopsImpl @JvmOverloads constructor(private val azureDevopsUrl
 
         val request = requestTemplate.url(configUrl).build()
 
-        val response=httpClient.newCall(request).execute()
+        httpClient.newCall(request).execute().use { response ->
 
-        val decoder = AzureDevopsResponseDecoder()
+            val decoder = AzureDevopsResponseDecoder()
 
-        return decoder.decodeRepoConfig(response)
+            return decoder.decodeRepoConfig(response)
+        }
     }
 
     override fun fetchRepoBranches(repositoryFullName: String): Set<Branch> {
@@ -161,13 +165,14 @@ class RemoteAzureDevopsImpl @JvmOverloads constructor(private val azureDevopsUrl
 
         val request = requestTemplate.url(fileContentUrl).build()
 
-        val response=httpClient.newCall(request).execute()
+        httpClient.newCall(request).execute().use { response ->
 
-        if(response.isSuccessful){
-            return response.body?.string() ?: ""
-        }
-        else{
-            throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+            if(response.isSuccessful){
+                return response.body?.string() ?: ""
+            }
+            else{
+                throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+            }
         }
 
     }
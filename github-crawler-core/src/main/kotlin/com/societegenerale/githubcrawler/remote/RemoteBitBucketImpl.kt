@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import com.fasterxml.jackson.module.kotlin.KotlinModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.societegenerale.githubcrawler.HttpClientConfig
 import com.societegenerale.githubcrawler.RepositoryConfig
 import com.societegenerale.githubcrawler.model.*
 import com.societegenerale.githubcrawler.model.Author
@@ -20,8 +21,8 @@ import com.societegenerale.githubcrawler.model.team.TeamMember
 import feign.*
 import feign.codec.Decoder
 import feign.gson.GsonEncoder
-import feign.httpclient.ApacheHttpClient
 import feign.slf4j.Slf4jLogger
+import okhttp3.OkHttpClient
 import org.slf4j.LoggerFactory
 import org.springframework.boot.autoconfigure.http.HttpMessageConverters
 import org.springframework.cloud.openfeign.support.ResponseEntityDecoder
@@ -38,7 +39,8 @@ import java.util.stream.Collectors
 class RemoteBitBucketImpl @JvmOverloads constructor(
     bitBucketUrl: String,
     private val organizationName: String = "",
-    private val apiKey: String
+    private val apiKey: String,
+    httpClient: OkHttpClient = HttpClients.newSharedClient(HttpClientConfig())
 ) : RemoteSourceControl {
 
     companion object {
@@ -46,7 +48,7 @@ class RemoteBitBucketImpl @JvmOverloads constructor(
     }
 
     private val internalBitBucketClient: InternalBitBucketClient = Feign.builder()
-        .client(ApacheHttpClient())
+        .sharedClient(httpClient)
         .encoder(GsonEncoder())
         .decoder(BitBucketResponseDecoder())
         .decode404()
@@ -75,22 +77,25 @@ class RemoteBitBucketImpl @JvmOverloads constructor(
     }
 
     override fun fetchRepositories(organizationName: String): Set<Repository> {
+        return streamRepositories(organizationName).toSet()
+    }
 
-        val repositoriesFromOrga = HashSet<Repository>()
+    override fun streamRepositories(organizationName: String): Sequence<Repository> {
 
-        var response = performFirstCall(organizationName)
+        return sequence {
 
-        repositoriesFromOrga.addAll(extractRepositories(response))
+            var response = performFirstCall(organizationName)
 
-        while (!response.isLastPage) {
-            log.info("total nb of repositories in $organizationName organization so far : {}", response.values.size)
+            yieldAll(extractRepositories(response))
 
-            response = getRepoIfAny(organizationName, response.nextPageStart)
+            while (!response.isLastPage) {
+                log.info("total nb of repositories in $organizationName organization so far : {}", response.nextPageStart)
 
-            repositoriesFromOrga.addAll(extractRepositories(response))
-        }
+                response = getRepoIfAny(organizationName, response.nextPageStart)
 
-        return repositoriesFromOrga
+                yieldAll(extractRepositories(response))
+            }
+        }.distinctBy { it.fullName }
     }
 
     private fun extractRepositories(repositories: Repositories): Set<Repository> {
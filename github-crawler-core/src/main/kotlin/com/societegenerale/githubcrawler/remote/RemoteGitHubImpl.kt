@@ -1,5 +1,6 @@
 package com.societegenerale.githubcrawler.remote
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
 import com.fasterxml.jackson.core.JsonParseException
 import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.DeserializationFeature
@@ -8,23 +9,26 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import com.fasterxml.jackson.module.kotlin.KotlinModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
+import com.societegenerale.githubcrawler.GraphQLBatchConfig
+import com.societegenerale.githubcrawler.HttpClientConfig
 import com.societegenerale.githubcrawler.RepositoryConfig
 import com.societegenerale.githubcrawler.model.*
 import com.societegenerale.githubcrawler.model.commit.Commit
 import com.societegenerale.githubcrawler.model.commit.DetailedCommit
 import com.societegenerale.githubcrawler.model.team.Team
 import com.societegenerale.githubcrawler.model.team.TeamMember
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.UncheckedExecutionException
 import feign.*
 import feign.FeignException.errorStatus
 import feign.codec.Decoder
 import feign.codec.ErrorDecoder
 import feign.gson.GsonEncoder
-import feign.httpclient.ApacheHttpClient
 import feign.slf4j.Slf4jLogger
 import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import okhttp3.OkHttpClient
 import okhttp3.Response
-import org.apache.commons.io.IOUtils
 import org.slf4j.LoggerFactory
 import org.springframework.boot.autoconfigure.http.HttpMessageConverters
 import org.springframework.cloud.openfeign.support.ResponseEntityDecoder
@@ -33,8 +37,9 @@ import org.springframework.http.HttpStatus
 import org.springframework.http.MediaType
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter
 import java.io.IOException
-import java.io.StringWriter
+import java.io.InputStream
 import java.lang.reflect.Type
+import java.util.concurrent.TimeUnit
 
 
 /**
@@ -45,7 +50,11 @@ import java.lang.reflect.Type
 class RemoteGitHubImpl @JvmOverloads constructor(
     private val gitHubUrl: String,
     private val usersReposInsteadOfOrgasRepos: Boolean = false,
-    private val apiKey: String) : RemoteSourceControl {
+    private val apiKey: String,
+    sharedHttpClient: OkHttpClient = HttpClients.newSharedClient(HttpClientConfig()),
+    private val blobCache: BlobCache? = null,
+    graphQLBatchConfig: GraphQLBatchConfig = GraphQLBatchConfig(),
+    private val useFileTreeIndex: Boolean = true) : RemoteSourceControl {
 
     companion object {
         const val GITHUB_URL= "https://api.github.com"
@@ -54,10 +63,56 @@ class RemoteGitHubImpl @JvmOverloads constructor(
         const val ACCEPT = "accept"
         const val CONFIG_VALIDATION_REQUEST_HEADER = "X-configValidationRequest"
         const val APPLICATION_GITHUB_MERCY_PREVIEW_JSON = "application/vnd.github.mercy-preview+json"
+        const val APPLICATION_GITHUB_RAW = "application/vnd.github.raw"
+
+        // GitHub doesn't return more than 1000 results for a search, even when paging
+        const val MAX_SEARCH_RESULTS = 1000
+        const val SEARCH_RESULTS_PER_PAGE = 100
+
+        // GitHub doesn't list more than 1000 files in a directory
+        const val MAX_DIRECTORY_ENTRIES = 1000
+
+        const val SYMLINK_MODE = "120000"
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private class DirectoryEntry(val name: String, val type: String, val sha: String)
+
+    private class DirectoryListing(val entries: Map<String, DirectoryEntry>) {
+        val isComplete = entries.size < MAX_DIRECTORY_ENTRIES
     }
 
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private class TreeEntry(val path: String, val type: String, val mode: String, val sha: String)
+
+    // GitHub truncates the listing of very big repositories
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private class TreeListing(val tree: List<TreeEntry>, val truncated: Boolean)
+
+    // trees of the branches being crawled : files of a branch are fetched right after its tree
+    private val fileTrees: Cache<String, FileTree> = CacheBuilder.newBuilder()
+        .maximumSize(256)
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build()
+
+    // only used with the blob cache : the files we look for in a repository are usually in the same few directories, fetched one after the other
+    private val directoryListings: Cache<String, DirectoryListing> = CacheBuilder.newBuilder()
+        .maximumSize(1000)
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build()
+
+    private val rateLimiter = GitHubRateLimiter(gitHubUrl)
+
+    // all the calls, whether through Feign or not, go through the rate limiter
+    private val httpClient = rateLimiter.applyTo(sharedHttpClient)
+
+    private val graphQLFileFetcher = if (graphQLBatchConfig.enabled) {
+        GitHubGraphQLFileFetcher(GitHubGraphQLFileFetcher.graphQLUrlOf(gitHubUrl), httpClient, apiKey,
+                                 graphQLBatchConfig.maxFilesPerQuery, graphQLBatchConfig.maxConcurrentQueries)
+    } else null
+
     private val internalGitHubClient: InternalGitHubClient = Feign.builder()
-        .client(ApacheHttpClient())
+        .sharedClient(httpClient)
         .encoder(GsonEncoder())
         .decoder(GitHubResponseDecoder())
         .errorDecoder(GiHubErrorDecoder())
@@ -67,11 +122,16 @@ class RemoteGitHubImpl @JvmOverloads constructor(
         .logLevel(Logger.Level.FULL)
         .target<InternalGitHubClient>(InternalGitHubClient::class.java, gitHubUrl)
 
-    private val httpClient = OkHttpClient()
-
 
     val log = LoggerFactory.getLogger(this.javaClass)
 
+    /**
+     * where we are with the GitHub rate limit of the given class of requests : requests performed, throttled, time spent waiting, etc
+     */
+    fun rateLimitBudget(requestClass: GitHubRequestClass): RateLimitBudget {
+        return rateLimiter.budget(requestClass)
+    }
+
     private val objectMapper = jacksonObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
 
     @Throws(NoReachableRepositories::class)
@@ -102,20 +162,28 @@ class RemoteGitHubImpl @JvmOverloads constructor(
             requestBuilder.addHeader(CONFIG_VALIDATION_REQUEST_HEADER, "true")
         }
 
-        val request = requestBuilder.build()
+        return performPageCall(requestBuilder.build())
+    }
+
+    /**
+     * same checks for all the pages : an error on any of them (5xx, rate limit exceeded..) shouldn't be parsed as a page of repositories
+     */
+    @Throws(NoReachableRepositories::class)
+    private fun performPageCall(request: okhttp3.Request): Response {
 
         val response: Response
 
         try {
             response = httpClient.newCall(request).execute()
-
-            if (!response.isSuccessful) {
-                throw NoReachableRepositories("GET call to ${reposUrl} wasn't successful. Code : ${response.code}, Message : ${response.message}")
-            }
         } catch (e: IOException) {
             throw NoReachableRepositories("Unable to perform the request", e)
         }
 
+        if (!response.isSuccessful) {
+            response.close()
+            throw NoReachableRepositories("GET call to ${request.url} wasn't successful. Code : ${response.code}, Message : ${response.message}")
+        }
+
         return response
     }
 
@@ -132,44 +200,49 @@ class RemoteGitHubImpl @JvmOverloads constructor(
     }
 
     override fun fetchRepositories(organizationName: String): Set<Repository> {
+        return streamRepositories(organizationName).toSet()
+    }
 
-        val repositoriesFromOrga = HashSet<Repository>()
+    override fun streamRepositories(organizationName: String): Sequence<Repository> {
 
-        val response = performFirstCall(organizationName)
+        return sequence {
 
-        repositoriesFromOrga.addAll(extractRepositories(response))
+            val response = performFirstCall(organizationName)
 
-        var nextPageLink = getLinkToNextPageIfAny(response)
+            val firstPageRepositories = extractRepositories(response)
+            var nbRepositoriesSoFar = firstPageRepositories.size
 
-        var pageNb = 1
+            yieldAll(firstPageRepositories)
 
-        while (nextPageLink != null) {
+            var nextPageLink = getLinkToNextPageIfAny(response)
 
-            pageNb++
+            var pageNb = 1
 
+            while (nextPageLink != null) {
 
-            val nextPageRequestBuilder = okhttp3.Request.Builder()
-                .url(nextPageLink)
-                .header(ACCEPT, APPLICATION_GITHUB_MERCY_PREVIEW_JSON)
-
-            addOAuthTokenIfRequired(nextPageRequestBuilder)
+                pageNb++
 
-            val nextPageRequest = nextPageRequestBuilder.build()
+                val nextPageRequestBuilder = okhttp3.Request.Builder()
+                    .url(nextPageLink)
+                    .header(ACCEPT, APPLICATION_GITHUB_MERCY_PREVIEW_JSON)
 
-            val nextPageResponse = httpClient.newCall(nextPageRequest).execute()
+                addOAuthTokenIfRequired(nextPageRequestBuilder)
 
-            val nextPageRepositories = extractRepositories(nextPageResponse)
+                val nextPageResponse = performPageCall(nextPageRequestBuilder.build())
 
-            log.info("nb of repositories in $organizationName organization, page {} : {}", pageNb, nextPageRepositories.size)
+                val nextPageRepositories = extractRepositories(nextPageResponse)
 
-            repositoriesFromOrga.addAll(nextPageRepositories)
-            log.info("total nb of repositories in $organizationName organization so far : {}", nextPageRepositories.size)
+                log.info("nb of repositories in $organizationName organization, page {} : {}", pageNb, nextPageRepositories.size)
 
-            nextPageLink = getLinkToNextPageIfAny(nextPageResponse)
+                nbRepositoriesSoFar += nextPageRepositories.size
+                log.info("total nb of repositories in $organizationName organization so far : {}", nbRepositoriesSoFar)
 
-        }
+                yieldAll(nextPageRepositories)
 
-        return repositoriesFromOrga
+                nextPageLink = getLinkToNextPageIfAny(nextPageResponse)
+            }
+        // a repository can move from one page to the next while we're listing them
+        }.distinctBy { it.fullName }
     }
 
     private fun extractRepositories(response: Response): Set<Repository> {
@@ -250,34 +323,261 @@ class RemoteGitHubImpl @JvmOverloads constructor(
         }
     }
 
+    override fun fetchCodeSearchResultsByRepository(organizationName: String, query: String): Map<String, SearchResult>? {
+
+        val qualifier = if (usersReposInsteadOfOrgasRepos) "user" else "org"
+
+        var nextPageLink: String? = ("$gitHubUrl/search/code?q=$query $qualifier:$organizationName&per_page=$SEARCH_RESULTS_PER_PAGE").toHttpUrlOrNull()!!.toString()
+
+        val itemsByRepository = HashMap<String, MutableList<SearchResultItem>>()
+
+        while (nextPageLink != null) {
+
+            log.info("fetching organization wide code search result from $nextPageLink")
+
+            val requestBuilder = okhttp3.Request.Builder()
+                .url(nextPageLink)
+                .header(ACCEPT, APPLICATION_JSON)
+
+            addOAuthTokenIfRequired(requestBuilder)
+
+            httpClient.newCall(requestBuilder.build()).execute().use { response ->
+
+                if (!response.isSuccessful) {
+                    log.warn("organization wide search for '$query' in $organizationName failed with code ${response.code} - will search repository by repository")
+                    return null
+                }
+
+                val page: SearchResult = objectMapper.readValue(response.body!!.string())
+
+                if (page.totalCount > MAX_SEARCH_RESULTS || page.incompleteResults) {
+                    log.warn("organization wide search for '$query' in $organizationName returns ${page.totalCount} results, " +
+                             "more than what GitHub lets us get (incomplete : ${page.incompleteResults}) - will search repository by repository")
+                    return null
+                }
+
+                page.items.forEach { item ->
+                    item.repository?.let { itemsByRepository.getOrPut(it.fullName) { ArrayList() }.add(item) }
+                }
+
+                nextPageLink = getLinkToNextPageIfAny(response)
+            }
+        }
+
+        return itemsByRepository.mapValues { SearchResult(it.value.size, it.value) }
+    }
+
     private fun buildQueryString(queryString: String, repositoryFullName: String): String {
         return "/search/code?q=$queryString repo:${repositoryFullName}"
     }
 
+    override fun fetchFileTree(repositoryFullName: String, branchName: String): FileTree? {
+
+        if (!useFileTreeIndex) {
+            return null
+        }
+
+        val treeUrl = "$gitHubUrl/repos/$repositoryFullName/git/trees/$branchName".toHttpUrlOrNull()!!
+            .newBuilder()
+            .addQueryParameter("recursive", "1")
+            .build()
+
+        val requestBuilder = okhttp3.Request.Builder()
+            .url(treeUrl)
+            .header(ACCEPT, APPLICATION_JSON)
+
+        addOAuthTokenIfRequired(requestBuilder)
+
+        httpClient.newCall(requestBuilder.build()).execute().use { response ->
+
+            // 404 for an unknown branch, 409 for an empty repository : we let the file fetches tell
+            if (!response.isSuccessful) {
+                log.debug("unable to list files of repo {}, branch {}. Code : {}", repositoryFullName, branchName, response.code)
+                return null
+            }
+
+            val treeListing: TreeListing = objectMapper.readValue(response.body!!.string())
+
+            if (treeListing.truncated) {
+                log.info("listing of files in repo $repositoryFullName, branch $branchName is truncated - files not found in it will still be fetched")
+            }
+
+            val fileTree = FileTree(isComplete = !treeListing.truncated)
+
+            treeListing.tree.filter { it.type == "blob" }.forEach { entry ->
+                // the blob of a symlink is the path it points to, not the content of the file
+                fileTree.addFile(entry.path, if (entry.mode == SYMLINK_MODE) null else entry.sha)
+            }
+
+            fileTrees.put("$repositoryFullName@$branchName", fileTree)
+
+            return fileTree
+        }
+    }
+
     override fun fetchFileContent(repositoryFullName: String, branchName: String, fileToFetch: String): String {
 
-        val fileOnRepository: FileOnRepository
+        val fileTree = fileTrees.getIfPresent("$repositoryFullName@$branchName")
 
-        try {
-            fileOnRepository = internalGitHubClient.fetchFileOnRepo(repositoryFullName, branchName, fileToFetch)
-        } catch (e: GitHubResponseDecoder.NoFileFoundFeignException) {
-            //translating exception to a non Feign specific one
+        if (fileTree != null) {
+
+            if (fileTree.isMissing(fileToFetch)) {
+                throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+            }
+
+            val blobSha = fileTree.blobSha(fileToFetch)
+
+            if (blobSha != null) {
+                return blobCache?.get(blobSha) ?: fetchBlob(repositoryFullName, blobSha).also { blobCache?.put(blobSha, it) }
+            }
+        }
+
+        if (blobCache == null) {
+            return fetchFileContentFromRepository(repositoryFullName, branchName, fileToFetch)
+        }
+
+        val directory = fileToFetch.substringBeforeLast("/", "")
+
+        val directoryListing = try {
+            directoryListings.get("$repositoryFullName@$branchName:$directory") { listDirectory(repositoryFullName, branchName, directory) }
+        } catch (e: UncheckedExecutionException) {
+            log.warn("unable to list $directory in repo $repositoryFullName, in branch $branchName - fetching $fileToFetch without the blob cache", e.cause)
+            return fetchFileContentFromRepository(repositoryFullName, branchName, fileToFetch)
+        }
+
+        val entry = directoryListing.entries[fileToFetch.substringAfterLast("/")]
+
+        if (entry == null && directoryListing.isComplete) {
             throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
         }
 
+        // symlinks and submodules don't have the SHA of the content we get
+        if (entry == null || entry.type != "file") {
+            return fetchFileContentFromRepository(repositoryFullName, branchName, fileToFetch)
+        }
+
+        return blobCache.get(entry.sha) ?: fetchFileContentFromRepository(repositoryFullName, branchName, fileToFetch).also { blobCache.put(entry.sha, it) }
+    }
+
+    /**
+     * files GraphQL doesn't return (binary, too big, or failed query) are left to the caller, to fetch through the REST API
+     */
+    override fun fetchFilesContent(filesToFetch: Collection<FileToFetch>): Map<FileToFetch, String?>? {
+
+        return graphQLFileFetcher?.fetch(filesToFetch)
+    }
+
+    private fun listDirectory(repositoryFullName: String, branchName: String, directory: String): DirectoryListing {
+
+        val directoryUrl = "$gitHubUrl/repos/$repositoryFullName/contents/$directory".removeSuffix("/").toHttpUrlOrNull()!!
+            .newBuilder()
+            .addQueryParameter("ref", branchName)
+            .build()
+
         val requestBuilder = okhttp3.Request.Builder()
-            .url(fileOnRepository.downloadUrl)
+            .url(directoryUrl)
             .header(ACCEPT, APPLICATION_JSON)
 
         addOAuthTokenIfRequired(requestBuilder)
 
-        val request = requestBuilder.build()
+        httpClient.newCall(requestBuilder.build()).execute().use { response ->
 
-        val response = httpClient.newCall(request).execute()
+            if (response.code == HttpStatus.NOT_FOUND.value()) {
+                return DirectoryListing(emptyMap())
+            }
 
+            if (!response.isSuccessful) {
+                throw GitHubResponseDecoder.GithubException("problem while listing $directory in repo $repositoryFullName, in branch $branchName. Code : ${response.code}, Message : ${response.message}")
+            }
+
+            val entries: List<DirectoryEntry> = objectMapper.readValue(response.body!!.string())
+
+            return DirectoryListing(entries.associateBy { it.name })
+        }
+    }
+
+    /**
+     * a blob never changes : with the HTTP cache, it's downloaded once
+     */
+    private fun fetchBlob(repositoryFullName: String, blobSha: String): String {
+
+        val blobUrl = "$gitHubUrl/repos/$repositoryFullName/git/blobs/$blobSha".toHttpUrlOrNull()!!
+
+        val requestBuilder = okhttp3.Request.Builder()
+            .url(blobUrl)
+            .header(ACCEPT, APPLICATION_GITHUB_RAW)
+
+        addOAuthTokenIfRequired(requestBuilder)
 
-        return response.body?.string() ?: ""
+        httpClient.newCall(requestBuilder.build()).execute().use { response ->
+
+            if (!response.isSuccessful) {
+                throw GitHubResponseDecoder.GithubException("problem while fetching blob $blobSha in repo $repositoryFullName. Code : ${response.code}, Message : ${response.message}")
+            }
 
+            return response.body?.string() ?: ""
+        }
+    }
+
+    private fun fetchFileContentFromRepository(repositoryFullName: String, branchName: String, fileToFetch: String): String {
+
+        fetchRawFile(repositoryFullName, branchName, fileToFetch).use { response ->
+
+            if (response.code == HttpStatus.NOT_FOUND.value()) {
+                throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+            }
+
+            return response.body?.string() ?: ""
+        }
+    }
+
+    /**
+     * With the raw media type, GitHub returns the content of the file itself rather than its metadata : we get it in a single call,
+     * instead of getting the metadata first and then hitting its download URL
+     */
+    private fun fetchRawFile(repositoryFullName: String, branchName: String, fileToFetch: String): Response {
+
+        val fileUrl = "$gitHubUrl/repos/$repositoryFullName/contents/$fileToFetch".toHttpUrlOrNull()!!
+            .newBuilder()
+            .addQueryParameter("ref", branchName)
+            .build()
+
+        val requestBuilder = okhttp3.Request.Builder()
+            .url(fileUrl)
+            .header(ACCEPT, APPLICATION_GITHUB_RAW)
+
+        addOAuthTokenIfRequired(requestBuilder)
+
+        val response = httpClient.newCall(requestBuilder.build()).execute()
+
+        if (!response.isSuccessful && response.code != HttpStatus.NOT_FOUND.value()) {
+            response.close()
+            throw GitHubResponseDecoder.GithubException("problem while fetching $fileToFetch in repo $repositoryFullName, in branch $branchName. Code : ${response.code}, Message : ${response.message}")
+        }
+
+        return response
+    }
+
+    /**
+     * GitHub redirects to a download URL, that OkHttp follows : the archive is streamed as it gets downloaded
+     */
+    override fun fetchArchive(repositoryFullName: String, branchName: String): InputStream? {
+
+        val archiveUrl = "$gitHubUrl/repos/$repositoryFullName/tarball/$branchName".toHttpUrlOrNull()!!
+
+        val requestBuilder = okhttp3.Request.Builder().url(archiveUrl)
+
+        addOAuthTokenIfRequired(requestBuilder)
+
+        val response = httpClient.newCall(requestBuilder.build()).execute()
+
+        if (!response.isSuccessful) {
+            log.warn("unable to download archive of repo $repositoryFullName, branch $branchName. Code : ${response.code}, Message : ${response.message}")
+            response.close()
+            return null
+        }
+
+        return response.body!!.byteStream()
     }
 
     override fun fetchCommits(repositoryFullName: String, perPage: Int): Set<Commit> {
@@ -306,27 +606,13 @@ class RemoteGitHubImpl @JvmOverloads constructor(
 
     override fun fetchRepoConfig(repositoryFullName: String, defaultBranch: String): RepositoryConfig {
 
-        val configFileOnRepository: FileOnRepository
-
-        try {
-            configFileOnRepository = internalGitHubClient.fetchFileOnRepo(repositoryFullName, defaultBranch, REPO_LEVEL_CONFIG_FILE)
-        } catch (e: GitHubResponseDecoder.NoFileFoundFeignException) {
+        val repoConfigContent = try {
+            fetchFileContent(repositoryFullName, defaultBranch, REPO_LEVEL_CONFIG_FILE)
+        } catch (e: NoFileFoundException) {
             return RepositoryConfig()
         }
 
-        val requestBuilder = okhttp3.Request.Builder()
-            .url(configFileOnRepository.downloadUrl)
-            .header(ACCEPT, APPLICATION_JSON)
-
-        addOAuthTokenIfRequired(requestBuilder)
-
-        val request = requestBuilder.build()
-
-        val response = httpClient.newCall(request).execute()
-
-        val decoder = GitHubResponseDecoder()
-
-        return decoder.decodeRepoConfig(response)
+        return GitHubResponseDecoder().decodeRepoConfig(repoConfigContent)
     }
 
 }
@@ -350,12 +636,7 @@ private interface InternalGitHubClient {
     @RequestLine("GET /repos/{fullName}/branches")
     fun fetchRepoBranches(@Param("fullName") fullName: String): Set<Branch>
 
-    @RequestLine("GET /repos/{repositoryFullName}/contents/{fileToFetch}?ref={branchName}")
-    fun fetchFileOnRepo(@Param("repositoryFullName") repositoryFullName: String,
-                        @Param("branchName") branchName: String,
-                        @Param("fileToFetch") fileToFetch: String): FileOnRepository
-
-    @RequestLine("GET /repos/{repositoryFullName}/commits")
+    @RequestLine("GET /repos/{repositoryFullName}/commits?per_page={per_page}")
     fun fetchCommits(@Param("repositoryFullName") repositoryFullName: String,
                      @Param("per_page") perPage: Int): Set<Commit>
 
@@ -398,13 +679,9 @@ internal class GitHubResponseDecoder : Decoder {
         repoConfigMapper.registerModule(KotlinModule.Builder().build())
     }
 
-    fun decodeRepoConfig(response: Response): RepositoryConfig {
-
-        val writer = StringWriter()
-        IOUtils.copy(response.body?.byteStream(), writer, "UTF-8")
-        val responseAsString = writer.toString()
+    fun decodeRepoConfig(repoConfigContent: String): RepositoryConfig {
 
-        return parseRepositoryConfigResponse(responseAsString, response)
+        return parseRepositoryConfigResponse(repoConfigContent)
     }
 
 
@@ -439,7 +716,7 @@ internal class GitHubResponseDecoder : Decoder {
         }
     }
 
-    private fun parseRepositoryConfigResponse(responseAsString: String, response: Response): RepositoryConfig {
+    private fun parseRepositoryConfigResponse(responseAsString: String): RepositoryConfig {
         if (responseAsString.isEmpty()) {
             return RepositoryConfig()
         }
@@ -447,7 +724,7 @@ internal class GitHubResponseDecoder : Decoder {
         try {
             return repoConfigMapper.readValue(responseAsString, RepositoryConfig::class.java)
         } catch (e: IOException) {
-            throw Repository.RepoConfigException(HttpStatus.BAD_REQUEST,"unable to parse config for repo - content : \"" + response.body + "\"", e)
+            throw Repository.RepoConfigException(HttpStatus.BAD_REQUEST,"unable to parse config for repo - content : \"" + responseAsString + "\"", e)
         }
     }
 
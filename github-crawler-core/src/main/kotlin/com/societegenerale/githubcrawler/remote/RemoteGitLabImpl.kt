@@ -7,6 +7,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import com.fasterxml.jackson.module.kotlin.KotlinModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
+import com.societegenerale.githubcrawler.HttpClientConfig
 import com.societegenerale.githubcrawler.RepositoryConfig
 import com.societegenerale.githubcrawler.model.*
 import com.societegenerale.githubcrawler.model.commit.Commit
@@ -19,7 +20,6 @@ import feign.FeignException.errorStatus
 import feign.codec.Decoder
 import feign.codec.ErrorDecoder
 import feign.gson.GsonEncoder
-import feign.httpclient.ApacheHttpClient
 import feign.slf4j.Slf4jLogger
 import okhttp3.OkHttpClient
 import org.slf4j.LoggerFactory
@@ -44,7 +44,8 @@ import java.util.stream.Collectors.toSet
 @Suppress("TooManyFunctions") // most of methods are one liners, implementing the methods declared in interface
 class RemoteGitLabImpl constructor(
     private val gitLabUrl: String,
-    private val privateToken: String) : RemoteSourceControl {
+    private val privateToken: String,
+    private val httpClient: OkHttpClient = HttpClients.newSharedClient(HttpClientConfig())) : RemoteSourceControl {
 
     companion object {
         const val REPO_LEVEL_CONFIG_FILE = ".gitlabCrawler"
@@ -53,7 +54,7 @@ class RemoteGitLabImpl constructor(
     }
 
     private val internalGitLabClient: InternalGitLabClient = Feign.builder()
-        .client(ApacheHttpClient())
+        .sharedClient(httpClient)
         .encoder(GsonEncoder())
         .decoder(GitLabResponseDecoder())
         .errorDecoder(GiLabErrorDecoder())
@@ -63,8 +64,6 @@ class RemoteGitLabImpl constructor(
         .logLevel(Logger.Level.FULL)
         .target<InternalGitLabClient>(InternalGitLabClient::class.java, gitLabUrl)
 
-    private val httpClient = OkHttpClient()
-
     // hack-ish way.. GitLab doesn't use repoName but repoId when retrieving repo details or files
     // so initializing a Map when discovering the repos for the first time, to reuse later
     private val repoNameToIdMapping = HashMap<String,Int>()
@@ -176,16 +175,17 @@ class RemoteGitLabImpl constructor(
             .header(PRIVATE_TOKEN_HEADER_KEY, privateToken)
             .build()
 
-        val response = httpClient.newCall(request).execute()
+        httpClient.newCall(request).execute().use { response ->
 
-        if(response.code==HttpStatus.NOT_FOUND.value()){
-            throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
-        }
-        else if (!response.isSuccessful) {
-            throw NoReachableRepositories("GET call to ${fetchFileUrl} wasn't successful. Code : ${response.code}, Message : ${response.message}")
-        }
+            if(response.code==HttpStatus.NOT_FOUND.value()){
+                throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+            }
+            else if (!response.isSuccessful) {
+                throw NoReachableRepositories("GET call to ${fetchFileUrl} wasn't successful. Code : ${response.code}, Message : ${response.message}")
+            }
 
-        return response.body!!.string()
+            return response.body!!.string()
+        }
     }
 
     @Throws(NoReachableRepositories::class)
@@ -0,0 +1,349 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.societegenerale.githubcrawler.RepositoryConfig
+import com.societegenerale.githubcrawler.model.Author
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.PullRequest
+import com.societegenerale.githubcrawler.model.Repository
+import com.societegenerale.githubcrawler.model.SearchResult
+import com.societegenerale.githubcrawler.model.SearchResultItem
+import com.societegenerale.githubcrawler.model.commit.Commit
+import com.societegenerale.githubcrawler.model.commit.CommitStats
+import com.societegenerale.githubcrawler.model.commit.DetailedCommit
+import com.societegenerale.githubcrawler.model.team.Team
+import com.societegenerale.githubcrawler.model.team.TeamMember
+import org.eclipse.jgit.diff.DiffFormatter
+import org.eclipse.jgit.diff.RawText
+import org.eclipse.jgit.errors.LargeObjectException
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.FileMode
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.RepositoryCache
+import org.eclipse.jgit.revwalk.RevCommit
+import org.eclipse.jgit.revwalk.RevWalk
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder
+import org.eclipse.jgit.treewalk.TreeWalk
+import org.eclipse.jgit.util.FS
+import org.eclipse.jgit.util.io.DisabledOutputStream
+import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import org.eclipse.jgit.lib.Repository as GitRepository
+
+/**
+ * Crawls bare repositories on the local disk, typically kept up to date with `git clone --mirror` / `git remote update` : everything is read
+ * from the object database, without any call to a remote server.
+ *
+ * Repositories of an organization are the ones found in [mirrorsDirectory]/organizationName, with or without a ".git" suffix.
+ *
+ * There's no concept of teams or pull requests in a plain git repository, so none are returned.
+ *
+ * Files bigger than [maxFileSizeInBytes] are not loaded in memory : they're considered as not found when fetched, and skipped when searching.
+ *
+ * Repositories stay open until [close] gets called : JGit settings, like memory mapping the packs, are left to the application (see WindowCacheConfig).
+ */
+class RemoteGitMirrorImpl(private val mirrorsDirectory: File,
+                          private val maxFileSizeInBytes: Int = DEFAULT_MAX_FILE_SIZE_IN_BYTES) : RemoteSourceControl, Closeable {
+
+    companion object {
+        const val REPO_LEVEL_CONFIG_FILE = ".githubCrawler"
+
+        private const val GIT_SUFFIX = ".git"
+
+        const val DEFAULT_MAX_FILE_SIZE_IN_BYTES = 10 * 1024 * 1024
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private val openRepositories = ConcurrentHashMap<String, GitRepository>()
+
+    override fun fetchRepositories(organizationName: String): Set<Repository> {
+        return streamRepositories(organizationName).toSet()
+    }
+
+    override fun streamRepositories(organizationName: String): Sequence<Repository> {
+
+        val organizationDirectory = File(mirrorsDirectory, organizationName)
+
+        val repositoryDirectories = organizationDirectory.listFiles { file -> RepositoryCache.FileKey.isGitRepository(file, FS.DETECTED) } ?: emptyArray()
+
+        return repositoryDirectories.sortedBy { it.name }
+            .asSequence()
+            .mapNotNull { toRepository(organizationName, it) }
+    }
+
+    private fun toRepository(organizationName: String, repositoryDirectory: File): Repository? {
+
+        val fullName = "$organizationName/${repositoryDirectory.name.removeSuffix(GIT_SUFFIX)}"
+
+        val gitRepository = open(fullName)
+
+        // HEAD of a mirror points to the default branch of the original repository
+        val defaultBranch = GitRepository.shortenRefName(gitRepository.fullBranch ?: Constants.MASTER)
+
+        val lastCommitDate = gitRepository.resolve(Constants.HEAD)?.let { headId -> RevWalk(gitRepository).use { Date(it.parseCommit(headId).commitTime * 1000L) } }
+
+        if (lastCommitDate == null) {
+            log.info("repository $fullName is empty - skipping it")
+            return null
+        }
+
+        val creationDate = Date(Files.readAttributes(repositoryDirectory.toPath(), BasicFileAttributes::class.java).creationTime().toMillis())
+
+        return Repository(url = repositoryDirectory.toURI().toString(),
+                          name = fullName.substringAfter("/"),
+                          defaultBranch = defaultBranch,
+                          creationDate = creationDate,
+                          lastUpdateDate = lastCommitDate,
+                          fullName = fullName)
+    }
+
+    @Throws(NoReachableRepositories::class)
+    override fun validateRemoteConfig(organizationName: String) {
+
+        val organizationDirectory = File(mirrorsDirectory, organizationName)
+
+        if (!organizationDirectory.isDirectory) {
+            throw NoReachableRepositories("$organizationDirectory is not a directory")
+        }
+
+        if (fetchRepositories(organizationName).isEmpty()) {
+            throw NoReachableRepositories("no git repository found in $organizationDirectory")
+        }
+    }
+
+    override fun fetchRepoConfig(repositoryFullName: String, defaultBranch: String): RepositoryConfig {
+
+        val repoConfigContent = try {
+            fetchFileContent(repositoryFullName, defaultBranch, REPO_LEVEL_CONFIG_FILE)
+        } catch (e: NoFileFoundException) {
+            return RepositoryConfig()
+        }
+
+        return GitHubResponseDecoder().decodeRepoConfig(repoConfigContent)
+    }
+
+    override fun fetchRepoBranches(repositoryFullName: String): Set<Branch> {
+
+        return open(repositoryFullName).refDatabase.getRefsByPrefix(Constants.R_HEADS)
+            .map { Branch(it.name.removePrefix(Constants.R_HEADS)) }
+            .toSet()
+    }
+
+    override fun fetchFileContent(repositoryFullName: String, branchName: String, fileToFetch: String): String {
+
+        val gitRepository = open(repositoryFullName)
+
+        val branchCommit = resolveBranch(gitRepository, branchName)
+            ?: throw NoFileFoundException("can't find branch $branchName in repo $repositoryFullName")
+
+        TreeWalk.forPath(gitRepository, fileToFetch, branchCommit.tree).use { treeWalk ->
+
+            if (treeWalk == null || treeWalk.getFileMode(0).objectType != Constants.OBJ_BLOB) {
+                throw NoFileFoundException("can't find $fileToFetch in repo $repositoryFullName, in branch $branchName")
+            }
+
+            val content = readBlob(gitRepository, treeWalk.getObjectId(0))
+                ?: throw NoFileFoundException("$fileToFetch in repo $repositoryFullName, in branch $branchName, is bigger than $maxFileSizeInBytes bytes - not fetching it")
+
+            return String(content, StandardCharsets.UTF_8)
+        }
+    }
+
+    override fun fetchFileTree(repositoryFullName: String, branchName: String): FileTree? {
+
+        val gitRepository = open(repositoryFullName)
+
+        val branchCommit = resolveBranch(gitRepository, branchName) ?: return null
+
+        val fileTree = FileTree()
+
+        TreeWalk(gitRepository).use { treeWalk ->
+
+            treeWalk.addTree(branchCommit.tree)
+            treeWalk.isRecursive = true
+
+            while (treeWalk.next()) {
+                when (treeWalk.getFileMode(0)) {
+                    FileMode.REGULAR_FILE, FileMode.EXECUTABLE_FILE -> fileTree.addFile(treeWalk.pathString, treeWalk.getObjectId(0).name)
+                    FileMode.SYMLINK -> fileTree.addFile(treeWalk.pathString, null)
+                }
+            }
+        }
+
+        return fileTree
+    }
+
+    /**
+     * Plain text search in the files of the default branch : no index, and none of the search qualifiers GitHub supports
+     */
+    override fun fetchCodeSearchResult(repositoryFullName: String, query: String): SearchResult {
+
+        val gitRepository = open(repositoryFullName)
+
+        val headCommit = gitRepository.resolve(Constants.HEAD)?.let { headId -> RevWalk(gitRepository).use { it.parseCommit(headId) } }
+            ?: return SearchResult(0, emptyList())
+
+        val searchedBytes = query.toByteArray(StandardCharsets.UTF_8)
+
+        val hits = ArrayList<SearchResultItem>()
+
+        TreeWalk(gitRepository).use { treeWalk ->
+
+            treeWalk.addTree(headCommit.tree)
+            treeWalk.isRecursive = true
+
+            while (treeWalk.next()) {
+
+                if (treeWalk.getFileMode(0) != FileMode.REGULAR_FILE && treeWalk.getFileMode(0) != FileMode.EXECUTABLE_FILE) {
+                    continue
+                }
+
+                val content = readBlob(gitRepository, treeWalk.getObjectId(0))
+
+                if (content == null) {
+                    log.info("${treeWalk.pathString} in repo $repositoryFullName is bigger than $maxFileSizeInBytes bytes - not searching in it")
+                    continue
+                }
+
+                if (!RawText.isBinary(content) && indexOf(content, searchedBytes) >= 0) {
+                    hits.add(SearchResultItem(treeWalk.pathString))
+                }
+            }
+        }
+
+        return SearchResult(hits.size, hits)
+    }
+
+    /**
+     * @return the content of the blob, or null if it's too big to be loaded in memory
+     */
+    private fun readBlob(gitRepository: GitRepository, blobId: ObjectId): ByteArray? {
+
+        val blobLoader = gitRepository.open(blobId, Constants.OBJ_BLOB)
+
+        // blobs below JGit's streaming threshold are returned whatever the limit, hence the size check
+        if (blobLoader.size > maxFileSizeInBytes) {
+            return null
+        }
+
+        return try {
+            blobLoader.getCachedBytes(maxFileSizeInBytes)
+        } catch (e: LargeObjectException) {
+            null
+        }
+    }
+
+    private fun indexOf(content: ByteArray, searched: ByteArray): Int {
+
+        if (searched.isEmpty()) {
+            return 0
+        }
+
+        for (start in 0..content.size - searched.size) {
+            if (searched.indices.all { content[start + it] == searched[it] }) {
+                return start
+            }
+        }
+
+        return -1
+    }
+
+    override fun fetchCommits(repositoryFullName: String, perPage: Int): Set<Commit> {
+
+        val gitRepository = open(repositoryFullName)
+
+        val headId = gitRepository.resolve(Constants.HEAD) ?: return emptySet()
+
+        RevWalk(gitRepository).use { revWalk ->
+
+            revWalk.markStart(revWalk.parseCommit(headId))
+
+            return revWalk.asSequence().take(perPage).map { Commit(it.name) }.toCollection(LinkedHashSet())
+        }
+    }
+
+    override fun fetchCommit(repositoryFullName: String, commitSha: String): DetailedCommit {
+
+        val gitRepository = open(repositoryFullName)
+
+        RevWalk(gitRepository).use { revWalk ->
+
+            val commit = revWalk.parseCommit(ObjectId.fromString(commitSha))
+
+            val author = Author(commit.authorIdent.emailAddress, commit.authorIdent.name)
+
+            return DetailedCommit(commit.name, author, CommitStats(nbOfChangedLines(gitRepository, revWalk, commit)))
+        }
+    }
+
+    /**
+     * same as GitHub stats : lines added + lines deleted, compared to the first parent
+     */
+    private fun nbOfChangedLines(gitRepository: GitRepository, revWalk: RevWalk, commit: RevCommit): Int {
+
+        val parentTree = if (commit.parentCount > 0) revWalk.parseCommit(commit.getParent(0)).tree else null
+
+        DiffFormatter(DisabledOutputStream.INSTANCE).use { diffFormatter ->
+
+            diffFormatter.setRepository(gitRepository)
+
+            return diffFormatter.scan(parentTree, commit.tree).sumOf { diff ->
+                diffFormatter.toFileHeader(diff).toEditList().sumOf { edit -> edit.lengthA + edit.lengthB }
+            }
+        }
+    }
+
+    override fun fetchTeams(organizationName: String): Set<Team> {
+        return emptySet()
+    }
+
+    override fun fetchTeamsMembers(teamId: String): Set<TeamMember> {
+        return emptySet()
+    }
+
+    override fun fetchOpenPRs(repositoryFullName: String): Set<PullRequest> {
+        return emptySet()
+    }
+
+    private fun resolveBranch(gitRepository: GitRepository, branchName: String): RevCommit? {
+
+        val branchId = gitRepository.resolve(Constants.R_HEADS + branchName) ?: return null
+
+        return RevWalk(gitRepository).use { it.parseCommit(branchId) }
+    }
+
+    /**
+     * repositories are opened once, and kept open until [close] gets called
+     */
+    private fun open(repositoryFullName: String): GitRepository {
+
+        return openRepositories.computeIfAbsent(repositoryFullName) {
+
+            val organizationDirectory = File(mirrorsDirectory, repositoryFullName.substringBefore("/"))
+            val repositoryName = repositoryFullName.substringAfter("/")
+
+            val repositoryDirectory = listOf(File(organizationDirectory, repositoryName + GIT_SUFFIX), File(organizationDirectory, repositoryName))
+                .firstOrNull { RepositoryCache.FileKey.isGitRepository(it, FS.DETECTED) }
+                ?: throw IOException("no git repository found for $repositoryFullName in $organizationDirectory")
+
+            FileRepositoryBuilder().setGitDir(repositoryDirectory).setMustExist(true).build()
+        }
+    }
+
+    /**
+     * closes the repositories opened so far, releasing their pack files and memory mapped windows
+     */
+    override fun close() {
+
+        openRepositories.values.forEach { it.close() }
+        openRepositories.clear()
+    }
+
+}
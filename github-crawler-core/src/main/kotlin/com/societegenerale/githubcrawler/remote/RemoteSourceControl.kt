@@ -9,6 +9,7 @@ import com.societegenerale.githubcrawler.model.commit.Commit
 import com.societegenerale.githubcrawler.model.commit.DetailedCommit
 import com.societegenerale.githubcrawler.model.team.Team
 import com.societegenerale.githubcrawler.model.team.TeamMember
+import java.io.InputStream
 
 interface RemoteSourceControl {
 
@@ -18,9 +19,34 @@ interface RemoteSourceControl {
 
     fun fetchCodeSearchResult(repositoryFullName: String, query: String): SearchResult
 
+    /**
+     * Performs the search once for the whole organization, instead of once per repository.
+     *
+     * @return the search results by repository full name, or null if the source control doesn't support it or if we can't get all the results
+     */
+    fun fetchCodeSearchResultsByRepository(organizationName: String, query: String): Map<String, SearchResult>? = null
+
     @Throws(NoFileFoundException::class)
     fun fetchFileContent(repositoryFullName: String, branchName: String, fileToFetch: String): String
 
+    /**
+     * @return all the files of the branch, listed in as few calls as possible, or null if the source control can't list them
+     */
+    fun fetchFileTree(repositoryFullName: String, branchName: String): FileTree? = null
+
+    /**
+     * Fetches many files at once, possibly across repositories, when the source control lets us do it in fewer calls than one per file.
+     *
+     * @return the content of the files, or null for the ones that don't exist. Files missing from the result need to be fetched with [fetchFileContent].
+     * Returns null if the source control doesn't support it
+     */
+    fun fetchFilesContent(filesToFetch: Collection<FileToFetch>): Map<FileToFetch, String?>? = null
+
+    /**
+     * @return the content of the branch, as a gzipped tarball to be closed by the caller, or null if the source control doesn't provide it
+     */
+    fun fetchArchive(repositoryFullName: String, branchName: String): InputStream? = null
+
     fun fetchCommits(repositoryFullName: String,
                      perPage: Int): Set<Commit>
 
@@ -33,6 +59,14 @@ interface RemoteSourceControl {
 
     fun fetchRepositories(organizationName: String): Set<Repository>
 
+    /**
+     * Same as [fetchRepositories], but lazily : implementations that list the repositories over several pages should emit each page as soon as it's received,
+     * so that the crawl can start without waiting for the whole organization to be listed. Each repository is emitted only once.
+     */
+    fun streamRepositories(organizationName: String): Sequence<Repository> {
+        return fetchRepositories(organizationName).asSequence()
+    }
+
     /**
      * Enables us to hit the API once and confirm that our configuration is correct. If it's not, we throw an exception with details of what went wrong.
      */
@@ -43,6 +77,8 @@ interface RemoteSourceControl {
 
 }
 
+data class FileToFetch(val repositoryFullName: String, val branchName: String, val path: String)
+
 class NoFileFoundException : Exception {
 
     constructor(message: String) : super(message)
@@ -0,0 +1,82 @@
+package com.societegenerale.githubcrawler.repoTaskToPerform
+
+import com.societegenerale.githubcrawler.GitHubCrawler
+import com.societegenerale.githubcrawler.model.Repository
+import com.societegenerale.githubcrawler.model.SearchResult
+import com.societegenerale.githubcrawler.remote.RemoteSourceControl
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Runs a code search once for the whole organization, and keeps the hits in memory, bucketed by repository : tasks performing the same search
+ * on each repository then read from it, turning one search per repository into one search per page of 100 hits.
+ *
+ * When the source control can't search at organization level, or when there are more hits than what it lets us get, we fall back to one search per repository.
+ *
+ * Hits are only kept for the duration of a crawl (identified by the [Repository.crawlerRunId]) : a long lived crawler searches again on the next crawl.
+ */
+class CodeSearchIndex(private val remoteSourceControl: RemoteSourceControl) {
+
+    companion object {
+        // search tasks configured with "scope: organization" use the index, instead of searching repository by repository
+        const val SCOPE_PARAM = "scope"
+        const val ORGANIZATION_SCOPE = "organization"
+
+        fun isOrganizationWide(params: Map<String, String>) = ORGANIZATION_SCOPE.equals(params[SCOPE_PARAM], ignoreCase = true)
+    }
+
+    private val log = LoggerFactory.getLogger(this.javaClass)
+
+    private class CrawlResults(val crawlerRunId: String) {
+        val resultsByOrganizationAndQuery = ConcurrentHashMap<Pair<String, String>, Lazy<Map<String, SearchResult>?>>()
+    }
+
+    @Volatile
+    private var currentCrawlResults = CrawlResults(GitHubCrawler.NO_CRAWLER_RUN_ID_DEFINED)
+
+    fun fetchCodeSearchResult(repository: Repository, query: String): SearchResult {
+
+        val organizationName = repository.fullName.substringBefore("/")
+
+        // first repository of the organization triggers the search, the others wait for it
+        val resultsByRepository = resultsOfCrawl(repository.crawlerRunId)
+            .computeIfAbsent(Pair(organizationName, query)) { lazy { searchInOrganization(organizationName, query) } }
+            .value
+
+        if (resultsByRepository == null) {
+            return remoteSourceControl.fetchCodeSearchResult(repository.fullName, query)
+        }
+
+        return resultsByRepository[repository.fullName.lowercase()] ?: SearchResult(0, emptyList())
+    }
+
+    /**
+     * the first repository of a new crawl drops the results of the previous one
+     */
+    private fun resultsOfCrawl(crawlerRunId: String): ConcurrentHashMap<Pair<String, String>, Lazy<Map<String, SearchResult>?>> {
+
+        currentCrawlResults.takeIf { it.crawlerRunId == crawlerRunId }?.let { return it.resultsByOrganizationAndQuery }
+
+        synchronized(this) {
+
+            if (currentCrawlResults.crawlerRunId != crawlerRunId) {
+                currentCrawlResults = CrawlResults(crawlerRunId)
+            }
+
+            return currentCrawlResults.resultsByOrganizationAndQuery
+        }
+    }
+
+    private fun searchInOrganization(organizationName: String, query: String): Map<String, SearchResult>? {
+
+        return try {
+            remoteSourceControl.fetchCodeSearchResultsByRepository(organizationName, query)
+                ?.mapKeys { it.key.lowercase() }
+                ?.also { log.info("organization wide search for '$query' in $organizationName : hits in ${it.size} repositories") }
+        } catch (e: Exception) {
+            log.warn("problem while searching for '$query' in $organizationName - will search repository by repository", e)
+            null
+        }
+    }
+
+}
@@ -9,14 +9,19 @@ import com.societegenerale.githubcrawler.remote.RemoteSourceControl
  * This task will perform a search on the repository (using Github search API), and return an indicator with the provided name, <b>and the number of hits returned by the search</b>.
  *
  * Note : It will NOT perform the search in each branch of the repository
+ *
+ * If a [CodeSearchIndex] is provided (with "scope: organization" in the task params), the search is performed once for the whole organization.
  */
 class CountHitsOnRepoSearch(private val name : String,
                             private val remoteSourceControl: RemoteSourceControl,
-                            private val searchQuery: String) : RepoTaskToPerform {
+                            private val searchQuery: String,
+                            private val codeSearchIndex: CodeSearchIndex? = null) : RepoTaskToPerform {
 
     override fun perform(repository: Repository): Map<Branch, Pair<String, Any>> {
 
-        val nbHitsMatching= remoteSourceControl.fetchCodeSearchResult(repository.fullName, searchQuery).totalCount.toString()
+        val searchResult = codeSearchIndex?.fetchCodeSearchResult(repository, searchQuery) ?: remoteSourceControl.fetchCodeSearchResult(repository.fullName, searchQuery)
+
+        val nbHitsMatching= searchResult.totalCount.toString()
 
         return hashMapOf(Pair(Branch(repository.defaultBranch), Pair(name,nbHitsMatching)))
 
@@ -24,14 +29,15 @@ class CountHitsOnRepoSearch(private val name : String,
 
 }
 
-class CountHitsOnRepoSearchBuilder(private val remoteSourceControl: RemoteSourceControl) : RepoTaskBuilder  {
+class CountHitsOnRepoSearchBuilder(private val remoteSourceControl: RemoteSourceControl,
+                                   private val codeSearchIndex: CodeSearchIndex = CodeSearchIndex(remoteSourceControl)) : RepoTaskBuilder  {
 
     override val type="countHitsOnRepoSearch"
 
 
     override fun buildTask(name: String, params : Map<String,String>) : RepoTaskToPerform{
 
-        return CountHitsOnRepoSearch(name, remoteSourceControl, params["queryString"]!!)
+        return CountHitsOnRepoSearch(name, remoteSourceControl, params["queryString"]!!, codeSearchIndex.takeIf { CodeSearchIndex.isOrganizationWide(params) })
 
     }
 
@@ -9,14 +9,17 @@ import com.societegenerale.githubcrawler.remote.RemoteSourceControl
  * This task will perform a search on the repository (using Github search API), and return an indicator with the provided name, <b>and the list of items' paths (relative to that repository) that matched the search</b>.
  *
  * Note : It will NOT perform the search in each branch of the repository
+ *
+ * If a [CodeSearchIndex] is provided (with "scope: organization" in the task params), the search is performed once for the whole organization.
  */
 class PathsForHitsOnRepoSearch( private val taskName: String,
                                 private val searchQuery: String,
-                                private val remoteSourceControl: RemoteSourceControl) : RepoTaskToPerform {
+                                private val remoteSourceControl: RemoteSourceControl,
+                                private val codeSearchIndex: CodeSearchIndex? = null) : RepoTaskToPerform {
 
     override fun perform(repository: Repository): Map<Branch, Pair<String, Any>> {
 
-        val searchResult= remoteSourceControl.fetchCodeSearchResult(repository.fullName, searchQuery)
+        val searchResult= codeSearchIndex?.fetchCodeSearchResult(repository, searchQuery) ?: remoteSourceControl.fetchCodeSearchResult(repository.fullName, searchQuery)
 
         val paths=if(searchResult.totalCount>0){
                 searchResult.items.map { i -> i.path }
@@ -32,14 +35,15 @@ class PathsForHitsOnRepoSearch( private val taskName: String,
 
 }
 
-class PathsForHitsOnRepoSearchBuilder(private val remoteSourceControl: RemoteSourceControl) : RepoTaskBuilder  {
+class PathsForHitsOnRepoSearchBuilder(private val remoteSourceControl: RemoteSourceControl,
+                                      private val codeSearchIndex: CodeSearchIndex = CodeSearchIndex(remoteSourceControl)) : RepoTaskBuilder  {
 
     override val type="pathsForHitsOnRepoSearch"
 
 
     override fun buildTask(name: String, params : Map<String,String>) : RepoTaskToPerform{
 
-        return PathsForHitsOnRepoSearch(name, params["queryString"]!!,remoteSourceControl)
+        return PathsForHitsOnRepoSearch(name, params["queryString"]!!,remoteSourceControl, codeSearchIndex.takeIf { CodeSearchIndex.isOrganizationWide(params) })
 
     }
 
@@ -0,0 +1,50 @@
+package com.societegenerale.githubcrawler
+
+import com.societegenerale.githubcrawler.parsers.FirstMatchingRegexpParser
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.util.regex.PatternSyntaxException
+
+class CompiledExpressionsTest {
+
+    @Test
+    fun shouldCompileConfiguredExpressionsOnlyOnce() {
+
+        val regexpIndicator = IndicatorDefinition("dockerImage", FirstMatchingRegexpParser.FIND_FIRST_VALUE_WITH_REGEXP_CAPTURE_METHOD, mapOf(Pair(FirstMatchingRegexpParser.PATTERN, "^FROM\\s+(.*)")))
+
+        CompiledExpressions.precompile(GitHubCrawlerProperties(indicatorsToFetchByFile = mapOf(Pair(FileToParse("Dockerfile", null), listOf(regexpIndicator))),
+                                                               repositoriesToExclude = listOf("^legacy-", "-archived$")))
+
+        assertThat(CompiledExpressions.pattern("^FROM\\s+(.*)")).isSameAs(CompiledExpressions.pattern("^FROM\\s+(.*)"))
+        assertThat(CompiledExpressions.repositoryNameMatcher(listOf("^legacy-", "-archived$"))).isSameAs(CompiledExpressions.repositoryNameMatcher(listOf("^legacy-", "-archived$")))
+    }
+
+    @Test
+    fun shouldThrowSameExceptionAsPatternCompile_whenExpressionIsInvalid() {
+
+        assertThatThrownBy { CompiledExpressions.pattern("(unclosed") }.isInstanceOf(PatternSyntaxException::class.java)
+    }
+
+    @Test
+    fun shouldMatchRepositoryNameOnAnyPattern() {
+
+        val repositoryNameMatcher = RepositoryNameMatcher(listOf("^legacy-", "-archived$", "(?i)sandbox"))
+
+        assertThat(repositoryNameMatcher.matches("legacy-service")).isTrue()
+        assertThat(repositoryNameMatcher.matches("service-archived")).isTrue()
+        assertThat(repositoryNameMatcher.matches("my-SandBox-repo")).isTrue()
+        assertThat(repositoryNameMatcher.matches("service-legacy-archived-not")).isFalse()
+    }
+
+    @Test
+    fun shouldKeepMeaningOfPatternsWithBackReferences() {
+
+        val repositoryNameMatcher = RepositoryNameMatcher(listOf("^(a)-", "(b)\\1"))
+
+        assertThat(repositoryNameMatcher.matches("a-service")).isTrue()
+        assertThat(repositoryNameMatcher.matches("service-bb")).isTrue()
+        assertThat(repositoryNameMatcher.matches("service-ba")).isFalse()
+    }
+
+}
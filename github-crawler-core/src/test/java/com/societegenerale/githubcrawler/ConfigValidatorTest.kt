@@ -38,6 +38,15 @@ class ConfigValidatorTest {
 
     }
 
+    @Test
+    fun shouldHaveAtLeastOneWorker() {
+
+        val configValidator = ConfigValidator(GitHubCrawlerProperties(SourceControlConfig(organizationName="notEmpty"), concurrency = ConcurrencyConfig(workers = 0)),mockRemoteSourceControl)
+
+        assertThat(configValidator.getValidationErrors()).containsOnly("concurrency.workers needs to be at least 1");
+
+    }
+
     @Test
     fun shouldLogProperMessageIfNotAbleToHitAPI() {
 
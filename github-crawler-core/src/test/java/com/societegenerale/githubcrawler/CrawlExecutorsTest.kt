@@ -0,0 +1,86 @@
+package com.societegenerale.githubcrawler
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class CrawlExecutorsTest {
+
+    // virtual threads only exist from JDK 21, so we can't call Thread.isVirtual directly while building for older JDKs
+    private fun isVirtual(thread: Thread): Boolean {
+
+        val isVirtualMethod = Thread::class.java.methods.firstOrNull { it.name == "isVirtual" } ?: return false
+
+        return isVirtualMethod.invoke(thread) as Boolean
+    }
+
+    private fun virtualThreadsAreAvailable() = Runtime.version().feature() >= 21
+
+    @Test
+    fun shouldCrawlOnVirtualThreads_orFallBackOnPlatformWorkersWhenNotAvailable() {
+
+        val executor = CrawlExecutors.newRepositoriesExecutor(ConcurrencyConfig(mode = CrawlMode.VIRTUAL_THREADS, maxInFlightRequests = 2))
+
+        try {
+            val crawlingThread = executor.submit(Callable { Thread.currentThread() }).get()
+
+            if (virtualThreadsAreAvailable()) {
+                assertThat(isVirtual(crawlingThread)).isTrue()
+            } else {
+                assertThat(isVirtual(crawlingThread)).isFalse()
+                assertThat(crawlingThread.name).startsWith("crawler-worker-")
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun shouldFetchFilesOnVirtualThreads_orFallBackOnPlatformFetchersWhenNotAvailable() {
+
+        val executor = CrawlExecutors.newFileFetchesExecutor(ConcurrencyConfig(mode = CrawlMode.VIRTUAL_THREADS, maxInFlightRequests = 2))!!
+
+        try {
+            val fetchingThread = executor.submit(Callable { Thread.currentThread() }).get()
+
+            if (virtualThreadsAreAvailable()) {
+                assertThat(isVirtual(fetchingThread)).isTrue()
+            } else {
+                assertThat(isVirtual(fetchingThread)).isFalse()
+                assertThat(fetchingThread.name).startsWith("crawler-fetcher-")
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun shouldFetchFilesInCallingThread_whenAllFetchersAreBusy() {
+
+        // 1 worker, fetching at most 2 files at the same time : only 2 fetcher threads
+        val executor = CrawlExecutors.newFileFetchesExecutor(ConcurrencyConfig(mode = CrawlMode.WORKER_POOL, workers = 1, maxFileFetchesPerRepository = 2))!!
+
+        val allFetchesStarted = CountDownLatch(3)
+        val fetchingThreads: MutableSet<String> = Collections.synchronizedSet(HashSet())
+
+        val fetch = Callable {
+            fetchingThreads.add(Thread.currentThread().name)
+            allFetchesStarted.countDown()
+            allFetchesStarted.await(5, TimeUnit.SECONDS)
+        }
+
+        try {
+            val results = executor.invokeAll(listOf(fetch, fetch, fetch))
+
+            assertThat(results.map { it.get() }).containsOnly(true)
+            assertThat(fetchingThreads).contains(Thread.currentThread().name)
+            assertThat(fetchingThreads).hasSize(3)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.societegenerale.githubcrawler
+
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.util.*
+
+class CrawlStateStoreTest {
+
+    private val lastPushDate = Date()
+
+    private val crawledRepository = Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(),
+                                               lastPushDate = lastPushDate,
+                                               branchesToParse = setOf(Branch("master")),
+                                               indicators = mapOf(Branch("master") to mapOf("someIndicator" to "someValue")),
+                                               miscTasksResults = mapOf(Branch("master") to mapOf("nbOpenPRs" to 3)))
+
+    private val sameRepositoryInNextCrawl = Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(),
+                                                       lastPushDate = lastPushDate)
+
+    @Test
+    fun shouldRestoreResultsOfRepositoryNotPushedToSincePreviousCrawl(@TempDir stateDirectory: Path) {
+
+        val stateFile = stateDirectory.resolve("crawlerState.json")
+
+        saveStateOf(crawledRepository, FileCrawlStateStore(stateFile, "someConfig"))
+
+        val restoredRepository = FileCrawlStateStore(stateFile, "someConfig").restoreIfUnchanged(sameRepositoryInNextCrawl)!!
+
+        assertThat(restoredRepository.branchesToParse).containsOnly(Branch("master"))
+        assertThat(restoredRepository.getIndicatorsForBranch("master")).isEqualTo(mapOf("someIndicator" to "someValue"))
+        assertThat(restoredRepository.miscTasksResults).isEmpty()
+    }
+
+    @Test
+    fun shouldRestoreRepositorySkippedInPreviousCrawl_asSkipped(@TempDir stateDirectory: Path) {
+
+        val stateFile = stateDirectory.resolve("crawlerState.json")
+
+        saveStateOf(crawledRepository.copy(skipped = true, reason = "invalid repo config"), FileCrawlStateStore(stateFile, "someConfig"))
+
+        val restoredRepository = FileCrawlStateStore(stateFile, "someConfig").restoreIfUnchanged(sameRepositoryInNextCrawl)!!
+
+        assertThat(restoredRepository.skipped).isTrue()
+        assertThat(restoredRepository.reason).isEqualTo("invalid repo config")
+    }
+
+    @Test
+    fun shouldNotRestoreResultsOfRepositoryPushedToSincePreviousCrawl(@TempDir stateDirectory: Path) {
+
+        val stateFile = stateDirectory.resolve("crawlerState.json")
+
+        saveStateOf(crawledRepository, FileCrawlStateStore(stateFile, "someConfig"))
+
+        val pushedToRepository = sameRepositoryInNextCrawl.copy(lastPushDate = Date(lastPushDate.time + 1000))
+
+        assertThat(FileCrawlStateStore(stateFile, "someConfig").restoreIfUnchanged(pushedToRepository)).isNull()
+    }
+
+    @Test
+    fun shouldNotRestoreResultsComputedWithAnotherConfig(@TempDir stateDirectory: Path) {
+
+        val stateFile = stateDirectory.resolve("crawlerState.json")
+
+        saveStateOf(crawledRepository, FileCrawlStateStore(stateFile, "someConfig"))
+
+        assertThat(FileCrawlStateStore(stateFile, "someOtherConfig").restoreIfUnchanged(sameRepositoryInNextCrawl)).isNull()
+    }
+
+    private fun saveStateOf(repository: Repository, stateStore: CrawlStateStore) {
+        stateStore.record(repository)
+        stateStore.save()
+    }
+
+}
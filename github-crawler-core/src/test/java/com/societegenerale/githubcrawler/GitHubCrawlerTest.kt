@@ -2,19 +2,27 @@ package com.societegenerale.githubcrawler
 
 import com.google.common.collect.ImmutableList
 import com.jayway.awaitility.Awaitility.await
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.PullRequest
 import com.societegenerale.githubcrawler.model.Repository
 import com.societegenerale.githubcrawler.output.GitHubCrawlerOutput
 import com.societegenerale.githubcrawler.parsers.SimpleFilePathParser
+import com.societegenerale.githubcrawler.remote.NoReachableRepositories
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
+import com.societegenerale.githubcrawler.repoTaskToPerform.NbOpenPRsOnRepoBuilder
 
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.entry
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
 
 import org.mockito.Mockito
 import org.mockito.Mockito.*
 import org.springframework.core.env.Environment
 import java.io.IOException
+import java.nio.file.Path
 import java.util.*
 
 
@@ -50,6 +58,10 @@ class GitHubCrawlerTest {
                 Repository(url = "url2", fullName = "fullRepo2", name = "repo2", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(), groups = listOf("group2a", "group2b"))
         ))
 
+        `when`(mockRemoteSourceControl.streamRepositories(organizationName)).thenCallRealMethod()
+
+        `when`(mockRemoteSourceControl.fetchFilesContent(anyCollection())).thenCallRealMethod()
+
         `when`(mockRemoteSourceControl.fetchRepoConfig(anyString(), anyString())).thenReturn(RepositoryConfig())
 
         `when`(mockRemoteSourceControl.fetchFileContent(any(String::class.java), any(String::class.java),eq(fileToParse))).thenReturn("")
@@ -138,6 +150,204 @@ class GitHubCrawlerTest {
         assertThat(processedRepositories.get("repo2")?.tags).isEmpty()
     }
 
+    @Test
+    fun shouldCrawlInParallelOnDedicatedWorkers() {
+
+        gitHubCrawlerProperties.concurrency.workers = 2
+
+        crawlAndWaitUntilWeHaveRecordsInOutput(2)
+
+        assertThat(output.publishingThreads).allMatch { it.startsWith("crawler-worker-") }
+    }
+
+    @Test
+    fun shouldCrawlAllRepositoriesInVirtualThreadsMode() {
+
+        gitHubCrawlerProperties.concurrency.mode = CrawlMode.VIRTUAL_THREADS
+        gitHubCrawlerProperties.concurrency.maxInFlightRequests = 1
+
+        val processedRepositories = crawlAndWaitUntilWeHaveRecordsInOutput(2)
+
+        assertThat(processedRepositories.keys).containsExactlyInAnyOrder("repo1", "repo2")
+    }
+
+    @Test
+    fun shouldCrawlInCallingThreadWhenNotInParallel() {
+
+        gitHubCrawlerProperties.crawlInParallel = false
+
+        crawlAndWaitUntilWeHaveRecordsInOutput(2)
+
+        assertThat(output.publishingThreads).containsOnly(Thread.currentThread().name)
+    }
+
+    @Test
+    fun shouldStartCrawlingRepositoriesBeforeAllOfThemAreDiscovered() {
+
+        doReturn(sequence {
+
+            yield(Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date()))
+
+            // the "second page" only arrives once the repository of the first one has been published
+            await().atMost(2, java.util.concurrent.TimeUnit.SECONDS)
+                    .until({ assertThat(output.analyzedRepositories).containsKey("repo1") })
+
+            yield(Repository(url = "url2", fullName = "fullRepo2", name = "repo2", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date()))
+        }).`when`(mockRemoteSourceControl).streamRepositories(organizationName)
+
+        val processedRepositories = crawlAndWaitUntilWeHaveRecordsInOutput(2)
+
+        assertThat(processedRepositories.keys).containsExactlyInAnyOrder("repo1", "repo2")
+    }
+
+    @Test
+    fun shouldReturnASummaryOfTheCrawl() {
+
+        `when`(mockRemoteSourceControl.fetchRepoConfig("fullRepo1", "master")).thenReturn(RepositoryConfig(excluded = true))
+
+        val crawlSummary = gitHubCrawler.crawl()
+
+        assertThat(crawlSummary.nbDiscoveredRepositories).isEqualTo(2)
+        assertThat(crawlSummary.nbPublishedRepositories).isEqualTo(1)
+        assertThat(crawlSummary.nbExcludedRepositories).isEqualTo(1)
+        assertThat(crawlSummary.failedRepositories).isEmpty()
+    }
+
+    @Test
+    fun shouldKeepCrawlingOtherRepositoriesWhenOneFails() {
+
+        `when`(mockRemoteSourceControl.fetchRepoConfig("fullRepo1", "master")).thenThrow(IllegalStateException("remote source control is down"))
+
+        val crawlSummary = gitHubCrawler.crawl()
+
+        assertThat(output.analyzedRepositories.keys).containsOnly("repo2")
+        assertThat(crawlSummary.nbPublishedRepositories).isEqualTo(1)
+        assertThat(crawlSummary.failedRepositories).containsOnly(entry("fullRepo1", "remote source control is down"))
+    }
+
+    @Test
+    fun shouldFinalizeOutputsAndSaveState_evenWhenDiscoveryFailsMidway() {
+
+        doReturn(sequence {
+            yield(Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date()))
+
+            throw NoReachableRepositories("GET call to page 2 wasn't successful. Code : 502, Message : Bad Gateway")
+        }).`when`(mockRemoteSourceControl).streamRepositories(organizationName)
+
+        val mockCrawlStateStore = mock(CrawlStateStore::class.java)
+
+        val gitHubCrawlerWithState = GitHubCrawler(mockRemoteSourceControl, outputs, repositoryEnricher, gitHubCrawlerProperties, mockEnvironment, organizationName, mockConfigValidator,availableParsersAndTasks,
+                                                   mockCrawlStateStore)
+
+        assertThatThrownBy { gitHubCrawlerWithState.crawl() }.isInstanceOf(NoReachableRepositories::class.java)
+
+        // the repository discovered before the failure has been fully processed
+        assertThat(output.analyzedRepositories.keys).containsOnly("repo1")
+        assertThat(output.finalized).isTrue()
+        verify(mockCrawlStateStore).save()
+    }
+
+    @Test
+    fun shouldPublishToEachOutputFromItsOwnThread_whenPublishingAsynchronously() {
+
+        val asynchronousPublishingProperties = GitHubCrawlerProperties(indicatorsToFetchByFile = gitHubCrawlerProperties.indicatorsToFetchByFile,
+                                                                       publishing = PublishingConfig(asynchronous = true))
+
+        val crawlSummary = GitHubCrawler(mockRemoteSourceControl, outputs, repositoryEnricher, asynchronousPublishingProperties, mockEnvironment, organizationName, mockConfigValidator,availableParsersAndTasks).crawl()
+
+        // all the repositories have been published once crawl() returns
+        assertThat(output.analyzedRepositories.keys).containsExactlyInAnyOrder("repo1", "repo2")
+        assertThat(output.publishingThreads).containsOnly("output-InMemoryGitHubCrawlerOutput")
+        assertThat(crawlSummary.outputStats["InMemoryGitHubCrawlerOutput"]?.nbPublished).isEqualTo(2)
+    }
+
+    @Test
+    fun shouldKeepStatsOfEachOutput_whenPublishingAsynchronouslyToSeveralOutputsOfTheSameClass() {
+
+        val otherOutput = InMemoryGitHubCrawlerOutput()
+
+        val asynchronousPublishingProperties = GitHubCrawlerProperties(indicatorsToFetchByFile = gitHubCrawlerProperties.indicatorsToFetchByFile,
+                                                                       publishing = PublishingConfig(asynchronous = true))
+
+        val crawlSummary = GitHubCrawler(mockRemoteSourceControl, listOf(output, otherOutput), repositoryEnricher, asynchronousPublishingProperties, mockEnvironment, organizationName, mockConfigValidator,availableParsersAndTasks).crawl()
+
+        assertThat(output.publishingThreads).containsOnly("output-InMemoryGitHubCrawlerOutput-1")
+        assertThat(otherOutput.publishingThreads).containsOnly("output-InMemoryGitHubCrawlerOutput-2")
+        assertThat(crawlSummary.outputStats.keys).containsExactlyInAnyOrder("InMemoryGitHubCrawlerOutput-1", "InMemoryGitHubCrawlerOutput-2")
+        assertThat(crawlSummary.outputStats.values.map { it.nbPublished }).containsOnly(2)
+    }
+
+    @Test
+    fun shouldRepublishPreviousResultsOfRepositoriesUnchangedSinceLastCrawl(@TempDir stateDirectory: Path) {
+
+        val lastPushDate = Date()
+
+        `when`(mockRemoteSourceControl.fetchRepositories(organizationName)).thenReturn(setOf(
+                Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(), lastPushDate = lastPushDate),
+                Repository(url = "url2", fullName = "fullRepo2", name = "repo2", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(), lastPushDate = lastPushDate)))
+
+        val stateFile = stateDirectory.resolve("crawlerState.json")
+        val configFingerprint = CrawlStateStore.configFingerprint(gitHubCrawlerProperties)
+
+        GitHubCrawler(mockRemoteSourceControl, outputs, repositoryEnricher, gitHubCrawlerProperties, mockEnvironment, organizationName, mockConfigValidator,availableParsersAndTasks,
+                      FileCrawlStateStore(stateFile, configFingerprint)).crawl()
+
+        val indicatorsFromFirstCrawl = output.analyzedRepositories["repo1"]!!.indicators
+        output.reset()
+
+        // repo2 gets pushed to between the 2 crawls
+        `when`(mockRemoteSourceControl.fetchRepositories(organizationName)).thenReturn(setOf(
+                Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(), lastPushDate = lastPushDate),
+                Repository(url = "url2", fullName = "fullRepo2", name = "repo2", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(), lastPushDate = Date(lastPushDate.time + 1000))))
+
+        val crawlSummary = GitHubCrawler(mockRemoteSourceControl, outputs, repositoryEnricher, gitHubCrawlerProperties, mockEnvironment, organizationName, mockConfigValidator,availableParsersAndTasks,
+                                         FileCrawlStateStore(stateFile, configFingerprint)).crawl()
+
+        assertThat(output.analyzedRepositories.keys).containsExactlyInAnyOrder("repo1", "repo2")
+        assertThat(output.analyzedRepositories["repo1"]!!.indicators).isEqualTo(indicatorsFromFirstCrawl)
+        assertThat(crawlSummary.nbPublishedRepositories).isEqualTo(2)
+        assertThat(crawlSummary.nbUnchangedRepositories).isEqualTo(1)
+
+        verify(mockRemoteSourceControl, times(1)).fetchFileContent("fullRepo1", "master", "pom.xml")
+        verify(mockRemoteSourceControl, times(2)).fetchFileContent("fullRepo2", "master", "pom.xml")
+    }
+
+    @Test
+    fun shouldPerformMiscTasksAgainOnRepositoriesUnchangedSinceLastCrawl(@TempDir stateDirectory: Path) {
+
+        val lastPushDate = Date()
+
+        `when`(mockRemoteSourceControl.fetchRepositories(organizationName)).thenReturn(setOf(
+                Repository(url = "url1", fullName = "fullRepo1", name = "repo1", defaultBranch = "master", creationDate = Date(), lastUpdateDate = Date(), lastPushDate = lastPushDate)))
+
+        val propertiesWithOpenPRsTask = GitHubCrawlerProperties(indicatorsToFetchByFile = gitHubCrawlerProperties.indicatorsToFetchByFile,
+                                                                miscRepositoryTasks = listOf(TaskDefinition("nbOpenPRs", "nbOpenPRsOnRepo")))
+
+        val parsersAndTasks = AvailableParsersAndTasks(listOf(SimpleFilePathParser()), listOf(NbOpenPRsOnRepoBuilder(mockRemoteSourceControl)))
+
+        val stateFile = stateDirectory.resolve("crawlerState.json")
+        val configFingerprint = CrawlStateStore.configFingerprint(propertiesWithOpenPRsTask)
+
+        `when`(mockRemoteSourceControl.fetchOpenPRs("fullRepo1")).thenReturn(setOf(PullRequest(1), PullRequest(2)))
+
+        GitHubCrawler(mockRemoteSourceControl, outputs, repositoryEnricher, propertiesWithOpenPRsTask, mockEnvironment, organizationName, mockConfigValidator, parsersAndTasks,
+                      FileCrawlStateStore(stateFile, configFingerprint)).crawl()
+
+        assertThat(output.analyzedRepositories["repo1"]!!.miscTasksResults[Branch("master")]).isEqualTo(mapOf("nbOpenPRs" to 2))
+        output.reset()
+
+        // a PR gets closed without being merged : pushed_at doesn't change
+        `when`(mockRemoteSourceControl.fetchOpenPRs("fullRepo1")).thenReturn(setOf(PullRequest(2)))
+
+        val crawlSummary = GitHubCrawler(mockRemoteSourceControl, outputs, repositoryEnricher, propertiesWithOpenPRsTask, mockEnvironment, organizationName, mockConfigValidator, parsersAndTasks,
+                                         FileCrawlStateStore(stateFile, configFingerprint)).crawl()
+
+        assertThat(crawlSummary.nbUnchangedRepositories).isEqualTo(1)
+        assertThat(output.analyzedRepositories["repo1"]!!.miscTasksResults[Branch("master")]).isEqualTo(mapOf("nbOpenPRs" to 1))
+
+        verify(mockRemoteSourceControl, times(1)).fetchFileContent("fullRepo1", "master", "pom.xml")
+    }
+
     private fun crawlAndWaitUntilWeHaveRecordsInOutput(nbExpectedRecords: Int): HashMap<String, Repository> {
 
         gitHubCrawler.crawl()
@@ -153,18 +363,26 @@ class GitHubCrawlerTest {
 
         val analyzedRepositories = HashMap<String, Repository>()
 
+        val publishingThreads: MutableSet<String> = Collections.synchronizedSet(HashSet())
+
         @Throws(IOException::class)
+        @Synchronized
         override fun output(analyzedRepository: Repository) {
             this.analyzedRepositories[analyzedRepository.name] = analyzedRepository
+            publishingThreads.add(Thread.currentThread().name)
         }
 
+        @Volatile
+        var finalized = false
+
         fun reset() {
             analyzedRepositories.clear()
+            publishingThreads.clear()
         }
 
         @Throws(IOException::class)
         override fun finalizeOutput() {
-            //do nothing
+            finalized = true
         }
     }
 
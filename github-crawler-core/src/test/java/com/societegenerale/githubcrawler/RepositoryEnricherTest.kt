@@ -2,13 +2,27 @@ package com.societegenerale.githubcrawler
 
 import com.societegenerale.githubcrawler.model.Branch
 import com.societegenerale.githubcrawler.model.Repository
+import com.societegenerale.githubcrawler.remote.FileToFetch
+import com.societegenerale.githubcrawler.remote.FileTree
 import com.societegenerale.githubcrawler.remote.RemoteSourceControl
 import com.societegenerale.githubcrawler.repoTaskToPerform.RepoTaskToPerform
+import com.societegenerale.githubcrawler.parsers.SimpleFilePathParser
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
+import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 
+import org.mockito.ArgumentMatchers.anyCollection
+import org.mockito.ArgumentMatchers.anyString
 import org.mockito.Mockito
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.doReturn
+import org.mockito.Mockito.never
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
 import java.util.*
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 
 class RepositoryEnricherTest {
 
@@ -31,6 +45,11 @@ class RepositoryEnricherTest {
             branchesToParse = setOf(masterBranch)
     )
 
+    @BeforeEach
+    fun setUp() {
+        `when`(mockRemoteSourceControl.fetchFilesContent(anyCollection())).thenCallRealMethod()
+    }
+
     @Test
     fun shouldHaveEmptyIndicatorsWhenNoneIsConfigured() {
 
@@ -41,6 +60,130 @@ class RepositoryEnricherTest {
         assertThat(repoAfterProcessing.indicators[masterBranch]).isEmpty()
     }
 
+    @Test
+    fun shouldMergeIndicatorsOfAllFilesPerBranch_whenFetchingInParallel() {
+
+        val parallelRepositoryEnricher = RepositoryEnricher(mockRemoteSourceControl,
+                                                            AvailableParsersAndTasks(listOf(SimpleFilePathParser()), emptyList()),
+                                                            Executors.newFixedThreadPool(4),
+                                                            RequestBudget(2))
+
+        `when`(mockRemoteSourceControl.fetchFileContent(anyString(), anyString(), anyString())).thenReturn("some content")
+
+        val properties = GitHubCrawlerProperties(SourceControlConfig(),
+                                                 indicatorsToFetchByFile = mapOf(Pair(FileToParse("pom.xml", null), listOf(IndicatorDefinition("pomPath", SimpleFilePathParser.FILE_PATH_INFO))),
+                                                                                 Pair(FileToParse("Dockerfile", null), listOf(IndicatorDefinition("dockerfilePath", SimpleFilePathParser.FILE_PATH_INFO)))))
+
+        val repoAfterProcessing = parallelRepositoryEnricher.fetchIndicatorsValues(repository.copy(branchesToParse = setOf(masterBranch, branch1)), properties)
+
+        assertThat(repoAfterProcessing.indicators).containsOnlyKeys(masterBranch, branch1)
+        assertThat(repoAfterProcessing.indicators[masterBranch]).containsOnly(entry("pomPath", "pom.xml"), entry("dockerfilePath", "Dockerfile"))
+        assertThat(repoAfterProcessing.indicators[branch1]).containsOnly(entry("pomPath", "pom.xml"), entry("dockerfilePath", "Dockerfile"))
+    }
+
+    @Test
+    fun shouldNotFetchMoreFilesInParallelThanAllowedPerRepository() {
+
+        val maxFileFetchesPerRepository = 2
+
+        val parallelRepositoryEnricher = RepositoryEnricher(mockRemoteSourceControl,
+                                                            AvailableParsersAndTasks(listOf(SimpleFilePathParser()), emptyList()),
+                                                            Executors.newFixedThreadPool(8),
+                                                            RequestBudget.UNLIMITED,
+                                                            maxFileFetchesPerRepository)
+
+        val fetchesInProgress = AtomicInteger()
+        val maxFetchesInProgress = AtomicInteger()
+
+        `when`(mockRemoteSourceControl.fetchFileContent(anyString(), anyString(), anyString())).thenAnswer {
+            maxFetchesInProgress.accumulateAndGet(fetchesInProgress.incrementAndGet(), Math::max)
+            Thread.sleep(50)
+            fetchesInProgress.decrementAndGet()
+            "some content"
+        }
+
+        val filesToParse = (1..4).associate { Pair(FileToParse("file$it", null), listOf(IndicatorDefinition("path$it", SimpleFilePathParser.FILE_PATH_INFO))) }
+
+        val repoAfterProcessing = parallelRepositoryEnricher.fetchIndicatorsValues(repository.copy(branchesToParse = setOf(masterBranch, branch1)),
+                                                                                   GitHubCrawlerProperties(SourceControlConfig(), indicatorsToFetchByFile = filesToParse))
+
+        assertThat(maxFetchesInProgress.get()).isEqualTo(maxFileFetchesPerRepository)
+        assertThat(repoAfterProcessing.indicators[masterBranch]).hasSize(4)
+        assertThat(repoAfterProcessing.indicators[branch1]).hasSize(4)
+    }
+
+    @Test
+    fun shouldFetchAllFilesOfRepositoryAtOnce_whenRemoteSourceControlSupportsIt() {
+
+        val batchRepositoryEnricher = RepositoryEnricher(mockRemoteSourceControl, AvailableParsersAndTasks(listOf(SimpleFilePathParser()), emptyList()))
+
+        doReturn(mapOf(Pair(FileToFetch("orgName/someRepo", "master", "pom.xml"), "some content"),
+                       Pair(FileToFetch("orgName/someRepo", "master", "Dockerfile"), null),
+                       Pair(FileToFetch("orgName/someRepo", "branch1", "pom.xml"), "some content"),
+                       Pair(FileToFetch("orgName/someRepo", "branch1", "Dockerfile"), "some content")))
+            .`when`(mockRemoteSourceControl).fetchFilesContent(anyCollection())
+
+        val properties = GitHubCrawlerProperties(SourceControlConfig(),
+                                                 indicatorsToFetchByFile = mapOf(Pair(FileToParse("pom.xml", null), listOf(IndicatorDefinition("pomPath", SimpleFilePathParser.FILE_PATH_INFO))),
+                                                                                 Pair(FileToParse("Dockerfile", null), listOf(IndicatorDefinition("dockerfilePath", SimpleFilePathParser.FILE_PATH_INFO)))))
+
+        val repoAfterProcessing = batchRepositoryEnricher.fetchIndicatorsValues(repository.copy(branchesToParse = setOf(masterBranch, branch1)), properties)
+
+        verify(mockRemoteSourceControl, times(1)).fetchFilesContent(anyCollection())
+        verify(mockRemoteSourceControl, never()).fetchFileContent(anyString(), anyString(), anyString())
+
+        assertThat(repoAfterProcessing.indicators[masterBranch]).containsOnly(entry("pomPath", "pom.xml"))
+        assertThat(repoAfterProcessing.indicators[branch1]).containsOnly(entry("pomPath", "pom.xml"), entry("dockerfilePath", "Dockerfile"))
+    }
+
+    @Test
+    fun shouldFetchOneByOneTheFilesTheBatchCouldntGet() {
+
+        val batchRepositoryEnricher = RepositoryEnricher(mockRemoteSourceControl, AvailableParsersAndTasks(listOf(SimpleFilePathParser()), emptyList()))
+
+        // Dockerfile is missing from the batch result
+        doReturn(mapOf(Pair(FileToFetch("orgName/someRepo", "master", "pom.xml"), "some content")))
+            .`when`(mockRemoteSourceControl).fetchFilesContent(anyCollection())
+
+        `when`(mockRemoteSourceControl.fetchFileContent("orgName/someRepo", "master", "Dockerfile")).thenReturn("some content")
+
+        val properties = GitHubCrawlerProperties(SourceControlConfig(),
+                                                 indicatorsToFetchByFile = mapOf(Pair(FileToParse("pom.xml", null), listOf(IndicatorDefinition("pomPath", SimpleFilePathParser.FILE_PATH_INFO))),
+                                                                                 Pair(FileToParse("Dockerfile", null), listOf(IndicatorDefinition("dockerfilePath", SimpleFilePathParser.FILE_PATH_INFO)))))
+
+        val repoAfterProcessing = batchRepositoryEnricher.fetchIndicatorsValues(repository.copy(branchesToParse = setOf(masterBranch)), properties)
+
+        verify(mockRemoteSourceControl, times(1)).fetchFileContent(anyString(), anyString(), anyString())
+
+        assertThat(repoAfterProcessing.indicators[masterBranch]).containsOnly(entry("pomPath", "pom.xml"), entry("dockerfilePath", "Dockerfile"))
+    }
+
+    @Test
+    fun shouldOnlyFetchFilesFoundInFileTree() {
+
+        val enricher = RepositoryEnricher(mockRemoteSourceControl, AvailableParsersAndTasks(listOf(SimpleFilePathParser()), emptyList()))
+
+        val fileTree = FileTree()
+        fileTree.addFile("pom.xml", "sha1")
+        fileTree.addFile("modules/api/Dockerfile", "sha2")
+
+        `when`(mockRemoteSourceControl.fetchFileTree("orgName/someRepo", "master")).thenReturn(fileTree)
+        `when`(mockRemoteSourceControl.fetchFileContent(anyString(), anyString(), anyString())).thenReturn("some content")
+
+        val properties = GitHubCrawlerProperties(SourceControlConfig(),
+                                                 indicatorsToFetchByFile = mapOf(Pair(FileToParse("pom.xml", null), listOf(IndicatorDefinition("pomPath", SimpleFilePathParser.FILE_PATH_INFO))),
+                                                                                 Pair(FileToParse("build.gradle", null), listOf(IndicatorDefinition("gradlePath", SimpleFilePathParser.FILE_PATH_INFO))),
+                                                                                 Pair(FileToParse("**/Dockerfile", null), listOf(IndicatorDefinition("dockerfilePath", SimpleFilePathParser.FILE_PATH_INFO)))))
+
+        val repoAfterProcessing = enricher.fetchIndicatorsValues(repository, properties)
+
+        verify(mockRemoteSourceControl).fetchFileContent("orgName/someRepo", "master", "pom.xml")
+        verify(mockRemoteSourceControl).fetchFileContent("orgName/someRepo", "master", "modules/api/Dockerfile")
+        verify(mockRemoteSourceControl, never()).fetchFileContent("orgName/someRepo", "master", "build.gradle")
+
+        assertThat(repoAfterProcessing.indicators[masterBranch]).containsOnly(entry("pomPath", "pom.xml"), entry("dockerfilePath", "modules/api/Dockerfile"))
+    }
+
     @Test
     fun shouldMergeMiscTaskResults_eachResultIsOnSingleBranch() {
 
@@ -0,0 +1,106 @@
+package com.societegenerale.githubcrawler.output
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class AsyncFileWriterTest {
+
+    @TempDir
+    lateinit var tempDirectory: Path
+
+    @Test
+    fun shouldWriteWholeLinesFromConcurrentCallers() {
+
+        val outputFile = tempDirectory.resolve("output.csv")
+
+        // small queue and buffer, so that callers have to wait for the writer, and lines span several buffers
+        val writer = AsyncFileWriter(outputFile, queueCapacity = 4, bufferSize = 64)
+
+        val executor = Executors.newFixedThreadPool(8)
+
+        for (thread in 1..8) {
+            executor.submit {
+                for (line in 1..100) {
+                    writer.write("thread$thread;line$line;" + "x".repeat(thread * 10) + System.lineSeparator())
+                }
+            }
+        }
+
+        executor.shutdown()
+        executor.awaitTermination(30, TimeUnit.SECONDS)
+
+        writer.close()
+
+        val lines = Files.readAllLines(outputFile)
+
+        assertThat(lines).hasSize(800)
+        assertThat(lines).allMatch { it.matches(Regex("thread(\\d);line\\d+;x+")) && it.substringAfterLast(";").length == it[6].digitToInt() * 10 }
+
+        // lines of each caller are in the order they were written
+        assertThat(lines.filter { it.startsWith("thread3;") }.map { it.split(";")[1] }).isEqualTo((1..100).map { "line$it" })
+    }
+
+    @Test
+    fun shouldNotAcceptTextsOnceClosed() {
+
+        val writer = AsyncFileWriter(tempDirectory.resolve("output.txt"))
+
+        writer.write("some text")
+        writer.close()
+
+        assertThat(tempDirectory.resolve("output.txt")).hasContent("some text")
+        assertThatThrownBy { writer.write("some more text") }.isInstanceOf(IOException::class.java)
+    }
+
+    @Test
+    fun shouldWriteEveryAcceptedText_whenClosedWhileCallersAreWriting() {
+
+        val outputFile = tempDirectory.resolve("output.txt")
+
+        // small queue, so that some callers are waiting for room when the writer gets closed
+        val writer = AsyncFileWriter(outputFile, queueCapacity = 2, bufferSize = 64)
+
+        val executor = Executors.newFixedThreadPool(8)
+        val firstTextsWritten = CountDownLatch(8)
+
+        val acceptedTextsByCaller = (1..8).map { caller ->
+            executor.submit(Callable {
+
+                var nbAcceptedTexts = 0
+
+                try {
+                    while (true) {
+                        writer.write("caller$caller" + System.lineSeparator())
+                        nbAcceptedTexts++
+
+                        if (nbAcceptedTexts == 1) {
+                            firstTextsWritten.countDown()
+                        }
+                    }
+                } catch (e: IOException) {
+                    // writer is closed
+                }
+
+                nbAcceptedTexts
+            })
+        }
+
+        firstTextsWritten.await(10, TimeUnit.SECONDS)
+        writer.close()
+
+        executor.shutdown()
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue()
+
+        assertThat(Files.readAllLines(outputFile)).hasSize(acceptedTextsByCaller.sumOf { it.get() })
+    }
+
+}
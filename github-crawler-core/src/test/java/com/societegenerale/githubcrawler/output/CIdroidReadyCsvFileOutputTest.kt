@@ -32,6 +32,7 @@ class CIdroidReadyCsvFileOutputTest {
         cIdroidReadyCsvFileOutput.output(repo1);
         cIdroidReadyCsvFileOutput.output(repo2);
         cIdroidReadyCsvFileOutput.output(repo3);
+        cIdroidReadyCsvFileOutput.finalizeOutput()
 
         val expectedFileContent = "repositoryFullName;branchName;indic1;indic2;task1;task2" + System.lineSeparator() +
                 "orga/repo1;master;value1_forRepo1;value2_forRepo1;N/A;N/A;" + System.lineSeparator() +
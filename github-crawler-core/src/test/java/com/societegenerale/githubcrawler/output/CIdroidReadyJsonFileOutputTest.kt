@@ -0,0 +1,71 @@
+package com.societegenerale.githubcrawler.output
+
+import com.fasterxml.jackson.core.type.TypeReference
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+import java.nio.file.Files
+import java.nio.file.Paths
+import java.util.*
+
+class CIdroidReadyJsonFileOutputTest {
+
+    private val cIdroidReadyJsonFileOutput = CIdroidReadyJsonFileOutput(listOf("dockerfilePath", "pomPath"), withTags = true)
+
+    @AfterEach
+    fun cleanUp() {
+        Files.deleteIfExists(Paths.get(cIdroidReadyJsonFileOutput.finalOutputFileName))
+    }
+
+    @Test
+    fun shouldStreamOneResourcePerBranchInJsonArray() {
+
+        val repo1 = buildRepoWithIndicators("orga/repo1", mapOf(Pair(Branch("master"), mapOf(Pair("dockerfilePath", listOf("Dockerfile", "docker/Dockerfile")), Pair("pomPath", "pom.xml")))))
+        val repo2 = buildRepoWithIndicators("orga/repo2", mapOf(Pair(Branch("master"), mapOf(Pair("dockerfilePath", "Dockerfile"))),
+                                                                Pair(Branch("develop"), mapOf(Pair("dockerfilePath", "some \"quoted\" path")))))
+
+        cIdroidReadyJsonFileOutput.output(repo1)
+        cIdroidReadyJsonFileOutput.output(repo2)
+        cIdroidReadyJsonFileOutput.finalizeOutput()
+
+        val generatedFile = Paths.get(cIdroidReadyJsonFileOutput.finalOutputFileName)
+
+        assertThat(Files.readAllLines(generatedFile)).hasSize(5).startsWith("[").endsWith("]")
+
+        val resources = ObjectMapper().readValue(generatedFile.toFile(), object : TypeReference<List<Map<String, String>>>() {})
+
+        assertThat(resources).hasSize(3)
+        assertThat(resources[0]).containsOnly(entry("repoFullName", "orga/repo1"),
+                                              entry("filePathOnRepo", "Dockerfile"),
+                                              entry("otherIndicator1", "pom.xml"),
+                                              entry("tags", "[]"),
+                                              entry("branchName", "master"))
+        assertThat(resources.map { it["filePathOnRepo"] }).containsExactlyInAnyOrder("Dockerfile", "Dockerfile", "some \"quoted\" path")
+    }
+
+    @Test
+    fun shouldGenerateEmptyJsonArray_whenNoRepositoryIsOutput() {
+
+        cIdroidReadyJsonFileOutput.finalizeOutput()
+
+        assertThat(ObjectMapper().readValue(Paths.get(cIdroidReadyJsonFileOutput.finalOutputFileName).toFile(), List::class.java)).isEmpty()
+    }
+
+    private fun buildRepoWithIndicators(fullName: String, indicators: Map<Branch, Map<String, Any>>): Repository {
+
+        return Repository(name = "dummyRepo",
+                creationDate = Date(),
+                config = null,
+                defaultBranch = "master",
+                fullName = fullName,
+                lastUpdateDate = Date(),
+                reason = null,
+                url = "http://hello",
+                indicators = indicators)
+    }
+
+}
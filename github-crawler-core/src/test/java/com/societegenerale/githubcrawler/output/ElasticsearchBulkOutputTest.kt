@@ -0,0 +1,159 @@
+package com.societegenerale.githubcrawler.output
+
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.jayway.awaitility.Awaitility.await
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import com.sun.net.httpserver.HttpServer
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.web.client.RestTemplate
+import java.net.InetSocketAddress
+import java.time.Duration
+import java.time.LocalDate
+import java.util.*
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+class ElasticsearchBulkOutputTest {
+
+    private val receivedRequests = CopyOnWriteArrayList<List<String>>()
+
+    private val receivedContentTypes = CopyOnWriteArrayList<String>()
+
+    // status of each document, for the next responses - documents are accepted once there's none left
+    private val nextDocumentStatuses = ConcurrentLinkedQueue<List<Int>>()
+
+    // raw bodies of the next responses, instead of a bulk result
+    private val nextRawResponses = ConcurrentLinkedQueue<String>()
+
+    private val server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+
+    @BeforeEach
+    fun startServer() {
+
+        server.createContext("/crawler-2019-01/_bulk") { exchange ->
+
+            val lines = String(exchange.requestBody.readBytes()).lines().filter { it.isNotEmpty() }
+            receivedRequests.add(lines)
+            receivedContentTypes.add(exchange.requestHeaders.getFirst("Content-Type"))
+
+            val body = nextRawResponses.poll()?.toByteArray() ?: bulkResult(nextDocumentStatuses.poll() ?: List(lines.size / 2) { 201 })
+
+            exchange.sendResponseHeaders(200, body.size.toLong())
+            exchange.responseBody.write(body)
+            exchange.close()
+        }
+
+        server.start()
+    }
+
+    @AfterEach
+    fun stopServer() {
+        server.stop(0)
+    }
+
+    private fun bulkResult(statuses: List<Int>): ByteArray {
+
+        val items = statuses.joinToString(",") { status -> "{\"index\": {\"_index\": \"crawler-2019-01\", \"status\": $status}}" }
+
+        return "{\"took\": 3, \"errors\": ${statuses.any { it != 201 }}, \"items\": [$items]}".toByteArray()
+    }
+
+    private fun newOutput(maxDocumentsPerBatch: Int = 500, flushInterval: Duration = Duration.ofMinutes(1)) =
+        ElasticsearchBulkOutput("http://localhost:${server.address.port}/crawler-{yyyy-MM}/", RestTemplate(),
+                                maxDocumentsPerBatch = maxDocumentsPerBatch,
+                                flushInterval = flushInterval,
+                                retryBackoff = Duration.ofMillis(10),
+                                currentLocalDate = LocalDate.of(2019, 1, 25))
+
+    private fun repository(name: String, vararg branches: String) = Repository(name = name,
+                                                                                creationDate = Date(),
+                                                                                defaultBranch = "master",
+                                                                                fullName = "orgName/$name",
+                                                                                lastUpdateDate = Date(),
+                                                                                url = "http://hello",
+                                                                                branchesToParse = branches.map { Branch(it) }.toSet())
+
+    private fun documentNames(request: List<String>) = request.filterIndexed { index, _ -> index % 2 == 1 }
+                                                              .map { jacksonObjectMapper().readTree(it) }
+                                                              .map { it.get("name").asText() + "/" + it.get("branchName").asText() }
+
+    @Test
+    fun shouldSendDocumentsOfAllBranchesByBatches() {
+
+        val output = newOutput(maxDocumentsPerBatch = 2)
+
+        output.output(repository("repo1", "master", "develop"))
+        output.output(repository("repo2", "master"))
+
+        output.finalizeOutput()
+
+        assertThat(receivedRequests).hasSize(2)
+        assertThat(receivedRequests.flatMap { documentNames(it) }).containsExactlyInAnyOrder("repo1/master", "repo1/develop", "repo2/master")
+        assertThat(receivedRequests.flatten().filterIndexed { index, _ -> index % 2 == 0 }).containsOnly("{\"index\":{}}")
+        assertThat(receivedContentTypes).allMatch { it.startsWith("application/x-ndjson") }
+    }
+
+    @Test
+    fun shouldSendAgainOnlyTheDocumentsRejectedBecauseElasticsearchIsOverloaded() {
+
+        nextDocumentStatuses.add(listOf(201, 429, 400))
+
+        val output = newOutput()
+
+        output.output(repository("repo1", "master"))
+        output.output(repository("repo2", "master"))
+        output.output(repository("repo3", "master"))
+
+        output.finalizeOutput()
+
+        assertThat(receivedRequests).hasSize(2)
+        assertThat(documentNames(receivedRequests[0])).containsExactly("repo1/master", "repo2/master", "repo3/master")
+        assertThat(documentNames(receivedRequests[1])).containsExactly("repo2/master")
+    }
+
+    @Test
+    fun shouldSendPendingDocumentsWithoutWaitingForTheBatchToBeFull() {
+
+        val output = newOutput(flushInterval = Duration.ofMillis(100))
+
+        output.output(repository("repo1", "master"))
+
+        await().atMost(5, TimeUnit.SECONDS).until({ assertThat(receivedRequests).hasSize(1) })
+
+        output.finalizeOutput()
+
+        assertThat(receivedRequests).hasSize(1)
+        assertThat(documentNames(receivedRequests[0])).containsExactly("repo1/master")
+    }
+
+    @Test
+    fun shouldKeepSendingBatches_whenAResponseIsNotJson() {
+
+        val uncaughtExceptions = CopyOnWriteArrayList<Throwable>()
+        val defaultHandler = Thread.getDefaultUncaughtExceptionHandler()
+        Thread.setDefaultUncaughtExceptionHandler { _, e -> uncaughtExceptions.add(e) }
+
+        try {
+            // like a proxy answering with its own page
+            nextRawResponses.add("<html><body>Welcome</body></html>")
+
+            val output = newOutput(maxDocumentsPerBatch = 1)
+
+            output.output(repository("repo1", "master"))
+            output.output(repository("repo2", "master"))
+
+            output.finalizeOutput()
+
+            assertThat(receivedRequests.flatMap { documentNames(it) }).containsExactlyInAnyOrder("repo1/master", "repo2/master")
+            assertThat(uncaughtExceptions).isEmpty()
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler)
+        }
+    }
+
+}
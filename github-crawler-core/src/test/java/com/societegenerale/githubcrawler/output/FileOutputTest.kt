@@ -56,6 +56,7 @@ class FileOutputTest{
 
         fileOutput.output(repoToOutput1)
         fileOutput.output(repoToOutput2)
+        fileOutput.finalizeOutput()
 
         val resources = resolver.getResources("file:target/somePrfix*.txt") // yields empty array
 
@@ -69,10 +70,10 @@ class FileOutputTest{
         assertThat(lines[0]).startsWith("OUTPUT FOR GitHub crawler - ");
 
         assertThat(lines[1]).startsWith("Repository(url=http://hello, name=repo1, defaultBranch=master, creationDate=")
-        assertThat(lines[1]).contains(", excluded=false, config=null, reason=null, skipped=false, fullName=orgName/repoName1, indicators={}, branchesToParse=[], tags=[], groups=[], crawlerRunId=NO_CRAWLER_RUN_ID_DEFINED, miscTasksResults={}, topics=[])")
+        assertThat(lines[1]).contains(", excluded=false, config=null, reason=null, skipped=false, fullName=orgName/repoName1, indicators={}, branchesToParse=[], tags=[], groups=[], crawlerRunId=NO_CRAWLER_RUN_ID_DEFINED, miscTasksResults={}, topics=[], lastPushDate=null)")
 
         assertThat(lines[2]).startsWith("Repository(url=http://hello2, name=repo2, defaultBranch=master, creationDate=")
-        assertThat(lines[2]).endsWith(", excluded=false, config=null, reason=null, skipped=false, fullName=orgName/repoName2, indicators={}, branchesToParse=[], tags=[], groups=[], crawlerRunId=NO_CRAWLER_RUN_ID_DEFINED, miscTasksResults={}, topics=[])")
+        assertThat(lines[2]).endsWith(", excluded=false, config=null, reason=null, skipped=false, fullName=orgName/repoName2, indicators={}, branchesToParse=[], tags=[], groups=[], crawlerRunId=NO_CRAWLER_RUN_ID_DEFINED, miscTasksResults={}, topics=[], lastPushDate=null)")
 
     }
 
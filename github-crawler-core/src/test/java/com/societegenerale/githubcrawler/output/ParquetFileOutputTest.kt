@@ -0,0 +1,105 @@
+package com.societegenerale.githubcrawler.output
+
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import org.apache.hadoop.conf.Configuration
+import org.apache.parquet.example.data.Group
+import org.apache.parquet.hadoop.ParquetFileReader
+import org.apache.parquet.hadoop.ParquetReader
+import org.apache.parquet.hadoop.example.GroupReadSupport
+import org.apache.parquet.hadoop.util.HadoopInputFile
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.util.*
+
+class ParquetFileOutputTest {
+
+    @TempDir
+    lateinit var outputDirectory: Path
+
+    private fun newOutput(rowGroupSize: Long = ParquetFileOutput.DEFAULT_ROW_GROUP_SIZE) =
+        ParquetFileOutput(outputDirectory.resolve("crawl").toString(), listOf("springBootVersion", "dockerImage", "nbOpenPRs"), rowGroupSize)
+
+    private fun repository(name: String, indicators: Map<Branch, Map<String, Any>>, miscTasksResults: Map<Branch, Map<String, Any>> = emptyMap()) =
+        Repository(name = name,
+                   creationDate = Date(1000),
+                   defaultBranch = "master",
+                   fullName = "orga/$name",
+                   lastUpdateDate = Date(2000),
+                   url = "http://hello",
+                   indicators = indicators,
+                   miscTasksResults = miscTasksResults,
+                   tags = listOf("tag1", "tag2"),
+                   crawlerRunId = "20190125_101010")
+
+    private fun readRows(file: String): List<Group> {
+
+        val rows = ArrayList<Group>()
+
+        ParquetReader.builder(GroupReadSupport(), org.apache.hadoop.fs.Path(file)).build().use { reader ->
+            generateSequence { reader.read() }.forEach { rows.add(it) }
+        }
+
+        return rows
+    }
+
+    @Test
+    fun shouldWriteOneRowPerBranch_withOneColumnPerIndicator() {
+
+        val output = newOutput()
+
+        output.output(repository("repo1", mapOf(Pair(Branch("master"), mapOf(Pair("springBootVersion", "2.7.5"), Pair("dockerImage", "openjdk:17"))),
+                                                Pair(Branch("develop"), mapOf(Pair("springBootVersion", "3.0.0")))),
+                                  miscTasksResults = mapOf(Pair(Branch("master"), mapOf(Pair("nbOpenPRs", 3))))))
+        output.output(repository("repo2", mapOf(Pair(Branch("master"), mapOf(Pair("dockerImage", "openjdk:11"), Pair("notConfigured", "someValue"))))))
+
+        output.finalizeOutput()
+
+        val rows = readRows(output.finalOutputFileName)
+
+        assertThat(rows).hasSize(3)
+
+        val repo1Master = rows.first { it.getString("repositoryFullName", 0) == "orga/repo1" && it.getString("branchName", 0) == "master" }
+        assertThat(repo1Master.getString("repositoryName", 0)).isEqualTo("repo1")
+        assertThat(repo1Master.getLong("creationDate", 0)).isEqualTo(1000)
+        assertThat(repo1Master.getLong("lastUpdateDate", 0)).isEqualTo(2000)
+        assertThat(repo1Master.getString("crawlerRunId", 0)).isEqualTo("20190125_101010")
+        assertThat(repo1Master.getString("springBootVersion", 0)).isEqualTo("2.7.5")
+        assertThat(repo1Master.getString("dockerImage", 0)).isEqualTo("openjdk:17")
+        assertThat(repo1Master.getString("nbOpenPRs", 0)).isEqualTo("3")
+
+        val tags = repo1Master.getGroup("tags", 0)
+        assertThat((0 until tags.getFieldRepetitionCount(0)).map { tags.getGroup(0, it).getString("element", 0) }).containsExactly("tag1", "tag2")
+
+        // missing values are null
+        val repo2Master = rows.first { it.getString("repositoryFullName", 0) == "orga/repo2" }
+        assertThat(repo2Master.getFieldRepetitionCount("springBootVersion")).isEqualTo(0)
+        assertThat(repo2Master.getString("dockerImage", 0)).isEqualTo("openjdk:11")
+        assertThat(repo2Master.type.containsField("notConfigured")).isFalse()
+    }
+
+    @Test
+    fun shouldWriteRowGroupsAsRepositoriesGetProcessed_withDictionaryEncodedIndicators() {
+
+        val output = newOutput(rowGroupSize = 1024)
+
+        for (i in 1..1000) {
+            output.output(repository("repo$i", mapOf(Pair(Branch("master"), mapOf(Pair("springBootVersion", "2.7.${i % 3}"))))))
+        }
+
+        output.finalizeOutput()
+
+        assertThat(readRows(output.finalOutputFileName)).hasSize(1000)
+
+        ParquetFileReader.open(HadoopInputFile.fromPath(org.apache.hadoop.fs.Path(output.finalOutputFileName), Configuration())).use { reader ->
+
+            assertThat(reader.footer.blocks.size).isGreaterThan(1)
+
+            val springBootVersionColumn = reader.footer.blocks[0].columns.first { it.path.toDotString() == "springBootVersion" }
+            assertThat(springBootVersionColumn.encodingStats.hasDictionaryEncodedPages()).isTrue()
+        }
+    }
+
+}
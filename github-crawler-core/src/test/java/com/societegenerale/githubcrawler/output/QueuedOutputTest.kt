@@ -0,0 +1,129 @@
+package com.societegenerale.githubcrawler.output
+
+import com.societegenerale.githubcrawler.BackpressurePolicy
+import com.societegenerale.githubcrawler.model.Branch
+import com.societegenerale.githubcrawler.model.Repository
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class QueuedOutputTest {
+
+    @TempDir
+    lateinit var spillDirectory: Path
+
+    private val slowOutput = SlowOutput()
+
+    private fun repository(name: String) = Repository(name = name,
+                                                      creationDate = Date(),
+                                                      defaultBranch = "master",
+                                                      fullName = "orgName/$name",
+                                                      lastUpdateDate = Date(),
+                                                      url = "http://hello",
+                                                      branchesToParse = setOf(Branch("master")),
+                                                      indicators = mapOf(Pair(Branch("master"), mapOf(Pair("springBootVersion", "2.7.5")))),
+                                                      tags = listOf("tag1"))
+
+    /**
+     * hands over repo1, and waits for the output to be stuck on it, so that the next repositories stay in the queue
+     */
+    private fun outputWhileOutputIsStuck(queuedOutput: QueuedOutput, vararg repositoryNames: String) {
+
+        queuedOutput.output(repository("repo1"))
+        assertThat(slowOutput.publishingStarted.await(5, TimeUnit.SECONDS)).isTrue()
+
+        repositoryNames.forEach { queuedOutput.output(repository(it)) }
+    }
+
+    @Test
+    fun shouldPublishFromItsOwnThread_withoutMakingTheCrawlWait() {
+
+        val queuedOutput = QueuedOutput(slowOutput, 10)
+
+        outputWhileOutputIsStuck(queuedOutput, "repo2", "repo3")
+
+        assertThat(slowOutput.publishedRepositories).isEmpty()
+
+        slowOutput.canPublish.countDown()
+        queuedOutput.finalizeOutput()
+
+        assertThat(slowOutput.publishedRepositories.map { it.name }).containsExactly("repo1", "repo2", "repo3")
+        assertThat(slowOutput.publishingThreads).containsOnly("output-SlowOutput")
+        assertThat(slowOutput.finalized).isTrue()
+
+        val stats = queuedOutput.stats()
+        assertThat(stats.nbPublished).isEqualTo(3)
+        assertThat(stats.maxQueueDepth).isEqualTo(2)
+        assertThat(stats.queueDepth).isEqualTo(0)
+    }
+
+    @Test
+    fun shouldDropRepositoriesThatDontFitInTheQueue_whenConfiguredTo() {
+
+        val queuedOutput = QueuedOutput(slowOutput, 2, BackpressurePolicy.DROP)
+
+        outputWhileOutputIsStuck(queuedOutput, "repo2", "repo3", "repo4", "repo5")
+
+        slowOutput.canPublish.countDown()
+        queuedOutput.finalizeOutput()
+
+        assertThat(slowOutput.publishedRepositories.map { it.name }).containsExactly("repo1", "repo2", "repo3")
+        assertThat(queuedOutput.stats().nbDropped).isEqualTo(2)
+    }
+
+    @Test
+    fun shouldPublishRepositoriesSpilledToDisk_onceOutputHasCaughtUp() {
+
+        val queuedOutput = QueuedOutput(slowOutput, 2, BackpressurePolicy.SPILL_TO_DISK, spillDirectory)
+
+        outputWhileOutputIsStuck(queuedOutput, "repo2", "repo3", "repo4", "repo5")
+
+        assertThat(spillDirectory.toFile().list()).hasSize(1)
+
+        slowOutput.canPublish.countDown()
+        queuedOutput.finalizeOutput()
+
+        assertThat(slowOutput.publishedRepositories.map { it.name }).containsExactlyInAnyOrder("repo1", "repo2", "repo3", "repo4", "repo5")
+
+        val spilledRepository = slowOutput.publishedRepositories.first { it.name == "repo5" }
+        assertThat(spilledRepository.indicators).containsOnly(entry(Branch("master"), mapOf(Pair("springBootVersion", "2.7.5"))))
+        assertThat(spilledRepository.tags).containsExactly("tag1")
+        assertThat(spilledRepository.fullName).isEqualTo("orgName/repo5")
+
+        assertThat(queuedOutput.stats().nbSpilled).isEqualTo(2)
+        assertThat(queuedOutput.stats().maxQueueDepth).isEqualTo(4)
+        assertThat(spillDirectory).isEmptyDirectory()
+    }
+
+    class SlowOutput : GitHubCrawlerOutput {
+
+        val publishingStarted = CountDownLatch(1)
+
+        val canPublish = CountDownLatch(1)
+
+        val publishedRepositories: MutableList<Repository> = Collections.synchronizedList(ArrayList())
+
+        val publishingThreads: MutableSet<String> = Collections.synchronizedSet(HashSet())
+
+        var finalized = false
+
+        override fun output(analyzedRepository: Repository) {
+
+            publishingStarted.countDown()
+            canPublish.await()
+
+            publishedRepositories.add(analyzedRepository)
+            publishingThreads.add(Thread.currentThread().name)
+        }
+
+        override fun finalizeOutput() {
+            finalized = true
+        }
+    }
+
+}
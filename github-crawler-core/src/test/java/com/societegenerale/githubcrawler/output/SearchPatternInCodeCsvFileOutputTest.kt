@@ -27,6 +27,7 @@ class SearchPatternInCodeCsvFileOutputTest{
         searchPatternInCodeCsvFileOutput.output(repo1);
         searchPatternInCodeCsvFileOutput.output(repo2);
         searchPatternInCodeCsvFileOutput.output(repo3);
+        searchPatternInCodeCsvFileOutput.finalizeOutput()
 
         val expectedFileContent="repositoryFullName;location"+System.lineSeparator()+
                                 "orga/repo1;repo1/path1;"+System.lineSeparator()+
@@ -6,6 +6,8 @@ import org.apache.commons.io.FileUtils
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.Test
 import org.springframework.util.ResourceUtils
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 
 class CountXmlElementsParserTest {
 
@@ -41,4 +43,30 @@ class CountXmlElementsParserTest {
         assertThat(result.get("nbModules")).isEqualTo("issue while parsing the file")
     }
 
-}
\ No newline at end of file
+    @Test
+    fun should_resolve_prefixes_with_the_namespaces_of_each_document_when_evaluated_concurrently() {
+
+        // same prefix, bound to a different namespace in each document
+        val documentWithTwoItems = "<root xmlns:ns=\"urn:first\"><ns:item/><ns:item/></root>"
+        val documentWithOneItem = "<root xmlns:ns=\"urn:second\"><ns:item/><other/></root>"
+
+        val nbItemsIndicator = IndicatorDefinition("nbItems", CountXmlElementsParser.COUNT_XML_ELEMENTS_METHOD, mapOf(Pair(XPATH_TO_MATCH, "//ns:item")))
+
+        val executor = Executors.newFixedThreadPool(4)
+
+        try {
+            val counts = executor.invokeAll((1..200).map { i ->
+                Callable {
+                    val document = if (i % 2 == 0) documentWithTwoItems else documentWithOneItem
+                    Pair(i % 2 == 0, countXmlElementsParser.parseFileContentForIndicator(document, "", nbItemsIndicator)["nbItems"])
+                }
+            }).map { it.get() }
+
+            assertThat(counts.filter { it.first }.map { it.second }).containsOnly("2")
+            assertThat(counts.filter { !it.first }.map { it.second }).containsOnly("1")
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+}
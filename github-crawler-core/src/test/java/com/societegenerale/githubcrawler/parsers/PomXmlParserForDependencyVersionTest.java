@@ -3,10 +3,12 @@ package com.societegenerale.githubcrawler.parsers;
 import static com.societegenerale.githubcrawler.parsers.PomXmlParserForDependencyVersion.ARTIFACT_ID;
 import static com.societegenerale.githubcrawler.parsers.PomXmlParserForDependencyVersion.FIND_DEPENDENCY_VERSION_IN_XML_METHOD;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 import com.societegenerale.githubcrawler.IndicatorDefinition;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -18,6 +20,7 @@ class PomXmlParserForDependencyVersionTest {
 
     final String indicatorName = "someIndicatorName";
     String pomXmlSnippet;
+    String pomXmlWithBuildSectionSnippet;
     Map<String, String> params = new HashMap<>();
     IndicatorDefinition pomXmlDependencyVersion = new IndicatorDefinition(indicatorName,FIND_DEPENDENCY_VERSION_IN_XML_METHOD,params);
     PomXmlParserForDependencyVersion fileContentParser = new PomXmlParserForDependencyVersion();
@@ -26,6 +29,7 @@ class PomXmlParserForDependencyVersionTest {
     public void setup() throws IOException {
 
         pomXmlSnippet =  FileUtils.readFileToString(ResourceUtils.getFile("classpath:sample_pom.xml"),"UTF-8");
+        pomXmlWithBuildSectionSnippet =  FileUtils.readFileToString(ResourceUtils.getFile("classpath:sample_pom_with_build_section.xml"),"UTF-8");
 
     }
 
@@ -46,13 +50,45 @@ class PomXmlParserForDependencyVersionTest {
     }
 
     @Test
-    void shouldReport_versionNotFound_WhenArtifactIsFoundButNoeTheVersion() throws Exception {
+    void shouldReportVersionEvenWhenDeclaredBeforeArtifactId() throws Exception {
 
         Map<String, String> indicatorsFound = parseSamplePomXmlForArtifactId("weird-artifact-with-version-declared-before");
 
+        assertThat(indicatorsFound).containsEntry(indicatorName,"2.9.2");
+    }
+
+    @Test
+    void shouldReport_versionNotFound_WhenArtifactIsFoundButNotTheVersion() {
+
+        pomXmlWithBuildSectionSnippet = pomXmlWithBuildSectionSnippet.replace("<version>${project.version}</version>", "");
+
+        Map<String, String> indicatorsFound = parsePomXmlWithBuildSectionForArtifactId("some-sibling-module");
+
         assertThat(indicatorsFound).containsEntry(indicatorName,"artifact found, but not the version");
     }
 
+    @Test
+    void shouldFindVersionsInDependencyManagementAndPlugins() {
+
+        assertThat(parsePomXmlWithBuildSectionForArtifactId("some-sibling-module")).containsEntry(indicatorName,"2.1.0");
+        assertThat(parsePomXmlWithBuildSectionForArtifactId("httpclient")).containsEntry(indicatorName,"4.5.13");
+        assertThat(parsePomXmlWithBuildSectionForArtifactId("kotlin-maven-plugin")).containsEntry(indicatorName,"1.8.10");
+        assertThat(parsePomXmlWithBuildSectionForArtifactId("some-parent")).containsEntry(indicatorName,"2.1.0");
+        assertThat(parsePomXmlWithBuildSectionForArtifactId("some-library-with-undefined-version")).containsEntry(indicatorName,"${undefined.version} not found in properties section");
+
+        // excluded artifacts are not dependencies
+        assertThat(parsePomXmlWithBuildSectionForArtifactId("commons-logging")).containsEntry(indicatorName,"not found");
+    }
+
+    @Test
+    void shouldReportErrorForInvalidXml_butVersionsFoundBeforeTheError() {
+
+        pomXmlSnippet = pomXmlSnippet.replace("</dependencies>", "</dependencie>");
+
+        assertThat(parseSamplePomXmlForArtifactId("spring-boot-starter-parent")).containsEntry(indicatorName,"1.5.9.RELEASE");
+        assertThat(parseSamplePomXmlForArtifactId("spring-not-found-parent").get(indicatorName)).startsWith("error while processing");
+    }
+
     @Test
     void shouldReportVersionEvenWhenDefinedAsProperty() throws Exception {
 
@@ -61,6 +97,30 @@ class PomXmlParserForDependencyVersionTest {
         assertThat(indicatorsFound).containsEntry(indicatorName,"2.9.2");
     }
 
+    @Test
+    void shouldFindAllIndicatorsInOnePass() {
+
+        List<IndicatorDefinition> indicators = List.of(
+                new IndicatorDefinition("parentVersion", FIND_DEPENDENCY_VERSION_IN_XML_METHOD, Map.of(ARTIFACT_ID, "spring-boot-starter-parent")),
+                new IndicatorDefinition("jacksonVersion", FIND_DEPENDENCY_VERSION_IN_XML_METHOD, Map.of(ARTIFACT_ID, "jackson-dataformat-yaml")),
+                new IndicatorDefinition("weirdVersion", FIND_DEPENDENCY_VERSION_IN_XML_METHOD, Map.of(ARTIFACT_ID, "weird-artifact-with-version-declared-before")),
+                new IndicatorDefinition("unknownVersion", FIND_DEPENDENCY_VERSION_IN_XML_METHOD, Map.of(ARTIFACT_ID, "spring-not-found-parent")));
+
+        Map<String, String> indicatorsFound = fileContentParser.parseFileContentForIndicators(pomXmlSnippet, StringUtils.EMPTY, indicators);
+
+        assertThat(indicatorsFound).containsOnly(entry("parentVersion", "1.5.9.RELEASE"),
+                                                 entry("jacksonVersion", "2.9.2"),
+                                                 entry("weirdVersion", "2.9.2"),
+                                                 entry("unknownVersion", "not found"));
+    }
+
+    private Map<String, String> parsePomXmlWithBuildSectionForArtifactId(String artifactId) {
+        params.put(ARTIFACT_ID, artifactId);
+        pomXmlDependencyVersion.setParams(params);
+
+        return fileContentParser.parseFileContentForIndicator(pomXmlWithBuildSectionSnippet, StringUtils.EMPTY, pomXmlDependencyVersion);
+    }
+
     private Map<String, String> parseSamplePomXmlForArtifactId(String artifactId) {
         params.put(ARTIFACT_ID, artifactId);
         pomXmlDependencyVersion.setParams(params);
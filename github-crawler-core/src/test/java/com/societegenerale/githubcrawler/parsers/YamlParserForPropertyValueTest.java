@@ -3,10 +3,12 @@ package com.societegenerale.githubcrawler.parsers;
 import static com.societegenerale.githubcrawler.parsers.YamlParserForPropertyValue.FIND_PROPERTY_VALUE_IN_YAML;
 import static com.societegenerale.githubcrawler.parsers.YamlParserForPropertyValue.PROPERTY_NAME;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 import com.societegenerale.githubcrawler.IndicatorDefinition;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -91,6 +93,21 @@ class YamlParserForPropertyValueTest {
         assertThat(indicatorsFound.get(indicatorName)).startsWith("issue while parsing ");
     }
 
+    @Test
+    void canFindSeveralPropertiesInSameFile() {
+
+        List<IndicatorDefinition> indicators = List.of(
+                new IndicatorDefinition("simple", FIND_PROPERTY_VALUE_IN_YAML, Map.of(PROPERTY_NAME, "interesting.property")),
+                new IndicatorDefinition("nested", FIND_PROPERTY_VALUE_IN_YAML, Map.of(PROPERTY_NAME, "interesting.nested.property")),
+                new IndicatorDefinition("inSecondDocument", FIND_PROPERTY_VALUE_IN_YAML, Map.of(PROPERTY_NAME, "server.ssl.key-store")));
+
+        Map<String, String> indicatorsFound = fileContentParser.parseFileContentForIndicators(yamlFileSnippet, StringUtils.EMPTY, indicators);
+
+        assertThat(indicatorsFound).containsOnly(entry("simple", "myExpectedValue"),
+                                                 entry("nested", "myExpectedNestedValue"),
+                                                 entry("inSecondDocument", "hello"));
+    }
+
     private Map<String, String> parseSampleYamlForProperty(String propertyName) {
         params.put(PROPERTY_NAME, propertyName);
         pomXmlDependencyVersion.setParams(params);
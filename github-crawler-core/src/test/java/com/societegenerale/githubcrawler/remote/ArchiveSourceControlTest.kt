@@ -0,0 +1,140 @@
+package com.societegenerale.githubcrawler.remote
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.entry
+import org.junit.jupiter.api.Test
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPOutputStream
+
+class ArchiveSourceControlTest {
+
+    private val mockDelegate = mock(RemoteSourceControl::class.java)
+
+    private val archiveSourceControl = ArchiveSourceControl(mockDelegate, setOf("pom.xml", "src/main/resources/application.yml", "Dockerfile"))
+
+    private fun tarball(vararg files: Pair<String, String>): ByteArrayInputStream {
+
+        val archive = ByteArrayOutputStream()
+
+        TarArchiveOutputStream(GZIPOutputStream(archive)).use { tar ->
+            files.forEach { (path, content) ->
+                val bytes = content.toByteArray(StandardCharsets.UTF_8)
+                val entry = TarArchiveEntry("myOrg-myRepo-1a2b3c4/$path")
+                entry.size = bytes.size.toLong()
+                tar.putArchiveEntry(entry)
+                tar.write(bytes)
+                tar.closeArchiveEntry()
+            }
+        }
+
+        return ByteArrayInputStream(archive.toByteArray())
+    }
+
+    @Test
+    fun shouldServeConfiguredFilesFromArchiveDownloadedOncePerBranch() {
+
+        `when`(mockDelegate.fetchArchive("myOrg/myRepo", "master")).thenReturn(tarball(Pair("pom.xml", "<project/>"),
+                                                                                        Pair("README.md", "not configured, so skipped"),
+                                                                                        Pair("src/main/resources/application.yml", "server.port: 8080")))
+
+        assertThat(archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "pom.xml")).isEqualTo("<project/>")
+        assertThat(archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "src/main/resources/application.yml")).isEqualTo("server.port: 8080")
+        assertThatThrownBy { archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "Dockerfile") }.isInstanceOf(NoFileFoundException::class.java)
+
+        verify(mockDelegate, times(1)).fetchArchive("myOrg/myRepo", "master")
+        verify(mockDelegate, never()).fetchFileContent(anyString(), anyString(), anyString())
+    }
+
+    @Test
+    fun shouldServeBatchOfFilesFromArchive() {
+
+        `when`(mockDelegate.fetchArchive("myOrg/myRepo", "master")).thenReturn(tarball(Pair("pom.xml", "<project/>")))
+
+        val pomXml = FileToFetch("myOrg/myRepo", "master", "pom.xml")
+        val dockerfile = FileToFetch("myOrg/myRepo", "master", "Dockerfile")
+
+        assertThat(archiveSourceControl.fetchFilesContent(listOf(pomXml, dockerfile))).containsOnly(entry(pomXml, "<project/>"), entry(dockerfile, null))
+    }
+
+    @Test
+    fun shouldFetchOtherFilesFromDelegate() {
+
+        `when`(mockDelegate.fetchFileContent("myOrg/myRepo", "master", "redirected/pom.xml")).thenReturn("<project/>")
+
+        assertThat(archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "redirected/pom.xml")).isEqualTo("<project/>")
+
+        verify(mockDelegate, never()).fetchArchive(anyString(), anyString())
+    }
+
+    @Test
+    fun shouldFetchFilesFromDelegate_whenArchiveIsNotAvailable() {
+
+        `when`(mockDelegate.fetchArchive("myOrg/myRepo", "master")).thenReturn(null)
+        `when`(mockDelegate.fetchFileContent("myOrg/myRepo", "master", "pom.xml")).thenReturn("<project/>")
+
+        assertThat(archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "pom.xml")).isEqualTo("<project/>")
+        assertThat(archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "pom.xml")).isEqualTo("<project/>")
+
+        verify(mockDelegate, times(1)).fetchArchive("myOrg/myRepo", "master")
+    }
+
+    @Test
+    fun shouldLetDelegateFetchInBatch_whenArchiveIsNotAvailable() {
+
+        val pomXml = FileToFetch("myOrg/myRepo", "master", "pom.xml")
+        val dockerfile = FileToFetch("myOrg/myRepo", "master", "Dockerfile")
+
+        `when`(mockDelegate.fetchArchive("myOrg/myRepo", "master")).thenReturn(null)
+        `when`(mockDelegate.fetchFilesContent(listOf(pomXml, dockerfile))).thenReturn(mapOf(pomXml to "<project/>"))
+
+        // Dockerfile is left to the caller, to fetch one by one
+        assertThat(archiveSourceControl.fetchFilesContent(listOf(pomXml, dockerfile))).containsOnly(entry(pomXml, "<project/>"))
+
+        verify(mockDelegate, never()).fetchFileContent(anyString(), anyString(), anyString())
+    }
+
+    @Test
+    fun shouldListFilesOfBranchFromArchive() {
+
+        `when`(mockDelegate.fetchArchive("myOrg/myRepo", "master")).thenReturn(tarball(Pair("pom.xml", "<project/>"),
+                                                                                        Pair("modules/api/Dockerfile", "FROM openjdk:17")))
+
+        val fileTree = archiveSourceControl.fetchFileTree("myOrg/myRepo", "master")!!
+
+        assertThat(fileTree.containsFile("pom.xml")).isTrue()
+        assertThat(fileTree.firstMatch("**/Dockerfile")).isEqualTo("modules/api/Dockerfile")
+        assertThat(fileTree.isMissing("src/main/resources/application.yml")).isTrue()
+
+        verify(mockDelegate, never()).fetchFileTree(anyString(), anyString())
+    }
+
+    @Test
+    fun shouldCloseArchive_whenItsNotAValidGzip() {
+
+        var closed = false
+
+        val notAnArchive = object : ByteArrayInputStream("<html>not found</html>".toByteArray(StandardCharsets.UTF_8)) {
+            override fun close() {
+                closed = true
+            }
+        }
+
+        `when`(mockDelegate.fetchArchive("myOrg/myRepo", "master")).thenReturn(notAnArchive)
+        `when`(mockDelegate.fetchFileContent("myOrg/myRepo", "master", "pom.xml")).thenReturn("<project/>")
+
+        assertThat(archiveSourceControl.fetchFileContent("myOrg/myRepo", "master", "pom.xml")).isEqualTo("<project/>")
+        assertThat(closed).isTrue()
+    }
+
+}
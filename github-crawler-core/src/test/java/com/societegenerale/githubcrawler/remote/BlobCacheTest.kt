@@ -0,0 +1,64 @@
+package com.societegenerale.githubcrawler.remote
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+
+class BlobCacheTest {
+
+    private val blobSha1 = "3e6e7ee5e8ce2b1bc8e4b5c6d0b2d2c1f0c6e9a4"
+    private val blobSha2 = "9b2f1f4c3a6e2d4b5c6e7f8091a2b3c4d5e6f708"
+    private val blobSha3 = "0c8e1b7a2f4d6e8a0b2c4d6e8f0a1b3c5d7e9f01"
+
+    @Test
+    fun shouldReturnCachedContent(@TempDir cacheDirectory: Path) {
+
+        val blobCache = BlobCache(cacheDirectory, 1024)
+
+        assertThat(blobCache.get(blobSha1)).isNull()
+
+        blobCache.put(blobSha1, "<project>é</project>")
+
+        assertThat(blobCache.get(blobSha1)).isEqualTo("<project>é</project>")
+        assertThat(blobCache.hits).isEqualTo(1)
+        assertThat(blobCache.misses).isEqualTo(1)
+    }
+
+    @Test
+    fun shouldEvictLeastRecentlyUsedBlobsWhenFull(@TempDir cacheDirectory: Path) {
+
+        val blobCache = BlobCache(cacheDirectory, 20)
+
+        blobCache.put(blobSha1, "0123456789")
+        blobCache.put(blobSha2, "0123456789")
+
+        // blob 1 is now the most recently used, so blob 2 gets evicted
+        blobCache.get(blobSha1)
+        blobCache.put(blobSha3, "0123456789")
+
+        assertThat(blobCache.get(blobSha1)).isNotNull()
+        assertThat(blobCache.get(blobSha2)).isNull()
+        assertThat(blobCache.get(blobSha3)).isNotNull()
+        assertThat(cacheDirectory.resolve(blobSha2)).doesNotExist()
+    }
+
+    @Test
+    fun shouldKeepBlobsFromOneRunToTheNext(@TempDir cacheDirectory: Path) {
+
+        BlobCache(cacheDirectory, 1024).put(blobSha1, "someContent")
+
+        assertThat(BlobCache(cacheDirectory, 1024).get(blobSha1)).isEqualTo("someContent")
+    }
+
+    @Test
+    fun shouldIgnoreInvalidBlobSha(@TempDir cacheDirectory: Path) {
+
+        val blobCache = BlobCache(cacheDirectory, 1024)
+
+        blobCache.put("../somewhereElse", "someContent")
+
+        assertThat(blobCache.get("../somewhereElse")).isNull()
+        assertThat(cacheDirectory.parent.resolve("somewhereElse")).doesNotExist()
+    }
+}
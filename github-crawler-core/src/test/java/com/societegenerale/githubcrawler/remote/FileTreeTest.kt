@@ -0,0 +1,60 @@
+package com.societegenerale.githubcrawler.remote
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+class FileTreeTest {
+
+    private val fileTree = FileTree()
+
+    init {
+        fileTree.addFile("pom.xml", "sha1")
+        fileTree.addFile("Dockerfile", "sha2")
+        fileTree.addFile("src/main/resources/application.yml", "sha3")
+        fileTree.addFile("src/main/resources/application-prod.yml", "sha4")
+        fileTree.addFile("module-b/pom.xml", "sha5")
+        fileTree.addFile("module-a/pom.xml", "sha6")
+        fileTree.addFile("module-a/docker/Dockerfile", "sha7")
+        fileTree.addFile("link-to-pom.xml", null)
+    }
+
+    @Test
+    fun shouldKnowWhichFilesExist() {
+
+        assertThat(fileTree.nbFiles).isEqualTo(8)
+
+        assertThat(fileTree.containsFile("src/main/resources/application.yml")).isTrue()
+        assertThat(fileTree.blobSha("src/main/resources/application.yml")).isEqualTo("sha3")
+
+        // directories are not files
+        assertThat(fileTree.containsFile("src/main")).isFalse()
+        assertThat(fileTree.isMissing("src/main")).isTrue()
+        assertThat(fileTree.isMissing("build.gradle")).isTrue()
+
+        assertThat(fileTree.containsFile("link-to-pom.xml")).isTrue()
+        assertThat(fileTree.blobSha("link-to-pom.xml")).isNull()
+    }
+
+    @Test
+    fun shouldNotConsiderFilesAsMissing_whenTreeIsIncomplete() {
+
+        val incompleteTree = FileTree(isComplete = false)
+        incompleteTree.addFile("pom.xml", "sha1")
+
+        assertThat(incompleteTree.isMissing("build.gradle")).isFalse()
+    }
+
+    @Test
+    fun shouldFindShallowestFileMatchingGlob() {
+
+        assertThat(fileTree.firstMatch("**/pom.xml")).isEqualTo("pom.xml")
+        assertThat(fileTree.firstMatch("*/pom.xml")).isEqualTo("module-a/pom.xml")
+        assertThat(fileTree.firstMatch("**/docker/Dockerfile")).isEqualTo("module-a/docker/Dockerfile")
+        assertThat(fileTree.firstMatch("src/**/application-*.yml")).isEqualTo("src/main/resources/application-prod.yml")
+        assertThat(fileTree.firstMatch("src/main/resources/application{-dev,-prod}.yml")).isEqualTo("src/main/resources/application-prod.yml")
+        assertThat(fileTree.firstMatch("module-[!a]/pom.xml")).isEqualTo("module-b/pom.xml")
+        assertThat(fileTree.firstMatch("module-?/*.gradle")).isNull()
+        assertThat(fileTree.firstMatch("unknownDirectory/**/pom.xml")).isNull()
+    }
+
+}
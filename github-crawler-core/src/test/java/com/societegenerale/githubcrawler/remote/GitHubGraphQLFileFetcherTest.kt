@@ -0,0 +1,108 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.sun.net.httpserver.HttpServer
+import okhttp3.OkHttpClient
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.InetSocketAddress
+import java.util.concurrent.CopyOnWriteArrayList
+
+class GitHubGraphQLFileFetcherTest {
+
+    private val receivedQueries = CopyOnWriteArrayList<String>()
+
+    private var responseCode = 200
+
+    private val server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+
+    private val pomXml = FileToFetch("myOrg/repo1", "master", "pom.xml")
+    private val missingFile = FileToFetch("myOrg/repo1", "master", "Dockerfile")
+    private val binaryFile = FileToFetch("myOrg/repo2", "develop", "logo.png")
+    private val fileOnUnknownRepo = FileToFetch("myOrg/unknownRepo", "master", "pom.xml")
+
+    // the server resolves the lookups from the expressions found in the query
+    private val blobs = mapOf("master:pom.xml" to "{\"text\": \"<project/>\", \"isTruncated\": false}",
+                              "develop:logo.png" to "{\"text\": null, \"isTruncated\": false}")
+
+    @BeforeEach
+    fun startServer() {
+
+        server.createContext("/api/graphql") { exchange ->
+
+            val query = jacksonObjectMapper().readTree(exchange.requestBody).get("query").asText()
+            receivedQueries.add(query)
+
+            val repositories = Regex("(r\\d+): repository\\(owner: \"[^\"]+\", name: \"([^\"]+)\"\\) \\{(.*?) }(?= r\\d+:| }$)").findAll(query).map { repository ->
+
+                val (repositoryAlias, repositoryName, lookups) = repository.destructured
+
+                if (repositoryName == "unknownRepo") {
+                    "\"$repositoryAlias\": null"
+                } else {
+                    val files = Regex("(f\\d+): object\\(expression: \"([^\"]+)\"\\)").findAll(lookups).map { lookup ->
+                        val (fileAlias, expression) = lookup.destructured
+                        "\"$fileAlias\": ${blobs[expression] ?: "null"}"
+                    }
+                    "\"$repositoryAlias\": {${files.joinToString(",")}}"
+                }
+            }
+
+            val body = "{\"data\": {${repositories.joinToString(",")}}}".toByteArray()
+
+            exchange.sendResponseHeaders(responseCode, body.size.toLong())
+            exchange.responseBody.write(body)
+            exchange.close()
+        }
+
+        server.start()
+    }
+
+    @AfterEach
+    fun stopServer() {
+        server.stop(0)
+    }
+
+    private fun newFetcher(maxFilesPerQuery: Int = 50) =
+        GitHubGraphQLFileFetcher("http://localhost:${server.address.port}/api/graphql", OkHttpClient(), "someToken", maxFilesPerQuery)
+
+    @Test
+    fun shouldFetchFilesOfSeveralRepositoriesInOneQuery() {
+
+        val fetchedFiles = newFetcher().fetch(listOf(pomXml, missingFile, binaryFile, fileOnUnknownRepo))
+
+        assertThat(receivedQueries).hasSize(1)
+        assertThat(receivedQueries[0]).contains("object(expression: \"master:pom.xml\")", "object(expression: \"develop:logo.png\")")
+
+        // binary files, and files of repositories GraphQL doesn't see, are left to the caller
+        assertThat(fetchedFiles).containsOnly(entry(pomXml, "<project/>"), entry(missingFile, null))
+    }
+
+    @Test
+    fun shouldNotPutMoreFilesInAQueryThanAllowed() {
+
+        val fetchedFiles = newFetcher(maxFilesPerQuery = 2).fetch(listOf(pomXml, missingFile, binaryFile))
+
+        assertThat(receivedQueries).hasSize(2)
+        assertThat(fetchedFiles).containsOnlyKeys(pomXml, missingFile)
+    }
+
+    @Test
+    fun shouldLeaveAllFilesToCaller_whenQueryFails() {
+
+        responseCode = 502
+
+        assertThat(newFetcher().fetch(listOf(pomXml, missingFile))).isEmpty()
+    }
+
+    @Test
+    fun shouldDeriveGraphQLUrlFromRestOne() {
+
+        assertThat(GitHubGraphQLFileFetcher.graphQLUrlOf("https://api.github.com")).isEqualTo("https://api.github.com/graphql")
+        assertThat(GitHubGraphQLFileFetcher.graphQLUrlOf("https://my.githubEnterprise/api/v3/")).isEqualTo("https://my.githubEnterprise/api/graphql")
+    }
+
+}
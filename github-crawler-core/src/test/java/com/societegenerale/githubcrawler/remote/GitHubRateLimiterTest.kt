@@ -0,0 +1,190 @@
+package com.societegenerale.githubcrawler.remote
+
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.Interceptor
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneOffset
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class GitHubRateLimiterTest {
+
+    private val now = Instant.parse("2023-03-01T10:00:00Z")
+
+    private val clock = Clock.fixed(now, ZoneOffset.UTC)
+
+    private val sleeps = ArrayList<Long>()
+
+    private val budget = RateLimitBudget("core", clock = clock, sleep = { sleeps.add(it) })
+
+    private val gitHubUrl = "https://api.github.com"
+
+    private val request = Request.Builder().url("https://api.github.com/repos/myOrg/myRepo").build()
+
+    @Test
+    fun shouldNotWaitWhileThereIsPlentyOfBudget() {
+
+        budget.update(responseWithRateLimit(limit = 5000, remaining = 4000, resetInSeconds = 3600))
+
+        repeat(10) { budget.acquire() }
+
+        assertThat(sleeps).isEmpty()
+        assertThat(budget.remainingRequests).isEqualTo(3990)
+    }
+
+    @Test
+    fun shouldSpreadRequestsUntilResetWhenBudgetIsLow() {
+
+        budget.update(responseWithRateLimit(limit = 5000, remaining = 100, resetInSeconds = 100))
+
+        repeat(3) { budget.acquire() }
+
+        // ~1s between each request, as we have 100 requests left for 100s
+        assertThat(sleeps).hasSize(2)
+        assertThat(sleeps[0]).isBetween(990L, 1010L)
+        assertThat(sleeps[1]).isBetween(1990L, 2030L)
+    }
+
+    @Test
+    fun shouldWaitForResetWhenBudgetIsExhausted() {
+
+        budget.update(responseWithRateLimit(limit = 5000, remaining = 0, resetInSeconds = 42))
+
+        budget.acquire()
+
+        assertThat(sleeps).containsExactly(42_000L)
+        assertThat(budget.requestsThrottled).isEqualTo(1)
+    }
+
+    @Test
+    fun shouldRetryAfterTheDelayRequestedBySecondaryRateLimit() {
+
+        val rateLimiter = GitHubRateLimiter(gitHubUrl, budgets = mapOf(GitHubRequestClass.CORE to budget))
+
+        val chain = mock(Interceptor.Chain::class.java)
+        `when`(chain.request()).thenReturn(request)
+        `when`(chain.proceed(request)).thenReturn(response(403, "You have exceeded a secondary rate limit").newBuilder().header("Retry-After", "30").build(),
+                                                  response(200, "OK"))
+
+        val finalResponse = rateLimiter.intercept(chain)
+
+        assertThat(finalResponse.code).isEqualTo(200)
+        assertThat(sleeps).containsExactly(30_000L)
+        verify(chain, times(2)).proceed(request)
+    }
+
+    @Test
+    fun shouldNotRetryOnPlainForbiddenResponse() {
+
+        val rateLimiter = GitHubRateLimiter(gitHubUrl, budgets = mapOf(GitHubRequestClass.CORE to budget))
+
+        val chain = mock(Interceptor.Chain::class.java)
+        `when`(chain.request()).thenReturn(request)
+        `when`(chain.proceed(request)).thenReturn(response(403, "Resource not accessible by integration"))
+
+        assertThat(rateLimiter.intercept(chain).code).isEqualTo(403)
+        assertThat(sleeps).isEmpty()
+    }
+
+    @Test
+    fun shouldNotCountRequestsAnsweredWithNotModified() {
+
+        budget.update(responseWithRateLimit(limit = 5000, remaining = 4000, resetInSeconds = 3600))
+
+        val rateLimiter = GitHubRateLimiter(gitHubUrl, budgets = mapOf(GitHubRequestClass.CORE to budget))
+
+        val notModified = Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(304).message("Not Modified").build()
+        val revalidatedFromCache = response(200, "cached content").newBuilder().networkResponse(notModified).build()
+
+        val chain = mock(Interceptor.Chain::class.java)
+        `when`(chain.request()).thenReturn(request)
+        `when`(chain.proceed(request)).thenReturn(revalidatedFromCache)
+
+        repeat(10) { rateLimiter.intercept(chain) }
+
+        assertThat(budget.remainingRequests).isEqualTo(4000)
+    }
+
+    @Test
+    fun shouldClassifyRequestsFromTheirPath() {
+
+        assertThat(GitHubRequestClass.of(request.url, gitHubUrl)).isEqualTo(GitHubRequestClass.CORE)
+        assertThat(GitHubRequestClass.of("https://api.github.com/search/code?q=someText".toHttpUrl(), gitHubUrl)).isEqualTo(GitHubRequestClass.SEARCH)
+        assertThat(GitHubRequestClass.of("https://myGitHubEnterprise/api/v3/search/code?q=someText".toHttpUrl(), "https://myGitHubEnterprise/api/v3")).isEqualTo(GitHubRequestClass.SEARCH)
+        assertThat(GitHubRequestClass.of("https://api.github.com/graphql".toHttpUrl(), gitHubUrl)).isEqualTo(GitHubRequestClass.GRAPHQL)
+        assertThat(GitHubRequestClass.of("https://myGitHubEnterprise/api/graphql".toHttpUrl(), "https://myGitHubEnterprise/api/v3/")).isEqualTo(GitHubRequestClass.GRAPHQL)
+    }
+
+    @Test
+    fun shouldNotClassifyRequestsOnARepositoryNamedSearchAsSearchRequests() {
+
+        assertThat(GitHubRequestClass.of("https://api.github.com/repos/myOrg/search/contents/pom.xml".toHttpUrl(), gitHubUrl)).isEqualTo(GitHubRequestClass.CORE)
+        assertThat(GitHubRequestClass.of("https://api.github.com/repos/myOrg/myRepo/contents/src/search/App.java".toHttpUrl(), gitHubUrl)).isEqualTo(GitHubRequestClass.CORE)
+        assertThat(GitHubRequestClass.of("https://myGitHubEnterprise/api/v3/repos/search/graphql/contents/pom.xml".toHttpUrl(), "https://myGitHubEnterprise/api/v3")).isEqualTo(GitHubRequestClass.CORE)
+    }
+
+    @Test
+    fun shouldNotDelayCoreRequestsWhileSearchRequestsWaitForTheirBudget() {
+
+        val searchBudgetReset = CountDownLatch(1)
+
+        val searchBudget = RateLimitBudget("search", clock = clock, sleep = { searchBudgetReset.await() })
+        searchBudget.update(responseWithRateLimit(limit = 30, remaining = 0, resetInSeconds = 60))
+
+        val rateLimiter = GitHubRateLimiter(gitHubUrl, budgets = mapOf(GitHubRequestClass.CORE to budget, GitHubRequestClass.SEARCH to searchBudget))
+
+        val searchRequest = Request.Builder().url("https://api.github.com/search/code?q=someText").build()
+
+        val searchChain = mock(Interceptor.Chain::class.java)
+        `when`(searchChain.request()).thenReturn(searchRequest)
+        `when`(searchChain.proceed(searchRequest)).thenReturn(response(200, "OK").newBuilder().request(searchRequest).build())
+
+        val coreChain = mock(Interceptor.Chain::class.java)
+        `when`(coreChain.request()).thenReturn(request)
+        `when`(coreChain.proceed(request)).thenReturn(response(200, "OK"))
+
+        val executor = Executors.newSingleThreadExecutor()
+
+        try {
+            val pendingSearch = executor.submit<Response> { rateLimiter.intercept(searchChain) }
+
+            assertThat(rateLimiter.intercept(coreChain).code).isEqualTo(200)
+            assertThat(pendingSearch.isDone).isFalse()
+
+            searchBudgetReset.countDown()
+
+            assertThat(pendingSearch.get(5, TimeUnit.SECONDS).code).isEqualTo(200)
+            assertThat(searchBudget.requestsThrottled).isEqualTo(1)
+            assertThat(budget.requestsThrottled).isEqualTo(0)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun responseWithRateLimit(limit: Int, remaining: Int, resetInSeconds: Long): Response {
+        return response(200, "OK").newBuilder()
+            .header(RateLimitBudget.RATE_LIMIT_HEADER, limit.toString())
+            .header(RateLimitBudget.RATE_LIMIT_REMAINING_HEADER, remaining.toString())
+            .header(RateLimitBudget.RATE_LIMIT_RESET_HEADER, now.plusSeconds(resetInSeconds).epochSecond.toString())
+            .build()
+    }
+
+    private fun response(code: Int, body: String): Response {
+        return Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(code).message("some message")
+            .body(body.toResponseBody())
+            .build()
+    }
+
+}
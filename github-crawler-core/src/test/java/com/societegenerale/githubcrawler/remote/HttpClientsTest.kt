@@ -0,0 +1,148 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.societegenerale.githubcrawler.HttpClientConfig
+import com.sun.net.httpserver.HttpServer
+import okhttp3.Interceptor
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import java.net.InetSocketAddress
+import java.nio.file.Path
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+class HttpClientsTest {
+
+    @Test
+    fun shouldBuildClientFromConfig() {
+
+        val httpClient = HttpClients.newSharedClient(HttpClientConfig(connectTimeoutSeconds = 5, readTimeoutSeconds = 30, http2 = false))
+
+        assertThat(httpClient.connectTimeoutMillis).isEqualTo(5_000)
+        assertThat(httpClient.readTimeoutMillis).isEqualTo(30_000)
+        assertThat(httpClient.protocols).containsOnly(Protocol.HTTP_1_1)
+        assertThat(httpClient.interceptors).hasAtLeastOneElementOfType(MaxRequestsPerHostInterceptor::class.java)
+    }
+
+    @Test
+    fun shouldRevalidateCachedResponsesWithConditionalRequests(@TempDir cacheDirectory: Path) {
+
+        val etag = "\"someEtag\""
+        val receivedIfNoneMatch = ArrayList<String?>()
+
+        val server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+
+        server.createContext("/repos") { exchange ->
+
+            val ifNoneMatch = exchange.requestHeaders.getFirst("If-None-Match")
+            receivedIfNoneMatch.add(ifNoneMatch)
+
+            exchange.responseHeaders.add("ETag", etag)
+            exchange.responseHeaders.add("Cache-Control", "private, max-age=60")
+
+            if (ifNoneMatch == etag) {
+                exchange.sendResponseHeaders(304, -1)
+            } else {
+                val body = "someRepositories".toByteArray()
+                exchange.sendResponseHeaders(200, body.size.toLong())
+                exchange.responseBody.write(body)
+            }
+            exchange.close()
+        }
+
+        server.start()
+
+        try {
+            val httpClient = HttpClients.newSharedClient(HttpClientConfig(cacheDirectory = cacheDirectory.toString()))
+
+            val request = Request.Builder().url("http://localhost:${server.address.port}/repos").build()
+
+            val firstResponse = httpClient.newCall(request).execute().use { it.body!!.string() }
+
+            // even within the max-age, we get a fresh answer from the server - but without the body, if nothing has changed
+            httpClient.newCall(request).execute().use { secondResponse ->
+                assertThat(secondResponse.body!!.string()).isEqualTo(firstResponse).isEqualTo("someRepositories")
+                assertThat(secondResponse.networkResponse?.code).isEqualTo(304)
+            }
+
+            assertThat(receivedIfNoneMatch).containsExactly(null, etag)
+        } finally {
+            server.stop(0)
+        }
+    }
+
+    @Test
+    fun shouldNotPerformMoreRequestsPerHostThanConfigured() {
+
+        val maxRequestsPerHost = 2
+
+        val interceptor = MaxRequestsPerHostInterceptor(maxRequestsPerHost)
+
+        val requestsInProgress = AtomicInteger()
+        val maxRequestsInProgress = AtomicInteger()
+
+        val request = Request.Builder().url("http://someHost/someResource").build()
+
+        val chain = mock(Interceptor.Chain::class.java)
+        `when`(chain.request()).thenReturn(request)
+        `when`(chain.proceed(request)).thenAnswer {
+            maxRequestsInProgress.accumulateAndGet(requestsInProgress.incrementAndGet(), Math::max)
+            Thread.sleep(50)
+            requestsInProgress.decrementAndGet()
+            Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK").build()
+        }
+
+        val executor = Executors.newFixedThreadPool(6)
+
+        try {
+            executor.invokeAll((1..6).map { Callable { interceptor.intercept(chain) } }).forEach { it.get() }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        assertThat(maxRequestsInProgress.get()).isEqualTo(maxRequestsPerHost)
+    }
+
+    @Test
+    fun shouldHoldThePermitUntilTheResponseBodyIsClosed() {
+
+        val interceptor = MaxRequestsPerHostInterceptor(1)
+
+        val request = Request.Builder().url("http://someHost/someArchive").build()
+
+        val chain = mock(Interceptor.Chain::class.java)
+        `when`(chain.request()).thenReturn(request)
+        `when`(chain.proceed(request)).thenAnswer {
+            Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK").body("archive content".toResponseBody()).build()
+        }
+
+        val executor = Executors.newSingleThreadExecutor()
+
+        try {
+            // headers have arrived, but the body hasn't been read yet
+            val firstResponse = interceptor.intercept(chain)
+
+            val secondResponseContent = executor.submit(Callable { interceptor.intercept(chain).use { it.body!!.string() } })
+
+            assertThatThrownBy { secondResponseContent.get(200, TimeUnit.MILLISECONDS) }.isInstanceOf(TimeoutException::class.java)
+
+            // reading the whole body closes it
+            assertThat(firstResponse.body!!.string()).isEqualTo("archive content")
+
+            assertThat(secondResponseContent.get(5, TimeUnit.SECONDS)).isEqualTo("archive content")
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.societegenerale.githubcrawler.remote
+
+import com.societegenerale.githubcrawler.model.Branch
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.PersonIdent
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.nio.file.Path
+
+class RemoteGitMirrorImplTest {
+
+    @TempDir
+    lateinit var tempDirectory: Path
+
+    private lateinit var mirrorsDirectory: File
+
+    private lateinit var remoteGitMirror: RemoteGitMirrorImpl
+
+    private val author = PersonIdent("John Doe", "john.doe@example.com")
+
+    private lateinit var lastCommitSha: String
+
+    @BeforeEach
+    fun createMirrors() {
+
+        val workingCopy = tempDirectory.resolve("workingCopy").toFile()
+
+        Git.init().setDirectory(workingCopy).setInitialBranch("main").call().use { git ->
+
+            File(workingCopy, "pom.xml").writeText("<project>\n<artifactId>myRepo</artifactId>\n</project>\n")
+            File(workingCopy, ".githubCrawler").writeText("excluded: true\n")
+            git.add().addFilepattern(".").call()
+            git.commit().setMessage("first commit").setAuthor(author).setCommitter(author).call()
+
+            git.branchCreate().setName("develop").call()
+
+            File(workingCopy, "src/main/resources").mkdirs()
+            File(workingCopy, "src/main/resources/application.yml").writeText("server.port: 8080\nspring.application.name: myRepo\n")
+            git.add().addFilepattern(".").call()
+            lastCommitSha = git.commit().setMessage("second commit").setAuthor(author).setCommitter(author).call().name
+        }
+
+        mirrorsDirectory = tempDirectory.resolve("mirrors").toFile()
+
+        Git.cloneRepository().setURI(workingCopy.toURI().toString()).setDirectory(File(mirrorsDirectory, "MyOrganization/myRepo.git")).setMirror(true).call().close()
+
+        // not a git repository : ignored
+        File(mirrorsDirectory, "MyOrganization/notARepo").mkdirs()
+
+        remoteGitMirror = RemoteGitMirrorImpl(mirrorsDirectory)
+    }
+
+    @AfterEach
+    fun closeMirrors() {
+
+        remoteGitMirror.close()
+    }
+
+    @Test
+    fun shouldListRepositoriesOfOrganizationFromItsDirectory() {
+
+        val repositories = remoteGitMirror.fetchRepositories("MyOrganization")
+
+        assertThat(repositories).hasSize(1)
+
+        val repository = repositories.first()
+        assertThat(repository.fullName).isEqualTo("MyOrganization/myRepo")
+        assertThat(repository.name).isEqualTo("myRepo")
+        assertThat(repository.defaultBranch).isEqualTo("main")
+
+        assertThat(remoteGitMirror.fetchRepoBranches("MyOrganization/myRepo")).containsOnly(Branch("main"), Branch("develop"))
+    }
+
+    @Test
+    fun shouldReadFilesOnEachBranch() {
+
+        assertThat(remoteGitMirror.fetchFileContent("MyOrganization/myRepo", "main", "src/main/resources/application.yml")).startsWith("server.port: 8080")
+        assertThat(remoteGitMirror.fetchFileContent("MyOrganization/myRepo", "develop", "pom.xml")).contains("<artifactId>myRepo</artifactId>")
+
+        assertThatThrownBy { remoteGitMirror.fetchFileContent("MyOrganization/myRepo", "develop", "src/main/resources/application.yml") }
+            .isInstanceOf(NoFileFoundException::class.java)
+        assertThatThrownBy { remoteGitMirror.fetchFileContent("MyOrganization/myRepo", "main", "src/main") }
+            .isInstanceOf(NoFileFoundException::class.java)
+        assertThatThrownBy { remoteGitMirror.fetchFileContent("MyOrganization/myRepo", "unknownBranch", "pom.xml") }
+            .isInstanceOf(NoFileFoundException::class.java)
+    }
+
+    @Test
+    fun shouldListFilesOfBranch() {
+
+        val fileTree = remoteGitMirror.fetchFileTree("MyOrganization/myRepo", "main")!!
+
+        assertThat(fileTree.nbFiles).isEqualTo(3)
+        assertThat(fileTree.firstMatch("**/application*.yml")).isEqualTo("src/main/resources/application.yml")
+
+        assertThat(remoteGitMirror.fetchFileTree("MyOrganization/myRepo", "develop")!!.isMissing("src/main/resources/application.yml")).isTrue()
+    }
+
+    @Test
+    fun shouldReadRepoConfig() {
+
+        assertThat(remoteGitMirror.fetchRepoConfig("MyOrganization/myRepo", "main").excluded).isTrue()
+    }
+
+    @Test
+    fun shouldReadCommitsAndTheirStats() {
+
+        val commits = remoteGitMirror.fetchCommits("MyOrganization/myRepo", 10)
+
+        assertThat(commits.map { it.sha }).hasSize(2).startsWith(lastCommitSha)
+
+        val lastCommit = remoteGitMirror.fetchCommit("MyOrganization/myRepo", lastCommitSha)
+
+        assertThat(lastCommit.author?.id).isEqualTo("john.doe@example.com")
+        assertThat(lastCommit.stats.total).isEqualTo(2)
+    }
+
+    @Test
+    fun shouldSearchTextInFilesOfDefaultBranch() {
+
+        val searchResult = remoteGitMirror.fetchCodeSearchResult("MyOrganization/myRepo", "myRepo")
+
+        assertThat(searchResult.items.map { it.path }).containsOnly("pom.xml", "src/main/resources/application.yml")
+    }
+
+    @Test
+    fun shouldSkipFilesBiggerThanTheLimit() {
+
+        // pom.xml is 53 bytes, application.yml 50 bytes
+        RemoteGitMirrorImpl(mirrorsDirectory, maxFileSizeInBytes = 52).use { mirrorWithSmallFilesOnly ->
+
+            assertThatThrownBy { mirrorWithSmallFilesOnly.fetchFileContent("MyOrganization/myRepo", "main", "pom.xml") }
+                .isInstanceOf(NoFileFoundException::class.java)
+            assertThat(mirrorWithSmallFilesOnly.fetchFileContent("MyOrganization/myRepo", "main", "src/main/resources/application.yml")).startsWith("server.port: 8080")
+
+            assertThat(mirrorWithSmallFilesOnly.fetchCodeSearchResult("MyOrganization/myRepo", "myRepo").items.map { it.path })
+                .containsOnly("src/main/resources/application.yml")
+        }
+    }
+
+    @Test
+    fun shouldNotValidateConfig_whenOrganizationDirectoryDoesntExist() {
+
+        assertThatThrownBy { remoteGitMirror.validateRemoteConfig("unknownOrganization") }.isInstanceOf(NoReachableRepositories::class.java)
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.societegenerale.githubcrawler.repoTaskToPerform
+
+import com.societegenerale.githubcrawler.model.Repository
+import com.societegenerale.githubcrawler.model.SearchResult
+import com.societegenerale.githubcrawler.model.SearchResultItem
+import com.societegenerale.githubcrawler.model.SearchResultRepository
+import com.societegenerale.githubcrawler.remote.RemoteSourceControl
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import org.mockito.ArgumentMatchers.anyString
+import java.util.*
+
+class CodeSearchIndexTest {
+
+    private val mockRemoteGithub = mock(RemoteSourceControl::class.java)
+
+    private val codeSearchIndex = CodeSearchIndex(mockRemoteGithub)
+
+    private val repo1 = repository("orgName/repoName1")
+
+    private val repo2 = repository("orgName/repoName2")
+
+    @Test
+    fun shouldSearchOnceForAllRepositoriesOfTheOrganization() {
+
+        val hitsOnRepo1 = listOf(SearchResultItem("path1", SearchResultRepository(repo1.fullName)), SearchResultItem("path2", SearchResultRepository(repo1.fullName)))
+
+        `when`(mockRemoteGithub.fetchCodeSearchResultsByRepository("orgName", "someSearch"))
+                .thenReturn(mapOf(repo1.fullName to SearchResult(2, hitsOnRepo1)))
+
+        val pathsTask = PathsForHitsOnRepoSearch("paths", "someSearch", mockRemoteGithub, codeSearchIndex)
+        val countTask = CountHitsOnRepoSearch("count", mockRemoteGithub, "someSearch", codeSearchIndex)
+
+        assertThat(pathsTask.perform(repo1).values.single().second as List<*>).containsExactly("path1", "path2")
+        assertThat(countTask.perform(repo1).values.single().second).isEqualTo("2")
+        assertThat(pathsTask.perform(repo2).values.single().second as List<*>).containsOnly("not found")
+        assertThat(countTask.perform(repo2).values.single().second).isEqualTo("0")
+
+        verify(mockRemoteGithub, times(1)).fetchCodeSearchResultsByRepository("orgName", "someSearch")
+        verify(mockRemoteGithub, never()).fetchCodeSearchResult(anyString(), anyString())
+    }
+
+    @Test
+    fun shouldSearchAgainOnNextCrawl() {
+
+        `when`(mockRemoteGithub.fetchCodeSearchResultsByRepository("orgName", "someSearch"))
+                .thenReturn(mapOf(repo1.fullName to SearchResult(1, listOf(SearchResultItem("path1", SearchResultRepository(repo1.fullName))))),
+                            mapOf(repo1.fullName to SearchResult(2, listOf(SearchResultItem("path1", SearchResultRepository(repo1.fullName)),
+                                                                           SearchResultItem("path2", SearchResultRepository(repo1.fullName))))))
+
+        assertThat(codeSearchIndex.fetchCodeSearchResult(repo1.copy(crawlerRunId = "20190125_101010"), "someSearch").totalCount).isEqualTo(1)
+        assertThat(codeSearchIndex.fetchCodeSearchResult(repo2.copy(crawlerRunId = "20190125_101010"), "someSearch").totalCount).isEqualTo(0)
+
+        assertThat(codeSearchIndex.fetchCodeSearchResult(repo1.copy(crawlerRunId = "20190126_101010"), "someSearch").totalCount).isEqualTo(2)
+
+        verify(mockRemoteGithub, times(2)).fetchCodeSearchResultsByRepository("orgName", "someSearch")
+    }
+
+    @Test
+    fun shouldSearchRepositoryByRepository_whenOrganizationWideSearchIsNotPossible() {
+
+        `when`(mockRemoteGithub.fetchCodeSearchResultsByRepository("orgName", "someSearch")).thenReturn(null)
+        `when`(mockRemoteGithub.fetchCodeSearchResult(repo1.fullName, "someSearch")).thenReturn(SearchResult(1, listOf(SearchResultItem("path1"))))
+
+        assertThat(codeSearchIndex.fetchCodeSearchResult(repo1, "someSearch").totalCount).isEqualTo(1)
+
+        verify(mockRemoteGithub, times(1)).fetchCodeSearchResult(repo1.fullName, "someSearch")
+    }
+
+    @Test
+    fun shouldUseTheIndexOnlyWhenTaskIsConfiguredForOrganizationScope() {
+
+        assertThat(CodeSearchIndex.isOrganizationWide(mapOf("queryString" to "someSearch", "scope" to "organization"))).isTrue()
+        assertThat(CodeSearchIndex.isOrganizationWide(mapOf("queryString" to "someSearch"))).isFalse()
+    }
+
+    private fun repository(fullName: String): Repository {
+        return Repository(name = fullName.substringAfter("/"),
+                creationDate = Date(),
+                config = null,
+                defaultBranch = "master",
+                fullName = fullName,
+                lastUpdateDate = Date(),
+                reason = null,
+                url = "http://hello")
+    }
+}